@@ -1,7 +1,21 @@
 package examples.basic_synchronization.multiple_locks;
 
+import examples.metrics.LockMetrics;
+
+/**
+ * Run it with {@code lock_free} as argument to let the stages append to
+ * {@link examples.collections.ConcurrentAppendLog}s instead of locked lists,
+ * or with {@code primitive} to store the numbers as {@code int}s in
+ * {@link examples.collections.SegmentedIntList}s.
+ * <p>
+ * Start the JVM with {@code -Dexamples.lockMetrics=true} to measure the two locks and
+ * print their report at the end.
+ */
 public class App {
     public static void main(String[] args) {
-        new Worker().main();
+        Worker.Storage storage = Worker.Storage.LIST;
+        if (args.length > 0 && args[0].equals("lock_free")) storage = Worker.Storage.LOCK_FREE_LOG;
+        if (args.length > 0 && args[0].equals("primitive")) storage = Worker.Storage.PRIMITIVE;
+        new Worker(storage, LockMetrics.enabledBySystemProperty()).main();
     }
 }
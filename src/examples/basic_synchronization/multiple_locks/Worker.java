@@ -1,12 +1,19 @@
 package examples.basic_synchronization.multiple_locks;
 
+import examples.collections.ConcurrentAppendLog;
+import examples.collections.IntList;
+import examples.collections.SegmentedIntList;
+import examples.logging.AsyncLog;
+import examples.metrics.InstrumentedMonitor;
+import examples.metrics.LockMetrics;
+import examples.random.RandomStreams;
+
 import java.util.ArrayList;
 import java.util.List;
-import java.util.Random;
 
 public class Worker {
 
-    private Random random = new Random();
+    private final RandomStreams random = RandomStreams.shared();   // one stream per thread, no shared seed
 
     /**
      * The limitation with synchronized methods is that they used
@@ -24,41 +31,166 @@ public class Worker {
      * While this is a simple way to address the problem, the
      * {@code ReentrantLock} class provides a more robust and
      * flexible solution for handling such cases.
+     * <p>
+     * When the locks are measured, the objects are {@link InstrumentedMonitor}s,
+     * which record how long the threads wait for each lock and hold it.
+     * </p>
      */
-    Object lock1 = new Object();
-    Object lock2 = new Object();
+    final Object lock1;
+    final Object lock2;
+    // lock1 and lock2 themselves when they are measured, null otherwise
+    private final InstrumentedMonitor metrics1;
+    private final InstrumentedMonitor metrics2;
 
     private List<Integer> list1 = new ArrayList<Integer>();
     private List<Integer> list2 = new ArrayList<Integer>();
 
+    /** Where the stages store their numbers. */
+    public enum Storage {
+        /** {@code list1} and {@code list2}, each guarded by its lock. */
+        LIST,
+        /**
+         * {@link ConcurrentAppendLog}s, without any lock: each append claims its own
+         * slot with a single atomic increment.
+         */
+        LOCK_FREE_LOG,
+        /**
+         * {@link SegmentedIntList}s, each guarded by its lock: 4 bytes per number
+         * instead of a reference to an {@code Integer}.
+         */
+        PRIMITIVE
+    }
+
+    private final Storage storage;
+    private final ConcurrentAppendLog<Integer> log1 = new ConcurrentAppendLog<Integer>();
+    private final ConcurrentAppendLog<Integer> log2 = new ConcurrentAppendLog<Integer>();
+    private final IntList values1 = new SegmentedIntList();
+    private final IntList values2 = new SegmentedIntList();
+
+    public Worker() {
+        this(Storage.LIST);
+    }
+
+    public Worker(Storage storage) {
+        this(storage, false);
+    }
+
+    /**
+     * @param measureLocks {@code true} to measure how long the threads wait for {@code lock1}
+     *                     and {@code lock2} and hold them, at a small cost per entry
+     */
+    public Worker(Storage storage, boolean measureLocks) {
+        this.storage = storage;
+        this.metrics1 = measureLocks ? new InstrumentedMonitor("multiple_locks.lock1") : null;
+        this.metrics2 = measureLocks ? new InstrumentedMonitor("multiple_locks.lock2") : null;
+        this.lock1 = measureLocks ? metrics1 : new Object();
+        this.lock2 = measureLocks ? metrics2 : new Object();
+    }
+
     /**
      * Writes a random number to the {@code list1}.
      */
     public void stageOne() {
+        if (storage == Storage.LOCK_FREE_LOG) {
+            simulateCalculation();
+            log1.append(random.current().nextInt(100));
+            return;
+        }
+        long ticket = beforeEnter(metrics1);
         synchronized (lock1) {
+            entered(metrics1, ticket);
             try {
-                Thread.sleep(1);    // simulates some kind of calculation
-            } catch (InterruptedException e) {
-                e.printStackTrace();
+                try {
+                    Thread.sleep(1);    // simulates some kind of calculation
+                } catch (InterruptedException e) {
+                    e.printStackTrace();
+                }
+                if (storage == Storage.PRIMITIVE) values1.add(random.current().nextInt(100));
+                else list1.add(random.current().nextInt(100));
+            } finally {
+                beforeExit(metrics1, ticket);
             }
-            list1.add(random.nextInt(100));
         }
     }
 
     /**
      * Writes a random number to the {@code list2}.
      */
-    public synchronized void stageTwo() {
+    public void stageTwo() {
+        if (storage == Storage.LOCK_FREE_LOG) {
+            simulateCalculation();
+            log2.append(random.current().nextInt(100));
+            return;
+        }
+        long ticket = beforeEnter(metrics2);
         synchronized (lock2) {
+            entered(metrics2, ticket);
             try {
-                Thread.sleep(1);    // simulates some kind of calculation
-            } catch (InterruptedException e) {
-                e.printStackTrace();
+                try {
+                    Thread.sleep(1);    // simulates some kind of calculation
+                } catch (InterruptedException e) {
+                    e.printStackTrace();
+                }
+                if (storage == Storage.PRIMITIVE) values2.add(random.current().nextInt(100));
+                else list2.add(random.current().nextInt(100));
+            } finally {
+                beforeExit(metrics2, ticket);
             }
-            list2.add(random.nextInt(100));
         }
     }
 
+    // The calls an InstrumentedMonitor needs around each synchronized block; they do nothing
+    // when the lock is not measured
+    private static long beforeEnter(InstrumentedMonitor metrics) {
+        return metrics == null ? 0 : metrics.beforeEnter();
+    }
+
+    private static void entered(InstrumentedMonitor metrics, long ticket) {
+        if (metrics != null) metrics.entered(ticket);
+    }
+
+    private static void beforeExit(InstrumentedMonitor metrics, long ticket) {
+        if (metrics != null) metrics.beforeExit(ticket);
+    }
+
+    private void simulateCalculation() {
+        try {
+            Thread.sleep(1);
+        } catch (InterruptedException e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * @return the numbers written by {@code stageOne()}, empty in {@link Storage#PRIMITIVE}
+     * mode; with {@link Storage#LOCK_FREE_LOG}, a view that holds every number once the
+     * writing threads are done
+     */
+    public List<Integer> getList1() {
+        return storage == Storage.LOCK_FREE_LOG ? log1.snapshot() : list1;
+    }
+
+    /**
+     * @return the numbers written by {@code stageTwo()}, empty in {@link Storage#PRIMITIVE} mode
+     */
+    public List<Integer> getList2() {
+        return storage == Storage.LOCK_FREE_LOG ? log2.snapshot() : list2;
+    }
+
+    /**
+     * @return the numbers written by {@code stageOne()} in {@link Storage#PRIMITIVE} mode
+     */
+    public IntList getValues1() {
+        return values1;
+    }
+
+    /**
+     * @return the numbers written by {@code stageTwo()} in {@link Storage#PRIMITIVE} mode
+     */
+    public IntList getValues2() {
+        return values2;
+    }
+
     /**
      * Writes to {@code list1} and {@code list2}.
      * If two threads call this method, they will try to write
@@ -81,7 +213,7 @@ public class Worker {
     }
 
     public void main() {
-        System.out.println("Starting...");
+        AsyncLog.println("Starting... (seed " + RandomStreams.shared().getSeed() + ", replay with -D" + RandomStreams.PROPERTY + "=<seed>)");
 
         long start = System.currentTimeMillis();
 /*
@@ -119,8 +251,12 @@ public class Worker {
         }
         long end = System.currentTimeMillis();
 
-        System.out.println("Time take: " + (end - start));
-        System.out.println("List1: " + list1.size() + "; List2: " + list2.size());
+        AsyncLog.println("Time take: " + (end - start));
+        if (storage == Storage.PRIMITIVE)
+            AsyncLog.println("List1: " + values1.size() + "; List2: " + values2.size());
+        else
+            AsyncLog.println("List1: " + getList1().size() + "; List2: " + getList2().size());
+        if (metrics1 != null && storage != Storage.LOCK_FREE_LOG) AsyncLog.print(LockMetrics.report());
         /*
          * In the end, this implementation will take the same amount of
          * execution time as running both threads concurrently, while
@@ -1,5 +1,7 @@
 package examples.basic_synchronization.synchronized_keyword;
 
+import examples.logging.AsyncLog;
+
 /**
  * This class shows how the {@code synchronized} keyword and
  * the {@code Thread.join()} method works.
@@ -107,12 +109,14 @@ public class Worker {
               - synchronized keyword
               - AtomicInteger (which ensures atomic updates)
               - Lock mechanisms like ReentrantLock
+              - The counters in examples.counters, which spread the count over
+                several variables so the threads do not all update the same one
              */
         } catch (InterruptedException e) {
             e.printStackTrace();
         }
 
-        System.out.println("Count is: " + count);
+        AsyncLog.println("Count is: " + count);
     }
 
 }
@@ -1,6 +1,10 @@
 package examples.basic_synchronization.volatile_keyword;
 
+import examples.logging.AsyncLog;
+
 import java.util.Scanner;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
 
 /**
  * In basic thread synchronization, there are two common problems that
@@ -31,27 +35,36 @@ class Processor extends Thread {
 
     /**
      * Simulates that the thread does some work.
+     * <p>
+     * The thread waits with {@code LockSupport.parkNanos()} instead of
+     * {@code Thread.sleep()}, so that {@link #shutdown()} can wake it up: it
+     * then stops within microseconds instead of finishing its 100 ms first.
+     * {@code examples.lifecycle.Lifecycle} does the same for many threads at once.
+     * </p>
      */
     @Override
     public void run() {
         while (running) {
-            System.out.println("Running");
+            AsyncLog.println("Running");
 
-            try {
-                Thread.sleep(100);   // Simulates thread doing some work
-            } catch (InterruptedException e) {
-                e.printStackTrace();
-            }
+            // Simulates thread doing some work
+            long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(100);
+            long left;
+            while (running && (left = deadline - System.nanoTime()) > 0)
+                LockSupport.parkNanos(this, left);
         }
     }
 
 
     /**
      * Change the value of {@code running} to {@code false}, this stops
-     * the thread's running state.
+     * the thread's running state, and wakes the thread up if it is waiting.
+     * The write to {@code running} happens before the thread wakes up, so
+     * it sees {@code false} at once.
      */
     public void shutdown() {
         running = false;
+        LockSupport.unpark(this);
     }
 }
 
@@ -82,11 +95,19 @@ public class App {
         Processor processor1 = new Processor();
         processor1.start();
 
-        System.out.println("Press Enter to stop...\n" +
+        AsyncLog.println("Press Enter to stop...\n" +
                 "Volatile variable running will always be read from the main memory");
+        AsyncLog.flush();   // makes sure the prompt is on the console before waiting for input
         Scanner scanner = new Scanner(System.in);
         scanner.nextLine();
 
-        processor1.shutdown();  
+        long stop = System.nanoTime();
+        processor1.shutdown();
+        try {
+            processor1.join();
+        } catch (InterruptedException e) {
+            e.printStackTrace();
+        }
+        AsyncLog.printf("Stopped in %.1f us%n", (System.nanoTime() - stop) / 1e3);
     }
 }
@@ -1,7 +1,10 @@
 package examples.callable_and_future;
 
+import examples.logging.AsyncLog;
+import examples.random.RandomStreams;
+import examples.random.SplitRandom;
+
 import java.io.IOException;
-import java.util.Random;
 import java.util.concurrent.*;
 
 public class App {
@@ -36,19 +39,19 @@ public class App {
 
                     @Override
                     public Integer call() throws Exception {
-                        final Random random = new Random();
+                        final SplitRandom random = RandomStreams.shared().current();
                         int duration = random.nextInt(4000);
 
                         // Example of how an exception is handled by Future<> class.
                         if (duration > 2000) throw new IOException("Sleeping for too long.");
 
-                        System.out.println("Starting thread... ");
+                        AsyncLog.println("Starting thread... ");
                         try {
                             Thread.sleep(duration); // simulates some work
                         } catch (InterruptedException e) {
                             e.printStackTrace();
                         }
-                        System.out.println("Finished thread.");
+                        AsyncLog.println("Finished thread.");
 
                         // The return type is determined by the type parameter of the Callable interface.
                         return duration;
@@ -59,14 +62,14 @@ public class App {
 
         // Shows the result or the IOException
         try {
-            System.out.println("Result is: " + future.get());
+            AsyncLog.println("Result is: " + future.get());
             // get() blocks the thread until the result is finished. If the task takes too long, it can cause delays.
         } catch (InterruptedException e) {
             e.printStackTrace();
         } catch (ExecutionException e) {
             // This catch handles the IOException from Callable.
             IOException ex = (IOException) e.getCause();
-            System.out.println(ex.getMessage());
+            AsyncLog.println(ex.getMessage());
         }
     }
 }
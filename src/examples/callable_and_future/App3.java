@@ -1,5 +1,7 @@
 package examples.callable_and_future;
 
+import examples.logging.AsyncLog;
+
 import java.util.ArrayList;
 import java.util.concurrent.*;
 
@@ -19,7 +21,7 @@ class MyCallable implements Callable<Integer> {
         for (int i = 0; i < value; i++) {
             sum += i;
         }
-        System.out.println("Sum in Callable.call() is : " + sum);
+        AsyncLog.println("Sum in Callable.call() is : " + sum);
         return sum;
     }
 }
@@ -39,7 +41,7 @@ public class App3 {
             try {
                 list.add(future.get());
             } catch (ExecutionException ex) {
-                System.out.println(ex.getMessage());
+                AsyncLog.println(ex.getMessage());
             }
         }
 
@@ -50,7 +52,7 @@ public class App3 {
 
         for (int i = 0; i < list.size(); i++) {
             // get returned values from call()
-            System.out.println("List " + i + "th value; Value: " + list.get(i));
+            AsyncLog.println("List " + i + "th value; Value: " + list.get(i));
         }
     }
 }
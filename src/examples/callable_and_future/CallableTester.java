@@ -1,5 +1,7 @@
 package examples.callable_and_future;
 
+import examples.logging.AsyncLog;
+
 import java.util.concurrent.*;
 
 class CallableImplemented implements Callable<Integer> {
@@ -22,7 +24,7 @@ class CallableImplemented implements Callable<Integer> {
     public Integer call() throws Exception {
 
         for (int i = 0; i < 10; i++) {
-            System.out.println("Thread name: " + getMyName() + " value is :" + i);
+            AsyncLog.println("Thread name: " + getMyName() + " value is :" + i);
         }
         return getMyName();
     }
@@ -37,7 +39,7 @@ public class CallableTester {
         Future<Integer> future = executor.submit(callable);
 
         try {
-            System.out.println("Future value: " + future.get());
+            AsyncLog.println("Future value: " + future.get());
         } catch (Exception ignored) { }
 
         executor.shutdown();
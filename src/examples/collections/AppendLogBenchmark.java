@@ -0,0 +1,74 @@
+package examples.collections;
+
+import examples.metrics.ParallelTimer;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Appends {@value #APPENDS} numbers with 1 to 16 threads, with no other work in between,
+ * to compare the cost of the append itself:
+ * <ul>
+ *     <li>an {@code ArrayList} guarded by a lock, as in
+ *     {@link examples.basic_synchronization.multiple_locks.Worker},</li>
+ *     <li>a {@link ConcurrentAppendLog}.</li>
+ * </ul>
+ * The numbers are the same {@code Integer}s from the small-value cache, so the benchmark
+ * measures the appends rather than boxing.
+ */
+public class AppendLogBenchmark {
+
+    private static final int APPENDS = 8_000_000;
+    private static final int[] THREADS = {1, 2, 4, 8, 16};
+
+    /** The append operation of one of the two lists. */
+    private interface Appender {
+        void append(Integer value);
+    }
+
+    public static void main(String[] args) throws InterruptedException {
+        for (int round = 0; round < 2; round++) {
+            boolean print = round == 1;
+            for (int threads : THREADS) {
+                final List<Integer> list = new ArrayList<Integer>();
+                final Object lock = new Object();
+                long locked = run(threads, new Appender() {
+                    @Override
+                    public void append(Integer value) {
+                        synchronized (lock) {
+                            list.add(value);
+                        }
+                    }
+                });
+                check(list.size(), threads);
+
+                final ConcurrentAppendLog<Integer> log = new ConcurrentAppendLog<Integer>();
+                long lockFree = run(threads, new Appender() {
+                    @Override
+                    public void append(Integer value) {
+                        log.append(value);
+                    }
+                });
+                check(log.snapshot().size(), threads);
+
+                if (print)
+                    System.out.printf("%2d threads   locked ArrayList %,12.0f appends/s   ConcurrentAppendLog %,12.0f appends/s%n",
+                            threads, APPENDS / (locked / 1e9), APPENDS / (lockFree / 1e9));
+            }
+        }
+    }
+
+    private static void check(int size, int threads) {
+        if (size != APPENDS / threads * threads) throw new IllegalStateException("Lost appends: " + size);
+    }
+
+    private static long run(int threads, final Appender appender) throws InterruptedException {
+        return ParallelTimer.time(threads, APPENDS, new ParallelTimer.Share() {
+            @Override
+            public void run(int thread, int first, int count) {
+                for (int i = 0; i < count; i++)
+                    appender.append(i & 127);
+            }
+        });
+    }
+}
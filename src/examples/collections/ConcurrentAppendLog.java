@@ -0,0 +1,133 @@
+package examples.collections;
+
+import java.util.AbstractList;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * An append-only list that any number of threads can add to without a lock.
+ * <p>
+ * In {@link examples.basic_synchronization.multiple_locks.Worker} every append to an
+ * {@code ArrayList} takes a lock, because {@code add()} both claims a position and
+ * sometimes copies the whole array into a bigger one. Here the two are separated:
+ * <ul>
+ *     <li><b>Claiming a slot</b> is a single {@code getAndIncrement()} on the size.
+ *     Each thread gets its own index, and writes its item there with no other thread
+ *     involved.</li>
+ *     <li><b>Growing</b> never copies. The items live in <em>segments</em> that double in
+ *     size: {@value #FIRST_SEGMENT} items, then twice that, and so on. A full list just
+ *     gets one more segment, and the items already stored do not move. The first
+ *     thread to claim an index in a missing segment allocates it and installs it with a
+ *     compare-and-set. A thread that loses the race uses the winner's segment.</li>
+ * </ul>
+ * The index of an item gives its segment and its position in it with a little
+ * arithmetic on the highest set bit, so {@link View#get(int)} costs no more than an
+ * array access plus a few instructions.
+ * <p>
+ * {@link #snapshot()} returns a read-only view of the items. An index is claimed
+ * slightly before its item is written, so while threads are appending, the view stops
+ * at the first slot that is not written yet. Every item in the view is final, and the
+ * view never changes. Once the appending threads are done, for example after
+ * {@code join()}, the view holds every item.
+ *
+ * @param <E> the type of the items
+ */
+public class ConcurrentAppendLog<E> {
+
+    /** Size of the first segment; each following segment is twice as big as the one before. */
+    public static final int FIRST_SEGMENT = 1024;
+
+    private static final int FIRST_SHIFT = Integer.numberOfTrailingZeros(FIRST_SEGMENT);
+    // Enough segments for indexes up to Integer.MAX_VALUE
+    private static final int SEGMENTS = 32 - FIRST_SHIFT;
+
+    private final AtomicReferenceArray<AtomicReferenceArray<E>> segments =
+            new AtomicReferenceArray<AtomicReferenceArray<E>>(SEGMENTS);
+    private final AtomicLong claimed = new AtomicLong();
+
+    public ConcurrentAppendLog() {
+        segments.set(0, new AtomicReferenceArray<E>(FIRST_SEGMENT));
+    }
+
+    /**
+     * Adds an item at the end. Can be called by any thread.
+     *
+     * @param item the item to add, not {@code null}
+     * @return the index of the item
+     */
+    public int append(E item) {
+        if (item == null) throw new NullPointerException();
+        long index = claimed.getAndIncrement();
+        if (index >= Integer.MAX_VALUE - FIRST_SEGMENT) throw new IllegalStateException("Log is full");
+        int position = (int) index + FIRST_SEGMENT;
+        int segment = segmentOf(position);
+        segment(segment).lazySet(position - (FIRST_SEGMENT << segment), item);
+        return (int) index;
+    }
+
+    /**
+     * @return the number of slots claimed so far, written or not
+     */
+    public int size() {
+        return (int) Math.min(claimed.get(), Integer.MAX_VALUE);
+    }
+
+    /**
+     * Checks every claimed slot once, so it costs as much as reading the whole log.
+     *
+     * @return a read-only view of the items written so far, up to the first slot that
+     * is still being written
+     */
+    public View<E> snapshot() {
+        int claimedSize = size();
+        int size = 0;
+        while (size < claimedSize && read(size) != null)
+            size++;
+        return new View<E>(this, size);
+    }
+
+    // Index + FIRST_SEGMENT has its highest bit at FIRST_SHIFT for segment 0, FIRST_SHIFT + 1 for 1...
+    private static int segmentOf(int position) {
+        return 31 - Integer.numberOfLeadingZeros(position) - FIRST_SHIFT;
+    }
+
+    private AtomicReferenceArray<E> segment(int segment) {
+        AtomicReferenceArray<E> existing = segments.get(segment);
+        if (existing != null) return existing;
+        AtomicReferenceArray<E> created = new AtomicReferenceArray<E>(FIRST_SEGMENT << segment);
+        if (segments.compareAndSet(segment, null, created)) return created;
+        return segments.get(segment);
+    }
+
+    // Returns null for a slot not written yet
+    E read(int index) {
+        int position = index + FIRST_SEGMENT;
+        int segment = segmentOf(position);
+        AtomicReferenceArray<E> items = segments.get(segment);
+        return items == null ? null : items.get(position - (FIRST_SEGMENT << segment));
+    }
+
+    /**
+     * A fixed-size, read-only view of the first items of a log.
+     */
+    public static final class View<E> extends AbstractList<E> {
+        private final ConcurrentAppendLog<E> log;
+        private final int size;
+
+        View(ConcurrentAppendLog<E> log, int size) {
+            this.log = log;
+            this.size = size;
+        }
+
+        @Override
+        public E get(int index) {
+            if (index < 0 || index >= size) throw new IndexOutOfBoundsException("Index: " + index + ", size: " + size);
+            return log.read(index);
+        }
+
+        @Override
+        public int size() {
+            return size;
+        }
+    }
+}
@@ -0,0 +1,82 @@
+package examples.collections;
+
+import java.util.Arrays;
+import java.util.function.IntConsumer;
+
+/**
+ * An {@link IntList} in a single {@code int[]}, grown like an {@code ArrayList}: when it
+ * is full, the values are copied into an array half as big again.
+ * <p>
+ * The values are contiguous, so reading them is as fast as reading an array. Each
+ * growth copies every value, though, and needs the old and the new array in memory at
+ * the same time. {@link SegmentedIntList} avoids that for very long lists.
+ */
+public class IntArrayList implements IntList {
+
+    private int[] values;
+    private int size;
+
+    public IntArrayList() {
+        this(16);
+    }
+
+    public IntArrayList(int initialCapacity) {
+        values = new int[Math.max(1, initialCapacity)];
+    }
+
+    @Override
+    public void add(int value) {
+        if (size == values.length) grow(size + 1);
+        values[size++] = value;
+    }
+
+    @Override
+    public void addAll(int[] source, int offset, int length) {
+        if (offset < 0 || length < 0 || offset + length > source.length)
+            throw new IndexOutOfBoundsException("offset " + offset + ", length " + length);
+        if (size + length > values.length) grow(size + length);
+        System.arraycopy(source, offset, values, size, length);
+        size += length;
+    }
+
+    /**
+     * Adds every value of this list to {@code target}, as one block.
+     */
+    public void copyTo(IntList target) {
+        target.addAll(values, 0, size);
+    }
+
+    private void grow(int minCapacity) {
+        int capacity = Math.max(minCapacity, values.length + (values.length >> 1));
+        values = Arrays.copyOf(values, capacity);
+    }
+
+    @Override
+    public int get(int index) {
+        if (index >= size) throw new IndexOutOfBoundsException("Index: " + index + ", size: " + size);
+        return values[index];
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Removes every value, keeping the array for the next ones.
+     */
+    public void clear() {
+        size = 0;
+    }
+
+    @Override
+    public void forEach(IntConsumer action) {
+        for (int i = 0; i < size; i++)
+            action.accept(values[i]);
+    }
+
+    @Override
+    public int[] toArray() {
+        return Arrays.copyOf(values, size);
+    }
+}
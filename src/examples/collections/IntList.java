@@ -0,0 +1,36 @@
+package examples.collections;
+
+import java.util.function.IntConsumer;
+
+/**
+ * A list of {@code int}s that stores the values themselves, not {@code Integer} objects.
+ * <p>
+ * A {@code List<Integer>} holds a reference per value, and the reference points to an
+ * {@code Integer} object of 16 bytes, unless the value is small enough to come from the
+ * {@code Integer} cache. An {@code IntList} holds 4 bytes per value, and
+ * {@link #forEach(IntConsumer)} reads the values without creating any object.
+ * <p>
+ * The implementations are not thread-safe: like an {@code ArrayList}, they need a lock,
+ * or a single writing thread.
+ */
+public interface IntList {
+
+    void add(int value);
+
+    /**
+     * Adds {@code length} values from {@code values}, starting at {@code offset}, copying
+     * them in as few blocks as possible.
+     */
+    void addAll(int[] values, int offset, int length);
+
+    int get(int index);
+
+    int size();
+
+    /**
+     * Passes every value, in order, to {@code action}.
+     */
+    void forEach(IntConsumer action);
+
+    int[] toArray();
+}
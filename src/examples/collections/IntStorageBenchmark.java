@@ -0,0 +1,147 @@
+package examples.collections;
+
+import java.lang.management.BufferPoolMXBean;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.function.IntConsumer;
+
+/**
+ * Stores {@value #VALUES} numbers in each kind of list and reports:
+ * <ul>
+ *     <li>the memory per value, on the heap and off it, measured after a garbage collection
+ *     with the list still alive,</li>
+ *     <li>how fast values are appended one by one, and in blocks of {@value #BLOCK}
+ *     with {@code addAll()},</li>
+ *     <li>how fast the values can be read back and summed.</li>
+ * </ul>
+ * {@code ArrayList<Integer>} runs twice: with numbers below 100 like the Worker
+ * examples, which all come from the {@code Integer} cache so only the reference is paid
+ * for, and with numbers of any size, which need an {@code Integer} object each.
+ */
+public class IntStorageBenchmark {
+
+    private static final int VALUES = 10_000_000;
+    private static final int BLOCK = 1024;
+
+    private static final BufferPoolMXBean DIRECT_POOL = directPool();
+
+    private static volatile long sink;
+
+    /** Creates an empty list of one kind. */
+    private interface ListFactory {
+        IntList create();
+    }
+
+    public static void main(String[] args) {
+        Random random = new Random(42);
+        int[] small = new int[VALUES];
+        int[] large = new int[VALUES];
+        for (int i = 0; i < VALUES; i++) {
+            small[i] = random.nextInt(100);
+            large[i] = random.nextInt();
+        }
+
+        for (int round = 0; round < 2; round++) {
+            boolean print = round == 1;
+            if (print)
+                System.out.printf("%,d values%n%-26s %12s %12s %14s %14s %14s%n", VALUES, "",
+                        "heap B/value", "off-heap B/v", "add/s", "addAll/s", "sum/s");
+            boxed(print, "ArrayList<Integer> 0..99", small);
+            boxed(print, "ArrayList<Integer> any", large);
+            primitive(print, "IntArrayList", large, new ListFactory() {
+                @Override
+                public IntList create() {
+                    return new IntArrayList();
+                }
+            });
+            primitive(print, "SegmentedIntList", large, new ListFactory() {
+                @Override
+                public IntList create() {
+                    return new SegmentedIntList();
+                }
+            });
+            primitive(print, "OffHeapIntList", large, new ListFactory() {
+                @Override
+                public IntList create() {
+                    return new OffHeapIntList();
+                }
+            });
+        }
+    }
+
+    private static void boxed(boolean print, String name, int[] values) {
+        long heap = usedHeap();
+        long start = System.nanoTime();
+        List<Integer> list = new ArrayList<Integer>();
+        for (int value : values)
+            list.add(value);
+        long addTime = System.nanoTime() - start;
+        double heapPerValue = (double) (usedHeap() - heap) / VALUES;
+
+        start = System.nanoTime();
+        long sum = 0;
+        for (int value : list)
+            sum += value;
+        long sumTime = System.nanoTime() - start;
+        sink = sum + list.size();
+
+        if (print)
+            System.out.printf("%-26s %12.1f %12s %,14.0f %14s %,14.0f%n", name, heapPerValue, "-",
+                    VALUES / (addTime / 1e9), "-", VALUES / (sumTime / 1e9));
+    }
+
+    private static void primitive(boolean print, String name, int[] values, ListFactory factory) {
+        long heap = usedHeap();
+        long direct = usedDirect();
+        long start = System.nanoTime();
+        IntList list = factory.create();
+        for (int value : values)
+            list.add(value);
+        long addTime = System.nanoTime() - start;
+        double heapPerValue = (double) (usedHeap() - heap) / VALUES;
+        double directPerValue = (double) (usedDirect() - direct) / VALUES;
+
+        start = System.nanoTime();
+        IntList bulk = factory.create();
+        for (int offset = 0; offset < VALUES; offset += BLOCK)
+            bulk.addAll(values, offset, Math.min(BLOCK, VALUES - offset));
+        long addAllTime = System.nanoTime() - start;
+        if (bulk.size() != VALUES || bulk.get(VALUES - 1) != values[VALUES - 1])
+            throw new IllegalStateException(name + " lost values");
+        bulk = null;
+
+        final long[] sum = new long[1];
+        start = System.nanoTime();
+        list.forEach(new IntConsumer() {
+            @Override
+            public void accept(int value) {
+                sum[0] += value;
+            }
+        });
+        long sumTime = System.nanoTime() - start;
+        sink = sum[0] + list.size();
+
+        if (print)
+            System.out.printf("%-26s %12.1f %12.1f %,14.0f %,14.0f %,14.0f%n", name, heapPerValue, directPerValue,
+                    VALUES / (addTime / 1e9), VALUES / (addAllTime / 1e9), VALUES / (sumTime / 1e9));
+    }
+
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++)
+            System.gc();
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    private static long usedDirect() {
+        return DIRECT_POOL == null ? 0 : DIRECT_POOL.getMemoryUsed();
+    }
+
+    private static BufferPoolMXBean directPool() {
+        for (BufferPoolMXBean pool : ManagementFactory.getPlatformMXBeans(BufferPoolMXBean.class))
+            if (pool.getName().equals("direct")) return pool;
+        return null;
+    }
+}
@@ -0,0 +1,98 @@
+package examples.collections;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.util.Arrays;
+import java.util.function.IntConsumer;
+
+/**
+ * Like {@link SegmentedIntList}, but with segments outside the Java heap, in direct
+ * {@link ByteBuffer}s.
+ * <p>
+ * The garbage collector never scans or moves off-heap memory, so hundreds of millions
+ * of values do not make collections slower, and they do not count against
+ * {@code -Xmx}. They count against {@code -XX:MaxDirectMemorySize} instead. The memory
+ * is given back when the list, and with it its buffers, is garbage collected.
+ * <p>
+ * The buffers use the processor's native byte order, so reading and writing an
+ * {@code int} needs no byte swapping.
+ */
+public class OffHeapIntList implements IntList {
+
+    private static final int SHIFT = 14;
+    private static final int SEGMENT_SIZE = 1 << SHIFT;
+    private static final int MASK = SEGMENT_SIZE - 1;
+
+    private IntBuffer[] segments = new IntBuffer[8];
+    private IntBuffer last;
+    private int size;
+
+    @Override
+    public void add(int value) {
+        int position = size & MASK;
+        if (position == 0) last = addSegment();
+        last.put(position, value);
+        size++;
+    }
+
+    @Override
+    public void addAll(int[] source, int offset, int length) {
+        if (offset < 0 || length < 0 || offset + length > source.length)
+            throw new IndexOutOfBoundsException("offset " + offset + ", length " + length);
+        while (length > 0) {
+            int position = size & MASK;
+            if (position == 0) last = addSegment();
+            int chunk = Math.min(length, SEGMENT_SIZE - position);
+            last.position(position);
+            last.put(source, offset, chunk);
+            size += chunk;
+            offset += chunk;
+            length -= chunk;
+        }
+    }
+
+    private IntBuffer addSegment() {
+        int index = size >>> SHIFT;
+        if (index == segments.length) segments = Arrays.copyOf(segments, index * 2);
+        return segments[index] = ByteBuffer.allocateDirect(SEGMENT_SIZE * 4)
+                .order(ByteOrder.nativeOrder())
+                .asIntBuffer();
+    }
+
+    @Override
+    public int get(int index) {
+        if (index >= size) throw new IndexOutOfBoundsException("Index: " + index + ", size: " + size);
+        return segments[index >>> SHIFT].get(index & MASK);
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public void forEach(IntConsumer action) {
+        int remaining = size;
+        for (int s = 0; remaining > 0; s++) {
+            IntBuffer segment = segments[s];
+            int count = Math.min(remaining, SEGMENT_SIZE);
+            for (int i = 0; i < count; i++)
+                action.accept(segment.get(i));
+            remaining -= count;
+        }
+    }
+
+    @Override
+    public int[] toArray() {
+        int[] result = new int[size];
+        for (int s = 0, copied = 0; copied < size; s++) {
+            int count = Math.min(size - copied, SEGMENT_SIZE);
+            IntBuffer segment = segments[s].duplicate();
+            segment.position(0);
+            segment.get(result, copied, count);
+            copied += count;
+        }
+        return result;
+    }
+}
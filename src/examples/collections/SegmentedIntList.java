@@ -0,0 +1,92 @@
+package examples.collections;
+
+import java.util.Arrays;
+import java.util.function.IntConsumer;
+
+/**
+ * An {@link IntList} stored in fixed-size segments of {@value #SEGMENT_SIZE} values,
+ * so that growing never copies a value.
+ * <p>
+ * When the last segment is full, a new one is added. Only the small directory of
+ * segments is copied when it runs out of room, one reference per segment. For a list of
+ * hundreds of millions of values that means no pause to copy gigabytes, and no moment
+ * where the old and the new array both have to fit in memory.
+ * <p>
+ * The segment size is a power of two, so the segment and the position of an index are
+ * a shift and a mask.
+ */
+public class SegmentedIntList implements IntList {
+
+    /** Values per segment: 64 KB of {@code int}s. */
+    public static final int SEGMENT_SIZE = 1 << 14;
+
+    private static final int SHIFT = 14;
+    private static final int MASK = SEGMENT_SIZE - 1;
+
+    private int[][] segments = new int[8][];
+    private int[] last;                 // the segment being filled
+    private int size;
+
+    @Override
+    public void add(int value) {
+        int position = size & MASK;
+        if (position == 0) last = addSegment();
+        last[position] = value;
+        size++;
+    }
+
+    @Override
+    public void addAll(int[] source, int offset, int length) {
+        if (offset < 0 || length < 0 || offset + length > source.length)
+            throw new IndexOutOfBoundsException("offset " + offset + ", length " + length);
+        while (length > 0) {
+            int position = size & MASK;
+            if (position == 0) last = addSegment();
+            int chunk = Math.min(length, SEGMENT_SIZE - position);
+            System.arraycopy(source, offset, last, position, chunk);
+            size += chunk;
+            offset += chunk;
+            length -= chunk;
+        }
+    }
+
+    private int[] addSegment() {
+        int index = size >>> SHIFT;
+        if (index == segments.length) segments = Arrays.copyOf(segments, index * 2);
+        return segments[index] = new int[SEGMENT_SIZE];
+    }
+
+    @Override
+    public int get(int index) {
+        if (index >= size) throw new IndexOutOfBoundsException("Index: " + index + ", size: " + size);
+        return segments[index >>> SHIFT][index & MASK];
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public void forEach(IntConsumer action) {
+        int remaining = size;
+        for (int s = 0; remaining > 0; s++) {
+            int[] segment = segments[s];
+            int count = Math.min(remaining, SEGMENT_SIZE);
+            for (int i = 0; i < count; i++)
+                action.accept(segment[i]);
+            remaining -= count;
+        }
+    }
+
+    @Override
+    public int[] toArray() {
+        int[] result = new int[size];
+        for (int s = 0, copied = 0; copied < size; s++) {
+            int count = Math.min(size - copied, SEGMENT_SIZE);
+            System.arraycopy(segments[s], 0, result, copied, count);
+            copied += count;
+        }
+        return result;
+    }
+}
@@ -1,5 +1,7 @@
 package examples.countdown_latches;
 
+import examples.logging.AsyncLog;
+
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
@@ -35,11 +37,11 @@ class Processor implements Runnable {
 
     @Override
     public void run() {
-        System.out.println("Started...");
+        AsyncLog.println("Started...");
         try {
-            System.out.println("Process " + id + " does some work");
+            AsyncLog.println("Process " + id + " does some work");
             Thread.sleep(3000); // simulates some Process work
-            System.out.println("Process " + id + " finish work");
+            AsyncLog.println("Process " + id + " finish work");
         } catch (InterruptedException e) {
             e.printStackTrace();
         } finally {
@@ -69,6 +71,6 @@ public class App {
             e.printStackTrace();
         }
 
-        System.out.println("Tasks completed. Main thread continues.");
+        AsyncLog.println("Tasks completed. Main thread continues.");
     }
 }
@@ -0,0 +1,59 @@
+package examples.counters;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A counter for metrics, where a count within a few percent is good enough.
+ * <p>
+ * Instead of adding 1 every time, each increment adds {@code 2^sampleShift} with a
+ * probability of {@code 1 / 2^sampleShift}, so the shared {@link AtomicLong} is written
+ * {@code 2^sampleShift} times less often. The expected value of the count is exact, and
+ * its relative error shrinks as the count grows: after {@code n} increments, the standard
+ * deviation is about {@code sqrt(2^sampleShift / n)} of the count. With a shift of 6, that
+ * is about 2.5% after 100,000 increments and 0.25% after 10,000,000.
+ * <p>
+ * Deciding whether to count only needs {@link ThreadLocalRandom}, which has no shared state.
+ */
+public class ApproximateCounter implements Counter {
+
+    private final AtomicLong count = new AtomicLong();
+    private final int sampleShift;
+    private final int sampleMask;
+
+    public ApproximateCounter() {
+        this(6);
+    }
+
+    /**
+     * @param sampleShift one increment in {@code 2^sampleShift} is recorded, between 0 and 30
+     */
+    public ApproximateCounter(int sampleShift) {
+        if (sampleShift < 0 || sampleShift > 30)
+            throw new IllegalArgumentException("Shift out of range: " + sampleShift);
+        this.sampleShift = sampleShift;
+        this.sampleMask = (1 << sampleShift) - 1;
+    }
+
+    @Override
+    public void increment() {
+        if ((ThreadLocalRandom.current().nextInt() & sampleMask) == 0)
+            count.addAndGet(1L << sampleShift);
+    }
+
+    /**
+     * Adds {@code delta} exactly; only single increments are sampled.
+     */
+    @Override
+    public void add(long delta) {
+        count.addAndGet(delta);
+    }
+
+    /**
+     * @return an estimate of the number of increments, plus the exact deltas
+     */
+    @Override
+    public long sum() {
+        return count.get();
+    }
+}
@@ -0,0 +1,23 @@
+package examples.counters;
+
+/**
+ * A counter that many threads can increment at the same time.
+ * <p>
+ * The implementations in this package are alternatives to
+ * {@link examples.basic_synchronization.synchronized_keyword.Worker#increment()},
+ * where every {@code count++} takes the same lock. They differ in how exact and how
+ * up to date {@link #sum()} is, in exchange for how little the incrementing threads
+ * get in each other's way.
+ */
+public interface Counter {
+
+    void increment();
+
+    void add(long delta);
+
+    /**
+     * @return the current count; see each implementation for how exact it is while
+     * other threads are still counting
+     */
+    long sum();
+}
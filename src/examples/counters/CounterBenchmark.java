@@ -0,0 +1,209 @@
+package examples.counters;
+
+import examples.metrics.ParallelTimer;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Counts to {@value #INCREMENTS} with 1 to 64 threads, each thread doing its share of the
+ * increments, with every kind of counter:
+ * <ul>
+ *     <li>a {@code synchronized} method, as in
+ *     {@link examples.basic_synchronization.synchronized_keyword.Worker#increment()},</li>
+ *     <li>the two alternatives listed in that class, {@code AtomicInteger} and
+ *     {@code ReentrantLock},</li>
+ *     <li>the JDK's {@code LongAdder}, for reference,</li>
+ *     <li>{@link StripedCounter}, {@link ThreadLocalCounter} and {@link ApproximateCounter}.</li>
+ * </ul>
+ * It prints millions of increments per second, and checks that every counter reached the
+ * expected count. The approximate counter's error is printed instead.
+ */
+public class CounterBenchmark {
+
+    private static final int INCREMENTS = 16_000_000;
+    private static final int[] THREADS = {1, 2, 4, 8, 16, 32, 64};
+
+    /** Creates a fresh counter for each run. */
+    private interface CounterFactory {
+        Counter create();
+    }
+
+    public static void main(String[] args) throws InterruptedException {
+        String[] names = {"synchronized", "AtomicInteger", "ReentrantLock", "LongAdder",
+                "StripedCounter", "ThreadLocalCounter", "ApproximateCounter"};
+        CounterFactory[] factories = {
+                new CounterFactory() {
+                    @Override
+                    public Counter create() {
+                        return new SynchronizedCounter();
+                    }
+                },
+                new CounterFactory() {
+                    @Override
+                    public Counter create() {
+                        return new AtomicIntegerCounter();
+                    }
+                },
+                new CounterFactory() {
+                    @Override
+                    public Counter create() {
+                        return new LockCounter();
+                    }
+                },
+                new CounterFactory() {
+                    @Override
+                    public Counter create() {
+                        return new LongAdderCounter();
+                    }
+                },
+                new CounterFactory() {
+                    @Override
+                    public Counter create() {
+                        return new StripedCounter();
+                    }
+                },
+                new CounterFactory() {
+                    @Override
+                    public Counter create() {
+                        return new ThreadLocalCounter();
+                    }
+                },
+                new CounterFactory() {
+                    @Override
+                    public Counter create() {
+                        return new ApproximateCounter();
+                    }
+                },
+        };
+
+        // Warm-up, so that every counter is compiled before it is measured
+        for (CounterFactory factory : factories)
+            run(factory.create(), 4, INCREMENTS / 8);
+
+        System.out.printf("Millions of increments per second, %,d increments, %d cores%n",
+                INCREMENTS, Runtime.getRuntime().availableProcessors());
+        System.out.printf("%-20s", "threads");
+        for (int threads : THREADS)
+            System.out.printf("%9d", threads);
+        System.out.println();
+
+        for (int c = 0; c < factories.length; c++) {
+            System.out.printf("%-20s", names[c]);
+            double worstError = 0;
+            for (int threads : THREADS) {
+                Counter counter = factories[c].create();
+                long elapsed = run(counter, threads, INCREMENTS);
+                System.out.printf("%9.1f", INCREMENTS / (elapsed / 1e3));
+                long expected = INCREMENTS / threads * threads;
+                if (counter instanceof ApproximateCounter) {
+                    worstError = Math.max(worstError, Math.abs(counter.sum() - expected) / (double) expected);
+                } else if (counter.sum() != expected) {
+                    throw new IllegalStateException(names[c] + " counted " + counter.sum() + " instead of " + expected);
+                }
+            }
+            if (worstError > 0) System.out.printf("   (error up to %.3f%%)", worstError * 100);
+            System.out.println();
+        }
+    }
+
+    private static long run(final Counter counter, int threads, int increments) throws InterruptedException {
+        return ParallelTimer.time(threads, increments, new ParallelTimer.Share() {
+            @Override
+            public void run(int thread, int first, int count) {
+                for (int i = 0; i < count; i++)
+                    counter.increment();
+                if (counter instanceof ThreadLocalCounter) ((ThreadLocalCounter) counter).flush();
+            }
+        });
+    }
+
+    private static final class SynchronizedCounter implements Counter {
+        private long count;
+
+        @Override
+        public synchronized void increment() {
+            count++;
+        }
+
+        @Override
+        public synchronized void add(long delta) {
+            count += delta;
+        }
+
+        @Override
+        public synchronized long sum() {
+            return count;
+        }
+    }
+
+    private static final class AtomicIntegerCounter implements Counter {
+        private final AtomicInteger count = new AtomicInteger();
+
+        @Override
+        public void increment() {
+            count.incrementAndGet();
+        }
+
+        @Override
+        public void add(long delta) {
+            count.addAndGet((int) delta);
+        }
+
+        @Override
+        public long sum() {
+            return count.get();
+        }
+    }
+
+    private static final class LockCounter implements Counter {
+        private final Lock lock = new ReentrantLock();
+        private long count;
+
+        @Override
+        public void increment() {
+            add(1);
+        }
+
+        @Override
+        public void add(long delta) {
+            lock.lock();
+            try {
+                count += delta;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        @Override
+        public long sum() {
+            lock.lock();
+            try {
+                return count;
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    private static final class LongAdderCounter implements Counter {
+        private final LongAdder count = new LongAdder();
+
+        @Override
+        public void increment() {
+            count.increment();
+        }
+
+        @Override
+        public void add(long delta) {
+            count.add(delta);
+        }
+
+        @Override
+        public long sum() {
+            return count.sum();
+        }
+    }
+}
@@ -0,0 +1,86 @@
+package examples.counters;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A counter split into several cells, like {@code java.util.concurrent.atomic.LongAdder}.
+ * <p>
+ * With a single {@code AtomicInteger}, every increment is a compare-and-set on the same
+ * memory, and the cache line holding it has to travel from core to core on each one.
+ * Here each thread adds to one of several cells, so threads on different cells do not
+ * touch the same memory. {@link #sum()} adds up all the cells.
+ * <p>
+ * The cells are {@value #PADDING} longs apart in one {@link AtomicLongArray}, so each
+ * one is alone in its own 128 bytes: two cells on the same cache line would be
+ * <em>false sharing</em>, and the threads would fight over the line as if they shared a
+ * counter. A thread starts on a cell picked from its id. When its compare-and-set fails,
+ * another thread is using the same cell, so it moves to another one.
+ * <p>
+ * {@link #sum()} is exact once the counting threads are done. While they run, it may
+ * miss the increments made during the sum.
+ */
+public class StripedCounter implements Counter {
+
+    /** Longs between two cells: 128 bytes, two cache lines on most processors. */
+    static final int PADDING = 16;
+
+    private final AtomicLongArray cells;
+    private final int mask;
+
+    // The cell each thread currently uses
+    private final ThreadLocal<int[]> cellIndex = new ThreadLocal<int[]>() {
+        @Override
+        protected int[] initialValue() {
+            long id = Thread.currentThread().getId();
+            return new int[]{(int) (id * 0x9E3779B9L >>> 16)};
+        }
+    };
+
+    /**
+     * Creates a counter with a cell for every two processors.
+     */
+    public StripedCounter() {
+        this(2 * Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * @param stripes number of cells, rounded up to a power of two
+     */
+    public StripedCounter(int stripes) {
+        if (stripes < 1) throw new IllegalArgumentException("At least one stripe is needed");
+        int count = Integer.highestOneBit(stripes);
+        if (count < stripes) count <<= 1;
+        mask = count - 1;
+        // One extra cell of padding in front, away from the array header
+        cells = new AtomicLongArray((count + 1) * PADDING);
+    }
+
+    @Override
+    public void increment() {
+        add(1);
+    }
+
+    @Override
+    public void add(long delta) {
+        int[] index = cellIndex.get();
+        int slot = (((index[0] & mask) + 1) * PADDING);
+        long current = cells.get(slot);
+        if (!cells.compareAndSet(slot, current, current + delta)) {
+            // Another thread is on this cell: move to another one for next time
+            index[0] = index[0] * 0x01000193 + 1;
+            cells.addAndGet(slot, delta);
+        }
+    }
+
+    @Override
+    public long sum() {
+        long sum = 0;
+        for (int i = 1; i <= mask + 1; i++)
+            sum += cells.get(i * PADDING);
+        return sum;
+    }
+
+    public int getStripes() {
+        return mask + 1;
+    }
+}
@@ -0,0 +1,90 @@
+package examples.counters;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLongFieldUpdater;
+
+/**
+ * A counter where every thread counts in a cell of its own, and only publishes its count
+ * from time to time.
+ * <p>
+ * A thread's cell is written by that thread only, so an increment needs no
+ * compare-and-set: it adds to a plain field. Every {@code publishInterval} increments,
+ * the thread copies its count to a {@code published} field with an ordered store, where
+ * {@link #sum()} reads it. An ordered store costs about as much as a plain one, but it
+ * guarantees that the reader sees a count no older than the previous publication.
+ * <p>
+ * The price is that {@link #sum()} can lag behind by up to {@code publishInterval - 1}
+ * increments per thread. A thread calls {@link #flush()} to publish what it counted
+ * so far, for example before it ends. The cells of threads that ended are kept, so their
+ * counts are not lost.
+ */
+public class ThreadLocalCounter implements Counter {
+
+    /** The count of one thread, padded to keep other cells off its cache line. */
+    static final class Cell {
+        long p1, p2, p3, p4, p5, p6, p7;
+        long local;                 // read and written by the owner only
+        volatile long published;
+        long p9, p10, p11, p12, p13, p14, p15;
+    }
+
+    private static final AtomicLongFieldUpdater<Cell> PUBLISHED =
+            AtomicLongFieldUpdater.newUpdater(Cell.class, "published");
+
+    private final int publishInterval;
+    private final Queue<Cell> cells = new ConcurrentLinkedQueue<Cell>();
+    private final ThreadLocal<Cell> cell = new ThreadLocal<Cell>() {
+        @Override
+        protected Cell initialValue() {
+            Cell created = new Cell();
+            cells.add(created);
+            return created;
+        }
+    };
+
+    public ThreadLocalCounter() {
+        this(64);
+    }
+
+    /**
+     * @param publishInterval number of increments between two publications; 1 makes
+     *                        {@link #sum()} always up to date
+     */
+    public ThreadLocalCounter(int publishInterval) {
+        if (publishInterval < 1) throw new IllegalArgumentException("Interval must be positive: " + publishInterval);
+        this.publishInterval = publishInterval;
+    }
+
+    @Override
+    public void increment() {
+        add(1);
+    }
+
+    @Override
+    public void add(long delta) {
+        Cell mine = cell.get();
+        long count = mine.local + delta;
+        mine.local = count;
+        if (count - mine.published >= publishInterval) PUBLISHED.lazySet(mine, count);
+    }
+
+    /**
+     * Publishes the count of the calling thread.
+     */
+    public void flush() {
+        Cell mine = cell.get();
+        PUBLISHED.lazySet(mine, mine.local);
+    }
+
+    /**
+     * @return the published counts of all the threads
+     */
+    @Override
+    public long sum() {
+        long sum = 0;
+        for (Cell each : cells)
+            sum += each.published;
+        return sum;
+    }
+}
@@ -1,6 +1,8 @@
 package examples.interrupting_threads;
 
-import java.util.Random;
+import examples.logging.AsyncLog;
+import examples.random.RandomStreams;
+import examples.random.SplitRandom;
 
 /**
  * Demonstrates how to interrupt a running thread in Java using
@@ -20,18 +22,18 @@ import java.util.Random;
 public class App {
 
     public static void main(String[] args) throws InterruptedException {
-        System.out.println("Starting.");
+        AsyncLog.println("Starting.");
 
-        System.out.println("Running...");
+        AsyncLog.println("Running...");
         Thread t1 = new Thread(new Runnable() {
             @Override
             public void run() {
-                Random random = new Random();
+                SplitRandom random = RandomStreams.shared().current();
                 for (int i = 0; i < 1E8; i++) {
                     /*
                     // if-check to see if the thread is interrupted
                     if (Thread.currentThread().isInterrupted()) {
-                        System.out.println("Thread is interrupted!");
+                        AsyncLog.println("Thread is interrupted!");
                         break;
                     }
                     */
@@ -42,7 +44,7 @@ public class App {
                         // The interrupted status of the current thread is cleared
                         // when this exception is thrown.
                     } catch (InterruptedException e) {
-                        System.out.println("InterruptedException caught, t1 is interrupted");
+                        AsyncLog.println("InterruptedException caught, t1 is interrupted");
                         break;
                     }
                     Math.sin(random.nextDouble());  // This line just simulates some work
@@ -66,6 +68,6 @@ public class App {
 
         t1.join();
 
-        System.out.println("Finished!");
+        AsyncLog.println("Finished!");
     }
 }
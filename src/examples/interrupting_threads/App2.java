@@ -1,5 +1,7 @@
 package examples.interrupting_threads;
 
+import examples.logging.AsyncLog;
+
 import java.util.concurrent.*;
 
 /**
@@ -20,7 +22,7 @@ import java.util.concurrent.*;
 public class App2 {
 
     public static void main(String[] args) throws InterruptedException {
-        System.out.println("Starting.");
+        AsyncLog.println("Starting.");
 
         ExecutorService executor = Executors.newCachedThreadPool();
 
@@ -29,7 +31,7 @@ public class App2 {
             public Void call() throws Exception {
                 for (int i = 0; i < 1E8; i++) {
                     if (Thread.currentThread().isInterrupted()) {
-                        System.out.printf("Interrupted at %d !!!", i);
+                        AsyncLog.printf("Interrupted at %d !!!", i);
                         break;
                     }
                 }
@@ -47,6 +49,6 @@ public class App2 {
         executor.shutdownNow();
 
         executor.awaitTermination(1, TimeUnit.DAYS);
-        System.out.println("Finished.");
+        AsyncLog.println("Finished.");
     }
 }
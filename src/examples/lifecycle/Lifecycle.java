@@ -0,0 +1,152 @@
+package examples.lifecycle;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Starts and stops a group of worker threads, and lets them react to a stop within
+ * microseconds.
+ * <p>
+ * The usual way to stop a worker, as in {@code volatile_keyword.Processor}, is a
+ * {@code volatile boolean} that the worker checks between two {@code Thread.sleep()}
+ * calls. The worker only sees the flag when it wakes up, so stopping can take as long
+ * as the sleep. Here a worker waits with {@link #pause(long, TimeUnit)} instead, which
+ * parks the thread, and {@link #stop()} unparks every worker that joined, so a pausing
+ * worker returns at once.
+ * <p>
+ * A worker thread calls {@link #enter()} when it starts and {@link #exit()} when it
+ * ends, so the lifecycle knows whom to wake up and when all of them are gone:
+ * <pre>
+ *     if (!lifecycle.enter()) return;
+ *     try {
+ *         while (lifecycle.isRunning()) {
+ *             doSomeWork();
+ *             lifecycle.pause(100, TimeUnit.MILLISECONDS);
+ *         }
+ *     } finally {
+ *         lifecycle.exit();
+ *     }
+ * </pre>
+ * {@link #stop()} reaches every worker in one call, whether there is one worker or
+ * a hundred thousand. A worker blocked in something other than {@code pause()}, for
+ * example in {@code BlockingQueue.take()}, is only woken up by {@link #stopNow()}, which
+ * interrupts the workers as well.
+ */
+public class Lifecycle {
+
+    public enum State {
+        NEW, RUNNING, STOPPING, TERMINATED
+    }
+
+    private final AtomicReference<State> state = new AtomicReference<State>(State.NEW);
+    private final Set<Thread> workers = ConcurrentHashMap.newKeySet();
+    private final AtomicInteger active = new AtomicInteger();
+    private final CountDownLatch terminated = new CountDownLatch(1);
+
+    /**
+     * Lets workers enter. Does nothing if already started.
+     */
+    public void start() {
+        state.compareAndSet(State.NEW, State.RUNNING);
+    }
+
+    public State getState() {
+        return state.get();
+    }
+
+    /**
+     * @return {@code true} until {@link #stop()} is called; a single volatile read
+     */
+    public boolean isRunning() {
+        return state.get() == State.RUNNING;
+    }
+
+    /**
+     * Registers the calling thread as a worker. Must be followed by {@link #exit()}.
+     *
+     * @return {@code false} if the lifecycle is not running, in which case the worker
+     * must not start and must not call {@code exit()}
+     */
+    public boolean enter() {
+        active.incrementAndGet();
+        workers.add(Thread.currentThread());
+        if (state.get() != State.RUNNING) {
+            // stop() may have missed this thread: leave as if it had never entered
+            exit();
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Unregisters the calling worker. The last worker to leave after a stop makes the
+     * lifecycle {@link State#TERMINATED}.
+     */
+    public void exit() {
+        workers.remove(Thread.currentThread());
+        if (active.decrementAndGet() == 0 && state.get() == State.STOPPING) terminate();
+    }
+
+    /**
+     * Waits until the timeout elapses or the lifecycle stops, whichever comes first.
+     * Also returns early if the thread is interrupted, leaving its interrupt status set.
+     *
+     * @return {@code true} if still running
+     */
+    public boolean pause(long timeout, TimeUnit unit) {
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        while (isRunning()) {
+            long left = deadline - System.nanoTime();
+            if (left <= 0 || Thread.currentThread().isInterrupted()) break;
+            LockSupport.parkNanos(this, left);  // may also return for no reason, hence the loop
+        }
+        return isRunning();
+    }
+
+    /**
+     * Tells every worker to stop, and wakes up the ones in {@link #pause(long, TimeUnit)}.
+     * Does not wait for them: see {@link #awaitTermination(long, TimeUnit)}.
+     */
+    public void stop() {
+        if (!state.compareAndSet(State.RUNNING, State.STOPPING)
+                && !state.compareAndSet(State.NEW, State.STOPPING)) return;
+        for (Thread worker : workers)
+            LockSupport.unpark(worker);
+        if (active.get() == 0) terminate();
+    }
+
+    /**
+     * Like {@link #stop()}, and also interrupts every worker, to wake up the ones blocked
+     * in {@code sleep()}, {@code wait()} or a blocking queue.
+     */
+    public void stopNow() {
+        stop();
+        for (Thread worker : workers)
+            worker.interrupt();
+    }
+
+    private void terminate() {
+        if (state.compareAndSet(State.STOPPING, State.TERMINATED)) terminated.countDown();
+    }
+
+    /**
+     * Waits until every worker has called {@link #exit()} after a stop.
+     *
+     * @return {@code true} if terminated, {@code false} if the timeout elapsed first
+     */
+    public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+        return terminated.await(timeout, unit);
+    }
+
+    /**
+     * @return number of workers that entered and did not exit yet
+     */
+    public int getActiveWorkers() {
+        return active.get();
+    }
+}
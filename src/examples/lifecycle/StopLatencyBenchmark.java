@@ -0,0 +1,157 @@
+package examples.lifecycle;
+
+import examples.metrics.LatencyHistogram;
+import examples.producer_consumer.virtual_threads.ThreadMode;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Starts 1, 1,000 and 100,000 workers that each do a little work every 100 ms, like
+ * {@code volatile_keyword.Processor}, stops them all at once and measures how long they
+ * take to exit:
+ * <ul>
+ *     <li><b>volatile + sleep:</b> each worker checks a {@code volatile boolean} between two
+ *     {@code Thread.sleep(100)} calls, as {@code Processor} used to,</li>
+ *     <li><b>Lifecycle:</b> each worker waits in {@link Lifecycle#pause(long, TimeUnit)}, and
+ *     {@link Lifecycle#stop()} wakes them all up.</li>
+ * </ul>
+ * For each run it prints how long {@code stop()} itself took, the time from the stop to the
+ * exit of a worker (p50, p99, max), and the time until the last worker thread terminated.
+ * Both groups measure that last time the same way, by joining every thread.
+ * <p>
+ * The workers are platform threads by default, and 100,000 of them do not fit in most
+ * machines, so that size only runs with {@code -D}{@value ThreadMode#PROPERTY}{@code =VIRTUAL}
+ * on Java 21 or later.
+ */
+public class StopLatencyBenchmark {
+
+    private static final int[] WORKERS = {1, 1_000, 100_000};
+    private static final int MAX_PLATFORM_WORKERS = 10_000;
+    private static final long PERIOD_MILLIS = 100;
+
+    private static volatile long stopAt;
+    private static volatile long sink;
+
+    /** One way of running and stopping the workers. */
+    private interface Group {
+        Runnable worker(LatencyHistogram exits, CountDownLatch ready);
+
+        void stop();
+    }
+
+    public static void main(String[] args) throws InterruptedException {
+        ThreadMode mode = ThreadMode.fromSystemProperty();
+        for (int round = 0; round < 2; round++) {
+            boolean print = round == 1;
+            if (print)
+                System.out.printf("%s threads, a pause of %d ms per worker%n%-18s %9s %12s %12s %12s %12s %12s%n",
+                        mode, PERIOD_MILLIS, "", "workers", "stop() us", "p50 us", "p99 us", "max us", "all out us");
+            for (int workers : WORKERS) {
+                if (mode == ThreadMode.PLATFORM && workers > MAX_PLATFORM_WORKERS) {
+                    if (print)
+                        System.out.printf("%-18s %,9d   skipped, needs -D%s=VIRTUAL%n", "", workers, ThreadMode.PROPERTY);
+                    continue;
+                }
+                if (!print && workers > 1_000) continue;  // the warm-up does not need the big sizes
+                run(print, "volatile + sleep", mode, workers, new PollingGroup());
+                run(print, "Lifecycle", mode, workers, new LifecycleGroup());
+            }
+        }
+    }
+
+    private static void run(boolean print, String name, ThreadMode mode, int workers, Group group)
+            throws InterruptedException {
+        LatencyHistogram exits = new LatencyHistogram();
+        CountDownLatch ready = new CountDownLatch(workers);
+        Thread[] threads = new Thread[workers];
+        for (int i = 0; i < workers; i++) {
+            threads[i] = mode.newThread(group.worker(exits, ready), "worker-" + i);
+            threads[i].start();
+        }
+        ready.await();
+        // Let the workers settle into their pauses, each at its own point of the period
+        Thread.sleep(PERIOD_MILLIS + 37);
+
+        long start = System.nanoTime();
+        stopAt = start;
+        group.stop();
+        long stopTime = System.nanoTime() - start;
+        for (Thread thread : threads)
+            thread.join();
+        long allOut = System.nanoTime() - start;
+
+        if (print)
+            System.out.printf("%-18s %,9d %,12.1f %,12.1f %,12.1f %,12.1f %,12.1f%n", name, workers,
+                    stopTime / 1e3, exits.getPercentile(50) / 1e3, exits.getPercentile(99) / 1e3,
+                    exits.getMax() / 1e3, allOut / 1e3);
+    }
+
+    private static void work() {
+        int sum = 0;
+        for (int n = 0; n < 100; n++)
+            sum += n;
+        sink += sum;
+    }
+
+    private static final class PollingGroup implements Group {
+        private volatile boolean running = true;
+
+        @Override
+        public Runnable worker(final LatencyHistogram exits, final CountDownLatch ready) {
+            return new Runnable() {
+                @Override
+                public void run() {
+                    ready.countDown();
+                    while (running) {
+                        work();
+                        try {
+                            Thread.sleep(PERIOD_MILLIS);
+                        } catch (InterruptedException e) {
+                            break;
+                        }
+                    }
+                    exits.record(System.nanoTime() - stopAt);
+                }
+            };
+        }
+
+        @Override
+        public void stop() {
+            running = false;
+        }
+    }
+
+    private static final class LifecycleGroup implements Group {
+        private final Lifecycle lifecycle = new Lifecycle();
+
+        LifecycleGroup() {
+            lifecycle.start();
+        }
+
+        @Override
+        public Runnable worker(final LatencyHistogram exits, final CountDownLatch ready) {
+            return new Runnable() {
+                @Override
+                public void run() {
+                    if (!lifecycle.enter()) return;
+                    try {
+                        ready.countDown();
+                        while (lifecycle.isRunning()) {
+                            work();
+                            lifecycle.pause(PERIOD_MILLIS, TimeUnit.MILLISECONDS);
+                        }
+                        exits.record(System.nanoTime() - stopAt);
+                    } finally {
+                        lifecycle.exit();
+                    }
+                }
+            };
+        }
+
+        @Override
+        public void stop() {
+            lifecycle.stop();
+        }
+    }
+}
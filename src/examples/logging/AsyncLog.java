@@ -0,0 +1,204 @@
+package examples.logging;
+
+import java.io.PrintStream;
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * An asynchronous replacement for {@code System.out.println()}.
+ * <p>
+ * {@code PrintStream} is internally synchronized: every call takes its lock and
+ * usually does a system call. When threads print inside their hot loops, or worse
+ * inside a {@code synchronized} block, the console becomes one more lock that
+ * serializes them. With this class:
+ * <ul>
+ *     <li>Each thread appends its lines to its own {@link LogBuffer}, without any lock.</li>
+ *     <li>A single background thread collects the lines of every buffer and writes them
+ *     to {@code System.out} in one call per batch.</li>
+ *     <li>When a thread's buffer is full, the overflow policy decides whether the
+ *     thread waits for the flusher ({@link OverflowPolicy#BLOCK}, the default) or the
+ *     line is dropped and counted ({@link OverflowPolicy#DROP}). It can be chosen with
+ *     {@code -Dexamples.log.overflow=DROP}.</li>
+ * </ul>
+ * Lines written by the same thread keep their order; lines written by different
+ * threads are only approximately ordered. Everything still buffered is written when
+ * the JVM exits, including through {@code System.exit()}.
+ * <p>
+ * {@code println(String, long, ...)} appends the numbers directly into the buffer,
+ * so the caller does not build a new {@code String} for each line.
+ */
+public final class AsyncLog {
+
+    /** What a thread does when its buffer is full. */
+    public enum OverflowPolicy {
+        /** Waits until the flusher has made room for the line. */
+        BLOCK,
+        /** Drops the line and counts it. */
+        DROP
+    }
+
+    private static final int BUFFER_LINES = 256;      // per thread, a power of two
+    private static final long IDLE_PARK_NANOS = 1_000_000;
+
+    private static final OverflowPolicy OVERFLOW_POLICY =
+            OverflowPolicy.valueOf(System.getProperty("examples.log.overflow", OverflowPolicy.BLOCK.name()));
+    private static final PrintStream OUT = System.out;
+    // Lock-free, so that registering the buffer of a new thread does not copy the others,
+    // and the flusher removes dead buffers in place while it walks the queue
+    private static final ConcurrentLinkedQueue<LogBuffer> BUFFERS = new ConcurrentLinkedQueue<LogBuffer>();
+    private static final AtomicLong DROPPED = new AtomicLong();
+
+    private static final ThreadLocal<LogBuffer> LOCAL_BUFFER = new ThreadLocal<LogBuffer>() {
+        @Override
+        protected LogBuffer initialValue() {
+            LogBuffer buffer = new LogBuffer(BUFFER_LINES, Thread.currentThread());
+            BUFFERS.add(buffer);
+            return buffer;
+        }
+    };
+
+    private static final Object FLUSH_MONITOR = new Object();
+    private static long completedPasses;    // guarded by FLUSH_MONITOR
+    private static final Thread FLUSHER;
+
+    static {
+        FLUSHER = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                flushLoop();
+            }
+        }, "async-log-flusher");
+        FLUSHER.setDaemon(true);
+        FLUSHER.start();
+
+        Runtime.getRuntime().addShutdownHook(new Thread(new Runnable() {
+            @Override
+            public void run() {
+                flush();
+                long dropped = DROPPED.get();
+                if (dropped > 0) OUT.println("[AsyncLog] " + dropped + " lines dropped");
+            }
+        }, "async-log-shutdown"));
+    }
+
+    private AsyncLog() {
+    }
+
+    public static void println(CharSequence text) {
+        StringBuilder line = claim();
+        if (line == null) return;
+        line.append(text).append('\n');
+        publish();
+    }
+
+    /**
+     * Writes {@code text} followed by {@code value}, without building a {@code String}.
+     */
+    public static void println(String text, long value) {
+        StringBuilder line = claim();
+        if (line == null) return;
+        line.append(text).append(value).append('\n');
+        publish();
+    }
+
+    /**
+     * Writes {@code text1 value1 text2 value2}, without building a {@code String}.
+     */
+    public static void println(String text1, long value1, String text2, long value2) {
+        StringBuilder line = claim();
+        if (line == null) return;
+        line.append(text1).append(value1).append(text2).append(value2).append('\n');
+        publish();
+    }
+
+    /**
+     * Writes {@code text} without a line separator.
+     */
+    public static void print(CharSequence text) {
+        StringBuilder line = claim();
+        if (line == null) return;
+        line.append(text);
+        publish();
+    }
+
+    public static void printf(String format, Object... args) {
+        print(String.format(format, args));
+    }
+
+    /**
+     * Waits until every line written before this call is out, for example before
+     * reading from the console.
+     */
+    public static void flush() {
+        synchronized (FLUSH_MONITOR) {
+            // The pass running right now may have missed our lines, wait for the next complete one.
+            long target = completedPasses + 2;
+            LockSupport.unpark(FLUSHER);
+            long deadline = System.currentTimeMillis() + 1000;
+            while (completedPasses < target && FLUSHER.isAlive()) {
+                long remaining = deadline - System.currentTimeMillis();
+                if (remaining <= 0) return;
+                try {
+                    FLUSH_MONITOR.wait(remaining);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+        }
+    }
+
+    /**
+     * @return the number of lines dropped because a buffer was full
+     */
+    public static long droppedLines() {
+        return DROPPED.get();
+    }
+
+    private static StringBuilder claim() {
+        LogBuffer buffer = LOCAL_BUFFER.get();
+        StringBuilder line = buffer.claim();
+        if (line != null) return line;
+
+        if (OVERFLOW_POLICY == OverflowPolicy.DROP || Thread.currentThread() == FLUSHER) {
+            DROPPED.incrementAndGet();
+            return null;
+        }
+        while ((line = buffer.claim()) == null) {
+            LockSupport.unpark(FLUSHER);
+            Thread.yield();
+        }
+        return line;
+    }
+
+    private static void publish() {
+        LOCAL_BUFFER.get().publish();
+    }
+
+    private static void flushLoop() {
+        StringBuilder batch = new StringBuilder(64 * 1024);
+        while (true) {
+            int lines = 0;
+            for (Iterator<LogBuffer> buffers = BUFFERS.iterator(); buffers.hasNext(); ) {
+                LogBuffer buffer = buffers.next();
+                lines += buffer.drainTo(batch);
+                // Forget the buffers of finished threads once they are empty
+                if (!buffer.isOwnerAlive() && buffer.isEmpty()) buffers.remove();
+            }
+            if (lines > 0) {
+                OUT.print(batch);
+                OUT.flush();
+                if (batch.capacity() > 1024 * 1024) batch = new StringBuilder(64 * 1024);
+                else batch.setLength(0);
+            }
+
+            synchronized (FLUSH_MONITOR) {
+                completedPasses++;
+                FLUSH_MONITOR.notifyAll();
+            }
+            if (lines == 0) LockSupport.parkNanos(IDLE_PARK_NANOS);
+        }
+    }
+}
@@ -0,0 +1,83 @@
+package examples.logging;
+
+import examples.producer_consumer.lock_free.Sequence;
+
+/**
+ * The private buffer of one thread writing to the {@link AsyncLog}.
+ * <p>
+ * It is a single-producer/single-consumer ring, like
+ * {@link examples.producer_consumer.lock_free.SpscRingBuffer}, but the slots are
+ * reusable {@code StringBuilder}s: the owner thread appends its message
+ * straight into the next free slot and the flusher thread copies it out. Once
+ * the builders have grown to the size of the longest message, logging a line
+ * does not allocate anything. The builders are created the first time their
+ * slot is used, so a thread that logs a few lines only pays for a few builders.
+ */
+class LogBuffer {
+
+    private final StringBuilder[] slots;
+    private final int mask;
+    private final Sequence tail = new Sequence();   // written by the owner thread
+    private final Sequence head = new Sequence();   // written by the flusher thread
+    private final Thread owner;
+
+    /**
+     * @param capacity number of lines, must be a power of two
+     * @param owner    the only thread allowed to write into this buffer
+     */
+    LogBuffer(int capacity, Thread owner) {
+        slots = new StringBuilder[capacity];
+        mask = capacity - 1;
+        this.owner = owner;
+    }
+
+    /**
+     * Returns the builder of the next free slot, to be filled and then published
+     * with {@link #publish()}. Called by the owner thread only.
+     *
+     * @return the empty builder of the next slot, or {@code null} if the buffer is full
+     */
+    StringBuilder claim() {
+        long currentTail = tail.get();
+        if (currentTail - head.get() == slots.length) return null;
+        int index = (int) (currentTail & mask);
+        StringBuilder slot = slots[index];
+        if (slot == null) {
+            slot = new StringBuilder(64);
+            slots[index] = slot;    // published to the flusher by the ordered store in publish()
+        }
+        return slot;
+    }
+
+    /**
+     * Makes the slot returned by the last {@link #claim()} visible to the flusher.
+     */
+    void publish() {
+        tail.set(tail.get() + 1);
+    }
+
+    /**
+     * Moves every published line into {@code output}. Called by the flusher thread only.
+     *
+     * @return the number of lines moved
+     */
+    int drainTo(StringBuilder output) {
+        long currentHead = head.get();
+        long currentTail = tail.get();
+        for (long i = currentHead; i < currentTail; i++) {
+            StringBuilder slot = slots[(int) (i & mask)];
+            output.append(slot);
+            slot.setLength(0);      // keeps the capacity for the next line
+        }
+        head.set(currentTail);
+        return (int) (currentTail - currentHead);
+    }
+
+    boolean isEmpty() {
+        return head.get() == tail.get();
+    }
+
+    boolean isOwnerAlive() {
+        return owner.isAlive();
+    }
+}
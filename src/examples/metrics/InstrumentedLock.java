@@ -0,0 +1,284 @@
+package examples.metrics;
+
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * A {@code Lock} that measures how long threads wait for it and hold it, into the
+ * {@link LockMetrics} of its name. It can replace a {@code ReentrantLock} field as is:
+ * <pre>
+ *     private final Lock lockAccount1 = new InstrumentedLock("dead_lock.lockAccount1");
+ * </pre>
+ * On a sampled acquisition of a {@code ReentrantLock}, it first asks the lock whether it
+ * is held or has waiting threads: if so, the acquisition counts as contended. Other kinds
+ * of locks cannot be asked, so they are probed with {@code tryLock()} instead, which takes
+ * the lock ahead of any waiting thread: a fair lock should be a {@code ReentrantLock}.
+ * The other acquisitions only cost a random number more than the wrapped lock. Re-entering
+ * the lock is not measured again, and the hold ends with the last {@code unlock()}.
+ * <p>
+ * A {@code tryLock()} that gives up is not an acquisition; it is counted apart, as a
+ * failed attempt.
+ * <p>
+ * While a thread waits on one of the lock's conditions, it does not hold the lock, so the
+ * hold is recorded up to the {@code await()} and a new one starts when it returns.
+ */
+public class InstrumentedLock implements Lock {
+
+    private final Lock delegate;
+    private final ReentrantLock reentrant;     // the delegate if it can be inspected, or null
+    private final LockMetrics metrics;
+
+    // Only written by the thread that holds the lock, so no need for volatile: a thread
+    // reading a stale value never mistakes it for itself
+    private Thread owner;
+    private int depth;
+    private long holdStart;     // 0 if the hold is not sampled
+
+    /**
+     * Wraps a new non-fair {@code ReentrantLock}.
+     */
+    public InstrumentedLock(String name) {
+        this(name, new ReentrantLock());
+    }
+
+    public InstrumentedLock(String name, Lock delegate) {
+        this(delegate, LockMetrics.named(name));
+    }
+
+    /**
+     * @param delegate a reentrant lock
+     */
+    public InstrumentedLock(Lock delegate, LockMetrics metrics) {
+        this.delegate = delegate;
+        this.reentrant = delegate instanceof ReentrantLock ? (ReentrantLock) delegate : null;
+        this.metrics = metrics;
+    }
+
+    public LockMetrics getMetrics() {
+        return metrics;
+    }
+
+    @Override
+    public void lock() {
+        Thread current = Thread.currentThread();
+        if (owner == current) {
+            delegate.lock();
+            depth++;
+            return;
+        }
+        if (!metrics.shouldSample()) {
+            delegate.lock();
+            acquired(current, 0);
+            return;
+        }
+        long start = System.nanoTime();
+        boolean contended;
+        if (reentrant != null) {
+            contended = isBusy();
+            delegate.lock();
+        } else {
+            contended = !delegate.tryLock();
+            if (contended) delegate.lock();
+        }
+        sampledAcquire(current, start, contended);
+    }
+
+    @Override
+    public void lockInterruptibly() throws InterruptedException {
+        Thread current = Thread.currentThread();
+        if (owner == current) {
+            delegate.lockInterruptibly();
+            depth++;
+            return;
+        }
+        if (!metrics.shouldSample()) {
+            delegate.lockInterruptibly();
+            acquired(current, 0);
+            return;
+        }
+        long start = System.nanoTime();
+        boolean contended;
+        if (reentrant != null) {
+            contended = isBusy();
+            delegate.lockInterruptibly();
+        } else {
+            contended = !delegate.tryLock();
+            if (contended) delegate.lockInterruptibly();
+        }
+        sampledAcquire(current, start, contended);
+    }
+
+    @Override
+    public boolean tryLock() {
+        Thread current = Thread.currentThread();
+        if (owner == current) {
+            if (!delegate.tryLock()) return false;
+            depth++;
+            return true;
+        }
+        boolean sample = metrics.shouldSample();
+        long start = sample ? System.nanoTime() : 0;
+        if (!delegate.tryLock()) {
+            if (sample) metrics.recordFailedAttempt();
+            return false;
+        }
+        if (sample) sampledAcquire(current, start, false);
+        else acquired(current, 0);
+        return true;
+    }
+
+    @Override
+    public boolean tryLock(long time, TimeUnit unit) throws InterruptedException {
+        Thread current = Thread.currentThread();
+        if (owner == current) {
+            if (!delegate.tryLock(time, unit)) return false;
+            depth++;
+            return true;
+        }
+        if (!metrics.shouldSample()) {
+            if (!delegate.tryLock(time, unit)) return false;
+            acquired(current, 0);
+            return true;
+        }
+        long start = System.nanoTime();
+        boolean contended;
+        if (reentrant != null) {
+            contended = isBusy();
+            if (!delegate.tryLock(time, unit)) {
+                metrics.recordFailedAttempt();
+                return false;
+            }
+        } else {
+            contended = !delegate.tryLock();
+            if (contended && !delegate.tryLock(time, unit)) {
+                metrics.recordFailedAttempt();
+                return false;
+            }
+        }
+        sampledAcquire(current, start, contended);
+        return true;
+    }
+
+    @Override
+    public void unlock() {
+        if (owner != Thread.currentThread()) throw new IllegalMonitorStateException();
+        if (--depth > 0) {
+            delegate.unlock();
+            return;
+        }
+        long start = holdStart;
+        owner = null;
+        delegate.unlock();
+        if (start != 0) metrics.recordHold(System.nanoTime() - start);
+    }
+
+    @Override
+    public Condition newCondition() {
+        return new InstrumentedCondition(delegate.newCondition());
+    }
+
+    // Tells whether another thread holds the lock or waits for it, without taking it. The
+    // answer can be outdated by the time the lock is taken, so the contention is an estimate.
+    private boolean isBusy() {
+        return reentrant.isLocked() || reentrant.hasQueuedThreads();
+    }
+
+    private void sampledAcquire(Thread current, long start, boolean contended) {
+        long now = System.nanoTime();
+        metrics.recordAcquire(now - start, contended);
+        acquired(current, now);
+    }
+
+    private void acquired(Thread current, long start) {
+        owner = current;
+        depth = 1;
+        holdStart = start;
+    }
+
+    // Ends the hold before an await(), and returns the depth to restore after it
+    private int release() {
+        if (owner != Thread.currentThread()) throw new IllegalMonitorStateException();
+        int savedDepth = depth;
+        long start = holdStart;
+        owner = null;
+        depth = 0;
+        if (start != 0) metrics.recordHold(System.nanoTime() - start);
+        return savedDepth;
+    }
+
+    private void reacquired(int savedDepth) {
+        acquired(Thread.currentThread(), metrics.shouldSample() ? System.nanoTime() : 0);
+        depth = savedDepth;
+    }
+
+    private final class InstrumentedCondition implements Condition {
+        private final Condition delegate;
+
+        InstrumentedCondition(Condition delegate) {
+            this.delegate = delegate;
+        }
+
+        @Override
+        public void await() throws InterruptedException {
+            int savedDepth = release();
+            try {
+                delegate.await();
+            } finally {
+                reacquired(savedDepth);
+            }
+        }
+
+        @Override
+        public void awaitUninterruptibly() {
+            int savedDepth = release();
+            try {
+                delegate.awaitUninterruptibly();
+            } finally {
+                reacquired(savedDepth);
+            }
+        }
+
+        @Override
+        public long awaitNanos(long nanosTimeout) throws InterruptedException {
+            int savedDepth = release();
+            try {
+                return delegate.awaitNanos(nanosTimeout);
+            } finally {
+                reacquired(savedDepth);
+            }
+        }
+
+        @Override
+        public boolean await(long time, TimeUnit unit) throws InterruptedException {
+            int savedDepth = release();
+            try {
+                return delegate.await(time, unit);
+            } finally {
+                reacquired(savedDepth);
+            }
+        }
+
+        @Override
+        public boolean awaitUntil(Date deadline) throws InterruptedException {
+            int savedDepth = release();
+            try {
+                return delegate.awaitUntil(deadline);
+            } finally {
+                reacquired(savedDepth);
+            }
+        }
+
+        @Override
+        public void signal() {
+            delegate.signal();
+        }
+
+        @Override
+        public void signalAll() {
+            delegate.signalAll();
+        }
+    }
+}
@@ -0,0 +1,116 @@
+package examples.metrics;
+
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
+
+/**
+ * A lock object for {@code synchronized} blocks that measures how long threads wait for
+ * it and hold it, into the {@link LockMetrics} of its name.
+ * <p>
+ * The JVM gives no hook into {@code synchronized}, so the block calls the monitor on its
+ * way in and out:
+ * <pre>
+ *     long ticket = lock1.beforeEnter();
+ *     synchronized (lock1) {
+ *         lock1.entered(ticket);
+ *         try {
+ *             ...
+ *         } finally {
+ *             lock1.beforeExit(ticket);
+ *         }
+ *     }
+ * </pre>
+ * and waits with {@link #await()} instead of {@code wait()}, so the time spent waiting
+ * does not count as held. As with {@link InstrumentedLock}, only one entry in
+ * {@code sampleInterval} is measured, and entering the monitor again from inside the
+ * block is not.
+ * <p>
+ * An entry is contended when another thread was inside the block at {@code beforeEnter()}.
+ */
+public class InstrumentedMonitor {
+
+    // Tickets: 0 for an entry that is not measured, 1 for a nested one. A measured entry
+    // is its start time on the monitor's own clock, which starts at 2, negated if contended.
+    private static final long UNSAMPLED = 0;
+    private static final long NESTED = 1;
+    private static final long ORIGIN = System.nanoTime() - 2;
+
+    private static final AtomicReferenceFieldUpdater<InstrumentedMonitor, Thread> OWNER =
+            AtomicReferenceFieldUpdater.newUpdater(InstrumentedMonitor.class, Thread.class, "owner");
+
+    private final LockMetrics metrics;
+
+    // Written with lazySet(), without the fence of a volatile write: the monitor already
+    // orders it for the threads that enter, and the others only need it to spot contention
+    private volatile Thread owner;
+    private long holdStart;     // 0 if the hold is not sampled, guarded by the monitor
+
+    public InstrumentedMonitor(String name) {
+        this(LockMetrics.named(name));
+    }
+
+    public InstrumentedMonitor(LockMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    public LockMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * Called just before {@code synchronized (this)}.
+     *
+     * @return the ticket to pass to {@link #entered(long)} and {@link #beforeExit(long)}
+     */
+    public long beforeEnter() {
+        Thread holder = owner;
+        if (holder == Thread.currentThread()) return NESTED;
+        if (!metrics.shouldSample()) return UNSAMPLED;
+        long start = clock();
+        return holder != null ? -start : start;
+    }
+
+    /**
+     * Called first thing inside the {@code synchronized} block.
+     */
+    public void entered(long ticket) {
+        if (ticket == NESTED) return;
+        OWNER.lazySet(this, Thread.currentThread());
+        if (ticket == UNSAMPLED) {
+            holdStart = 0;
+            return;
+        }
+        long now = clock();
+        metrics.recordAcquire(now - Math.abs(ticket), ticket < 0);
+        holdStart = now;
+    }
+
+    /**
+     * Called last thing inside the {@code synchronized} block, in a {@code finally}.
+     */
+    public void beforeExit(long ticket) {
+        if (ticket == NESTED) return;
+        long start = holdStart;
+        OWNER.lazySet(this, null);
+        if (start != 0) metrics.recordHold(clock() - start);
+    }
+
+    /**
+     * Replaces {@code wait()}: ends the current hold, waits, and starts a new one.
+     */
+    public void await() throws InterruptedException {
+        if (owner != Thread.currentThread()) throw new IllegalMonitorStateException();
+        long start = holdStart;
+        owner = null;
+        if (start != 0) metrics.recordHold(clock() - start);
+        try {
+            wait();
+        } finally {
+            owner = Thread.currentThread();
+            holdStart = metrics.shouldSample() ? clock() : 0;
+        }
+    }
+
+    private static long clock() {
+        return System.nanoTime() - ORIGIN;
+    }
+}
@@ -0,0 +1,235 @@
+package examples.metrics;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * What an {@link InstrumentedLock} or an {@link InstrumentedMonitor} measured for one
+ * named lock:
+ * <ul>
+ *     <li>how long threads waited to acquire it, contended or not,</li>
+ *     <li>how long they held it; a hold is split in two at every {@code await()},</li>
+ *     <li>how many acquisitions found it already held,</li>
+ *     <li>how many {@code tryLock()} calls gave up without it,</li>
+ *     <li>the longest hold, and which thread it was.</li>
+ * </ul>
+ * Reading the clock twice on every acquisition would cost as much as an uncontended lock
+ * itself, so only one acquisition in {@code sampleInterval}, picked at random, is measured.
+ * The counts are estimated from the samples, and the histograms hold only the samples.
+ * <p>
+ * Every lock created with the same name shares the same metrics, and {@link #report()}
+ * prints all of them, so the busiest lock of a run stands out.
+ */
+public class LockMetrics {
+
+    /** One acquisition in this many is measured, unless the lock asks for another interval. */
+    public static final int DEFAULT_SAMPLE_INTERVAL = 16;
+
+    /**
+     * System property that turns on the lock measurements of the tutorial examples, for
+     * example {@code -Dexamples.lockMetrics=true}.
+     */
+    public static final String PROPERTY = "examples.lockMetrics";
+
+    private static final ConcurrentMap<String, LockMetrics> REGISTRY = new ConcurrentHashMap<String, LockMetrics>();
+
+    private final String name;
+    private final int sampleInterval;
+    private final int sampleMask;
+    private final LatencyHistogram waitTimes = new LatencyHistogram();
+    private final LatencyHistogram holdTimes = new LatencyHistogram();
+    private final LongAdder sampled = new LongAdder();
+    private final LongAdder contended = new LongAdder();
+    private final LongAdder failedAttempts = new LongAdder();
+    private volatile long longestHold;
+    private volatile String longestHolder;
+
+    private LockMetrics(String name, int sampleInterval) {
+        if (Integer.bitCount(sampleInterval) != 1)
+            throw new IllegalArgumentException("sampleInterval must be a power of two: " + sampleInterval);
+        this.name = name;
+        this.sampleInterval = sampleInterval;
+        this.sampleMask = sampleInterval - 1;
+    }
+
+    /**
+     * @return {@code true} if the {@value #PROPERTY} system property asks the examples to
+     * measure their locks; they do not by default, since measuring costs time on every entry
+     */
+    public static boolean enabledBySystemProperty() {
+        return Boolean.getBoolean(PROPERTY);
+    }
+
+    /**
+     * @return the metrics of the lock called {@code name}, created the first time with
+     * {@value #DEFAULT_SAMPLE_INTERVAL} as the sample interval
+     */
+    public static LockMetrics named(String name) {
+        return named(name, DEFAULT_SAMPLE_INTERVAL);
+    }
+
+    /**
+     * @param sampleInterval a power of two; 1 measures every acquisition. Ignored if the
+     *                       metrics of that name already exist.
+     */
+    public static LockMetrics named(String name, int sampleInterval) {
+        LockMetrics metrics = REGISTRY.get(name);
+        if (metrics != null) return metrics;
+        LockMetrics created = new LockMetrics(name, sampleInterval);
+        metrics = REGISTRY.putIfAbsent(name, created);
+        return metrics == null ? created : metrics;
+    }
+
+    /**
+     * @return the metrics of every named lock, sorted by name
+     */
+    public static List<LockMetrics> all() {
+        List<LockMetrics> all = new ArrayList<LockMetrics>(REGISTRY.values());
+        Collections.sort(all, new Comparator<LockMetrics>() {
+            @Override
+            public int compare(LockMetrics a, LockMetrics b) {
+                return a.name.compareTo(b.name);
+            }
+        });
+        return all;
+    }
+
+    /**
+     * @return a table with a line per named lock; times in microseconds
+     */
+    public static String report() {
+        StringBuilder report = new StringBuilder(String.format("%-46s %12s %10s %10s %10s %10s %10s %10s %10s  %s%n",
+                "lock", "acquired ~", "contended", "failed ~", "wait p50", "wait p99", "hold p50", "hold p99",
+                "hold max", "longest holder"));
+        for (LockMetrics metrics : all())
+            report.append(String.format("%-46s %,12d %9.1f%% %,10d %,10.1f %,10.1f %,10.1f %,10.1f %,10.1f  %s%n",
+                    metrics.name, metrics.getAcquisitions(), metrics.getContentionRatio() * 100,
+                    metrics.getFailedAttempts(),
+                    metrics.waitTimes.getPercentile(50) / 1e3, metrics.waitTimes.getPercentile(99) / 1e3,
+                    metrics.holdTimes.getPercentile(50) / 1e3, metrics.holdTimes.getPercentile(99) / 1e3,
+                    metrics.longestHold / 1e3, metrics.longestHolder == null ? "-" : metrics.longestHolder));
+        return report.toString();
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public int getSampleInterval() {
+        return sampleInterval;
+    }
+
+    /**
+     * @return the time, in nanoseconds, the sampled acquisitions waited for the lock
+     */
+    public LatencyHistogram getWaitTimes() {
+        return waitTimes;
+    }
+
+    /**
+     * @return the time, in nanoseconds, the lock was held after the sampled acquisitions
+     */
+    public LatencyHistogram getHoldTimes() {
+        return holdTimes;
+    }
+
+    /**
+     * @return the estimated number of acquisitions
+     */
+    public long getAcquisitions() {
+        return sampled.sum() * sampleInterval;
+    }
+
+    /**
+     * @return the estimated number of acquisitions that found the lock held by another thread
+     */
+    public long getContended() {
+        return contended.sum() * sampleInterval;
+    }
+
+    /**
+     * @return the estimated number of {@code tryLock()} calls that did not get the lock; they
+     * are not counted as acquisitions
+     */
+    public long getFailedAttempts() {
+        return failedAttempts.sum() * sampleInterval;
+    }
+
+    /**
+     * @return the share of the acquisitions that were contended, from 0 to 1
+     */
+    public double getContentionRatio() {
+        long samples = sampled.sum();
+        return samples == 0 ? 0 : (double) contended.sum() / samples;
+    }
+
+    /**
+     * @return the longest sampled hold, in nanoseconds
+     */
+    public long getLongestHold() {
+        return longestHold;
+    }
+
+    /**
+     * @return the name of the thread that held the lock for {@link #getLongestHold()}, or
+     * {@code null}
+     */
+    public String getLongestHolder() {
+        return longestHolder;
+    }
+
+    /**
+     * Clears the measurements, for example after a warm-up.
+     */
+    public synchronized void reset() {
+        waitTimes.reset();
+        holdTimes.reset();
+        sampled.reset();
+        contended.reset();
+        failedAttempts.reset();
+        longestHold = 0;
+        longestHolder = null;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s: ~%,d acquisitions, %.1f%% contended, ~%,d failed attempts%n  wait %s%n  hold %s%n  longest hold %,.1f us by %s",
+                name, getAcquisitions(), getContentionRatio() * 100, getFailedAttempts(), waitTimes, holdTimes, longestHold / 1e3,
+                longestHolder == null ? "-" : longestHolder);
+    }
+
+    /**
+     * @return {@code true} if the acquisition about to happen should be measured
+     */
+    boolean shouldSample() {
+        return sampleMask == 0 || (ThreadLocalRandom.current().nextInt() & sampleMask) == 0;
+    }
+
+    void recordAcquire(long waitNanos, boolean wasContended) {
+        sampled.increment();
+        if (wasContended) contended.increment();
+        waitTimes.record(waitNanos);
+    }
+
+    void recordFailedAttempt() {
+        failedAttempts.increment();
+    }
+
+    void recordHold(long nanos) {
+        holdTimes.record(nanos);
+        if (nanos > longestHold) recordLongest(nanos);
+    }
+
+    // Rare once the first holds are in, so a lock is fine
+    private synchronized void recordLongest(long nanos) {
+        if (nanos <= longestHold) return;
+        longestHold = nanos;
+        longestHolder = Thread.currentThread().getName();
+    }
+}
@@ -0,0 +1,124 @@
+package examples.metrics;
+
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Increments a counter under a lock {@value #ACQUISITIONS} times, with 1 and 4 threads,
+ * to show what measuring a lock costs:
+ * <ul>
+ *     <li>a {@code ReentrantLock}, and an {@link InstrumentedLock} around one that
+ *     measures every acquisition or one in {@value LockMetrics#DEFAULT_SAMPLE_INTERVAL},</li>
+ *     <li>a {@code synchronized} block, and the same with an {@link InstrumentedMonitor}.</li>
+ * </ul>
+ * It prints the nanoseconds per acquisition, then the report of the instrumented locks.
+ */
+public class LockOverheadBenchmark {
+
+    private static final int ACQUISITIONS = 8_000_000;
+    private static final int[] THREADS = {1, 4};
+
+    private static long counter;
+
+    /** One way of incrementing the counter under a lock. */
+    private interface Increment {
+        void run();
+    }
+
+    public static void main(String[] args) throws InterruptedException {
+        final Lock plain = new ReentrantLock();
+        final Lock everyTime = new InstrumentedLock(new ReentrantLock(), LockMetrics.named("benchmark.lock every", 1));
+        final Lock sampled = new InstrumentedLock("benchmark.lock sampled");
+        final Object monitor = new Object();
+        final InstrumentedMonitor instrumented = new InstrumentedMonitor("benchmark.monitor sampled");
+
+        String[] names = {"ReentrantLock", "InstrumentedLock 1/1", "InstrumentedLock 1/16",
+                "synchronized", "InstrumentedMonitor 1/16"};
+        Increment[] increments = {
+                new Increment() {
+                    @Override
+                    public void run() {
+                        locked(plain);
+                    }
+                },
+                new Increment() {
+                    @Override
+                    public void run() {
+                        locked(everyTime);
+                    }
+                },
+                new Increment() {
+                    @Override
+                    public void run() {
+                        locked(sampled);
+                    }
+                },
+                new Increment() {
+                    @Override
+                    public void run() {
+                        synchronized (monitor) {
+                            counter++;
+                        }
+                    }
+                },
+                new Increment() {
+                    @Override
+                    public void run() {
+                        long ticket = instrumented.beforeEnter();
+                        synchronized (instrumented) {
+                            instrumented.entered(ticket);
+                            try {
+                                counter++;
+                            } finally {
+                                instrumented.beforeExit(ticket);
+                            }
+                        }
+                    }
+                },
+        };
+
+        // Warm-up, so that every lock is compiled before it is measured
+        for (Increment increment : increments)
+            run(increment, 2, ACQUISITIONS / 8);
+        for (LockMetrics metrics : LockMetrics.all())
+            metrics.reset();
+
+        System.out.printf("Nanoseconds per acquisition, %,d acquisitions, %d cores%n%-26s",
+                ACQUISITIONS, Runtime.getRuntime().availableProcessors(), "threads");
+        for (int threads : THREADS)
+            System.out.printf("%9d", threads);
+        System.out.println();
+        for (int i = 0; i < increments.length; i++) {
+            System.out.printf("%-26s", names[i]);
+            for (int threads : THREADS) {
+                counter = 0;
+                long elapsed = run(increments[i], threads, ACQUISITIONS);
+                if (counter != ACQUISITIONS / threads * threads)
+                    throw new IllegalStateException(names[i] + " lost increments: " + counter);
+                System.out.printf("%9.1f", (double) elapsed / ACQUISITIONS);
+            }
+            System.out.println();
+        }
+        System.out.println();
+        System.out.print(LockMetrics.report());
+    }
+
+    private static void locked(Lock lock) {
+        lock.lock();
+        try {
+            counter++;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private static long run(final Increment increment, int threads, int acquisitions) throws InterruptedException {
+        return ParallelTimer.time(threads, acquisitions, new ParallelTimer.Share() {
+            @Override
+            public void run(int thread, int first, int count) {
+                for (int i = 0; i < count; i++)
+                    increment.run();
+            }
+        });
+    }
+}
@@ -0,0 +1,60 @@
+package examples.metrics;
+
+import java.util.concurrent.CountDownLatch;
+
+/**
+ * Times a piece of work split between several threads, for the benchmarks.
+ * <p>
+ * The threads are all created and started first, then released together by a latch,
+ * so that the time measured is the time of the work and not of starting threads. The
+ * clock stops when the last thread has finished.
+ */
+public final class ParallelTimer {
+
+    /** The share of the work done by one thread. */
+    public interface Share {
+        /**
+         * @param thread the index of the thread, from 0
+         * @param first  the index of the first unit of work of this thread
+         * @param count  the number of units of work of this thread
+         */
+        void run(int thread, int first, int count);
+    }
+
+    private ParallelTimer() {
+    }
+
+    /**
+     * Splits {@code units} units of work evenly between {@code threads} threads; the
+     * remainder of the division is not done.
+     *
+     * @return the elapsed nanoseconds
+     * @throws InterruptedException if interrupted while waiting for the threads
+     */
+    public static long time(int threads, int units, final Share share) throws InterruptedException {
+        final int perThread = units / threads;
+        final CountDownLatch start = new CountDownLatch(1);
+        Thread[] workers = new Thread[threads];
+        for (int t = 0; t < threads; t++) {
+            final int thread = t;
+            workers[t] = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        start.await();
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                    share.run(thread, thread * perThread, perThread);
+                }
+            }, "benchmark-" + t);
+            workers[t].start();
+        }
+
+        long begin = System.nanoTime();
+        start.countDown();
+        for (Thread worker : workers)
+            worker.join();
+        return System.nanoTime() - begin;
+    }
+}
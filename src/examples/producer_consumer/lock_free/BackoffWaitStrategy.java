@@ -0,0 +1,55 @@
+package examples.producer_consumer.lock_free;
+
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Waits in three phases: it spins for a few iterations, then yields for a few more,
+ * and finally parks for {@code parkNanos} between reads of the sequences.
+ * <p>
+ * A short wait is served as fast as by spinning, while a long wait uses almost
+ * no CPU. The price is that a wakeup during the parking phase can take as long
+ * as the park time plus the operating system's timer slack.
+ */
+public class BackoffWaitStrategy implements WaitStrategy {
+
+    private final int spinTries;
+    private final int yieldTries;
+    private final long parkNanos;
+
+    public BackoffWaitStrategy() {
+        this(100, 100, 10_000);
+    }
+
+    /**
+     * @param spinTries  reads done in a tight loop before yielding
+     * @param yieldTries reads done with a {@code Thread.yield()} before parking
+     * @param parkNanos  time to park between reads after that
+     */
+    public BackoffWaitStrategy(int spinTries, int yieldTries, long parkNanos) {
+        this.spinTries = spinTries;
+        this.yieldTries = yieldTries;
+        this.parkNanos = parkNanos;
+    }
+
+    @Override
+    public long waitFor(long required, Sequence[] dependencies) throws InterruptedException {
+        long available;
+        int attempts = 0;
+        while ((available = Sequences.minimum(dependencies)) < required) {
+            if (Thread.interrupted()) throw new InterruptedException();
+            if (attempts < spinTries) {
+                attempts++;
+            } else if (attempts < spinTries + yieldTries) {
+                attempts++;
+                Thread.yield();
+            } else {
+                LockSupport.parkNanos(parkNanos);
+            }
+        }
+        return available;
+    }
+
+    @Override
+    public void signalAllWhenBlocking() {
+    }
+}
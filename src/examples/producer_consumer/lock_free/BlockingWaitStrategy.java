@@ -0,0 +1,43 @@
+package examples.producer_consumer.lock_free;
+
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Sleeps on a {@code Condition} until a publisher calls {@link #signalAllWhenBlocking()}.
+ * <p>
+ * The sequences are checked again while holding the lock, and the publisher takes
+ * the same lock to signal, so a signal sent between the check and the
+ * {@code await()} cannot be lost.
+ */
+public class BlockingWaitStrategy implements WaitStrategy {
+
+    private final Lock lock = new ReentrantLock();
+    private final Condition progress = lock.newCondition();
+
+    @Override
+    public long waitFor(long required, Sequence[] dependencies) throws InterruptedException {
+        long available = Sequences.minimum(dependencies);
+        if (available >= required) return available;
+
+        lock.lockInterruptibly();
+        try {
+            while ((available = Sequences.minimum(dependencies)) < required)
+                progress.await();
+        } finally {
+            lock.unlock();
+        }
+        return available;
+    }
+
+    @Override
+    public void signalAllWhenBlocking() {
+        lock.lock();
+        try {
+            progress.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+}
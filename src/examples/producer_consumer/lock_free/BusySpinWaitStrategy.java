@@ -0,0 +1,22 @@
+package examples.producer_consumer.lock_free;
+
+/**
+ * Re-reads the sequences in a tight loop. Only use it when the waiting thread
+ * has a CPU core of its own, otherwise it steals time from the very thread it
+ * is waiting for.
+ */
+public class BusySpinWaitStrategy implements WaitStrategy {
+
+    @Override
+    public long waitFor(long required, Sequence[] dependencies) throws InterruptedException {
+        long available;
+        while ((available = Sequences.minimum(dependencies)) < required) {
+            if (Thread.interrupted()) throw new InterruptedException();
+        }
+        return available;
+    }
+
+    @Override
+    public void signalAllWhenBlocking() {
+    }
+}
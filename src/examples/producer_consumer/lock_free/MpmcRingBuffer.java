@@ -0,0 +1,113 @@
+package examples.producer_consumer.lock_free;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * A bounded, lock-free queue for any number of producer and consumer threads
+ * (<em>Multi-Producer/Multi-Consumer</em>), which never allocates after construction.
+ * <p>
+ * Like {@link SpscRingBuffer}, the items live in a pre-allocated ring. With several
+ * threads on each side a plain sequence is no longer enough: each side claims a
+ * position with a compare-and-set on the shared {@code tail} or {@code head}. Every
+ * slot also has a sequence number of its own, which says whose turn it is:
+ * <ul>
+ *     <li>{@code slotSequence == position}: the slot is free for the producer that
+ *     claims {@code position}.</li>
+ *     <li>{@code slotSequence == position + 1}: the item is written, the consumer that
+ *     claims {@code position} can read it.</li>
+ *     <li>After reading, the consumer sets it to {@code position + capacity}, freeing
+ *     the slot for the producer one lap later.</li>
+ * </ul>
+ * A thread that loses the compare-and-set simply reads the position again, so no thread
+ * ever waits for a lock held by another.
+ *
+ * @param <E> the type of the items held in the ring
+ */
+public class MpmcRingBuffer<E> {
+
+    private final AtomicReferenceArray<E> buffer;
+    private final AtomicLongArray slotSequences;
+    private final int mask;
+
+    private final Sequence tail = new Sequence();   // next position to claim for writing
+    private final Sequence head = new Sequence();   // next position to claim for reading
+
+    /**
+     * @param requestedCapacity the minimum number of items the ring can hold,
+     *                          rounded up to the next power of two
+     */
+    public MpmcRingBuffer(int requestedCapacity) {
+        if (requestedCapacity < 2 || requestedCapacity > (1 << 30))
+            throw new IllegalArgumentException("Capacity out of range: " + requestedCapacity);
+        int capacity = Integer.highestOneBit(requestedCapacity);
+        if (capacity < requestedCapacity) capacity <<= 1;
+        buffer = new AtomicReferenceArray<E>(capacity);
+        slotSequences = new AtomicLongArray(capacity);
+        for (int i = 0; i < capacity; i++)
+            slotSequences.set(i, i);
+        mask = capacity - 1;
+    }
+
+    public int capacity() {
+        return buffer.length();
+    }
+
+    /**
+     * Adds an item if there is space for it. Can be called by any thread.
+     *
+     * @param item the item to add, not {@code null}
+     * @return {@code true} if the item was added, {@code false} if the ring is full
+     */
+    public boolean offer(E item) {
+        if (item == null) throw new NullPointerException();
+        while (true) {
+            long position = tail.get();
+            int index = (int) (position & mask);
+            long diff = slotSequences.get(index) - position;
+            if (diff == 0) {
+                if (tail.compareAndSet(position, position + 1)) {
+                    buffer.lazySet(index, item);
+                    slotSequences.set(index, position + 1);    // publishes the item
+                    return true;
+                }
+            } else if (diff < 0) {
+                return false;   // the slot still holds the item of the previous lap
+            }
+            // else another producer claimed this position, try the next one
+        }
+    }
+
+    /**
+     * Removes the oldest item. Can be called by any thread.
+     *
+     * @return the oldest item, or {@code null} if the ring is empty
+     */
+    public E poll() {
+        while (true) {
+            long position = head.get();
+            int index = (int) (position & mask);
+            long diff = slotSequences.get(index) - (position + 1);
+            if (diff == 0) {
+                if (head.compareAndSet(position, position + 1)) {
+                    E item = buffer.get(index);
+                    buffer.lazySet(index, null);
+                    slotSequences.set(index, position + mask + 1);   // frees the slot for the next lap
+                    return item;
+                }
+            } else if (diff < 0) {
+                return null;    // nothing written at this position yet
+            }
+            // else another consumer took this position, try the next one
+        }
+    }
+
+    /**
+     * @return an estimate of the number of items in the ring
+     */
+    public int size() {
+        long currentHead = head.get();
+        long currentTail = tail.get();
+        return (int) Math.max(0, Math.min(buffer.length(), currentTail - currentHead));
+    }
+}
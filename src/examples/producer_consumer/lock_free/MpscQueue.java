@@ -0,0 +1,76 @@
+package examples.producer_consumer.lock_free;
+
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * An unbounded, lock-free queue for any number of producer threads and exactly one
+ * consumer thread (<em>Multi-Producer/Single-Consumer</em>).
+ * <p>
+ * The items are kept in a linked list. A producer adds its node with a single atomic
+ * {@code getAndSet()} on {@code tail}, which cannot fail, so producers never retry or
+ * wait for each other. It then links the previous tail to the new node. Between those
+ * two steps the list is briefly cut: the consumer sees the previous node as the last one
+ * and finds the queue empty, until the link is written a moment later.
+ * <p>
+ * {@code head} is a dummy node owned by the consumer: the first item is in
+ * {@code head.next}. Taking an item just moves {@code head} forward, so the consumer
+ * never writes to memory the producers write to, apart from the node it consumes.
+ *
+ * @param <E> the type of the items held in the queue
+ */
+public class MpscQueue<E> {
+
+    private static final class Node<E> {
+        E item;
+        volatile Node<E> next;
+
+        Node(E item) {
+            this.item = item;
+        }
+    }
+
+    private final AtomicReference<Node<E>> tail;
+    private Node<E> head;                       // used by the consumer only
+
+    public MpscQueue() {
+        Node<E> dummy = new Node<E>(null);
+        head = dummy;
+        tail = new AtomicReference<Node<E>>(dummy);
+    }
+
+    /**
+     * Adds an item. Can be called by any thread.
+     *
+     * @param item the item to add, not {@code null}
+     */
+    public void offer(E item) {
+        if (item == null) throw new NullPointerException();
+        Node<E> node = new Node<E>(item);
+        Node<E> previous = tail.getAndSet(node);
+        // A volatile write, not a lazySet, so that a consumer that checks the queue just
+        // before parking and the producer that checks whether to wake it cannot miss each other
+        previous.next = node;
+    }
+
+    /**
+     * Removes the oldest item. Must only be called by the consumer thread.
+     *
+     * @return the oldest item, or {@code null} if the queue is empty
+     */
+    public E poll() {
+        Node<E> next = head.next;
+        if (next == null) return null;
+        E item = next.item;
+        next.item = null;       // the node becomes the new dummy, do not keep the item alive
+        head = next;
+        return item;
+    }
+
+    /**
+     * May only be called by the consumer thread. An item whose producer has not finished
+     * {@link #offer(Object)} yet is not seen.
+     */
+    public boolean isEmpty() {
+        return head.next == null;
+    }
+}
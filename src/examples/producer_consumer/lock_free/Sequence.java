@@ -0,0 +1,87 @@
+package examples.producer_consumer.lock_free;
+
+import java.util.concurrent.atomic.AtomicLongFieldUpdater;
+
+/**
+ * Left-hand padding of a {@link Sequence}.
+ * <p>
+ * The JVM is free to reorder the fields of a single class, but the fields
+ * of a superclass are always laid out before the fields of its subclass.
+ * Splitting the padding in a class hierarchy is the only portable way to
+ * guarantee the {@code value} ends up alone in its cache line.
+ */
+class LhsPadding {
+    protected long p1, p2, p3, p4, p5, p6, p7;
+}
+
+class Value extends LhsPadding {
+    protected volatile long value;
+}
+
+class RhsPadding extends Value {
+    protected long p9, p10, p11, p12, p13, p14, p15;
+}
+
+/**
+ * A {@code long} counter that lives on its own cache line.
+ * <p>
+ * When two threads write two different variables that happen to share a
+ * cache line, every write invalidates the line in the other core's cache
+ * even though the threads never touch the same data. This is known as
+ * <em>false sharing</em>, and it is the reason the head and tail counters
+ * of a ring buffer are padded.
+ * <p>
+ * {@link #set(long)} is an <em>ordered</em> store ({@code lazySet}): it
+ * publishes every write done before it, but it does not pay for the full
+ * memory fence of a {@code volatile} write. That is all a single writer
+ * needs to hand data to a reader.
+ */
+public class Sequence extends RhsPadding {
+
+    private static final AtomicLongFieldUpdater<Value> VALUE_UPDATER =
+            AtomicLongFieldUpdater.newUpdater(Value.class, "value");
+
+    public Sequence() {
+        this(0L);
+    }
+
+    public Sequence(long initialValue) {
+        VALUE_UPDATER.lazySet(this, initialValue);
+    }
+
+    public long get() {
+        return value;
+    }
+
+    /**
+     * Ordered store, only safe when a single thread writes this sequence.
+     *
+     * @param newValue the new value
+     */
+    public void set(long newValue) {
+        VALUE_UPDATER.lazySet(this, newValue);
+    }
+
+    /**
+     * Full {@code volatile} store, for the cases where a later read of another
+     * variable must not be reordered before this write.
+     *
+     * @param newValue the new value
+     */
+    public void setVolatile(long newValue) {
+        value = newValue;
+    }
+
+    public boolean compareAndSet(long expectedValue, long newValue) {
+        return VALUE_UPDATER.compareAndSet(this, expectedValue, newValue);
+    }
+
+    public long addAndGet(long increment) {
+        return VALUE_UPDATER.addAndGet(this, increment);
+    }
+
+    @Override
+    public String toString() {
+        return Long.toString(get());
+    }
+}
@@ -0,0 +1,20 @@
+package examples.producer_consumer.lock_free;
+
+/**
+ * Helper methods for groups of {@link Sequence}s.
+ */
+public final class Sequences {
+
+    private Sequences() {
+    }
+
+    /**
+     * @return the smallest value of {@code sequences}, or {@code Long.MAX_VALUE} if it is empty
+     */
+    public static long minimum(Sequence[] sequences) {
+        long minimum = Long.MAX_VALUE;
+        for (Sequence sequence : sequences)
+            minimum = Math.min(minimum, sequence.get());
+        return minimum;
+    }
+}
@@ -0,0 +1,150 @@
+package examples.producer_consumer.lock_free;
+
+/**
+ * A bounded, lock-free queue for exactly one producer thread and exactly one
+ * consumer thread (<em>Single-Producer/Single-Consumer</em>).
+ * <p>
+ * The items are stored in a pre-allocated array used as a ring. The producer
+ * owns the {@code tail} sequence (next slot to write) and the consumer owns the
+ * {@code head} sequence (next slot to read). Because every sequence has a single
+ * writer, no {@code synchronized} block, lock or compare-and-set is needed:
+ * an ordered store of the sequence is enough to publish the slot to the other
+ * thread.
+ * <p>
+ * Some details that make the difference in practice:
+ * <ul>
+ *     <li>The capacity is rounded up to a power of two, so the slot index is
+ *     {@code sequence & mask} instead of a division.</li>
+ *     <li>{@code head} and {@code tail} are {@link Sequence padded} so the
+ *     producer and the consumer do not fight over the same cache line.</li>
+ *     <li>Each side keeps a cached copy of the other side's sequence and only
+ *     reads the real one when the cached value says the ring is full (or empty).
+ *     Most operations therefore touch only memory owned by the calling thread.</li>
+ * </ul>
+ * Unlike a {@code LinkedList}, adding an item never allocates a node.
+ * <p>
+ * How {@link #put(Object)} and {@link #take()} wait for space or for an item is decided
+ * by the {@link WaitStrategy} given to the constructor; by default they yield the CPU
+ * between attempts.
+ *
+ * @param <E> the type of the items held in the ring
+ */
+public class SpscRingBuffer<E> {
+
+    private final Object[] buffer;
+    private final int mask;
+
+    private final Sequence tail = new Sequence();       // written by the producer only
+    private final Sequence head = new Sequence();       // written by the consumer only
+    private final Sequence cachedHead = new Sequence(); // producer's last known head
+    private final Sequence cachedTail = new Sequence(); // consumer's last known tail
+
+    private final WaitStrategy waitStrategy;
+    private final Sequence[] headDependency = {head};   // what a full ring waits for
+    private final Sequence[] tailDependency = {tail};   // what an empty ring waits for
+
+    /**
+     * @param requestedCapacity the minimum number of items the ring can hold,
+     *                          rounded up to the next power of two
+     */
+    public SpscRingBuffer(int requestedCapacity) {
+        this(requestedCapacity, new YieldingWaitStrategy());
+    }
+
+    /**
+     * @param requestedCapacity the minimum number of items the ring can hold,
+     *                          rounded up to the next power of two
+     * @param waitStrategy      how {@code put()} and {@code take()} wait
+     */
+    public SpscRingBuffer(int requestedCapacity, WaitStrategy waitStrategy) {
+        if (requestedCapacity < 1 || requestedCapacity > (1 << 30))
+            throw new IllegalArgumentException("Capacity out of range: " + requestedCapacity);
+        int capacity = Integer.highestOneBit(requestedCapacity);
+        if (capacity < requestedCapacity) capacity <<= 1;
+        buffer = new Object[capacity];
+        mask = capacity - 1;
+        this.waitStrategy = waitStrategy;
+    }
+
+    public int capacity() {
+        return buffer.length;
+    }
+
+    /**
+     * Adds an item if there is space for it. Must only be called by the producer thread.
+     *
+     * @param item the item to add, not {@code null}
+     * @return {@code true} if the item was added, {@code false} if the ring is full
+     */
+    public boolean offer(E item) {
+        if (item == null) throw new NullPointerException();
+        long currentTail = tail.get();
+        long wrapPoint = currentTail - buffer.length;
+        if (cachedHead.get() <= wrapPoint) {
+            // The cached value says the ring is full, check the real head.
+            long currentHead = head.get();
+            cachedHead.set(currentHead);
+            if (currentHead <= wrapPoint) return false;
+        }
+        buffer[(int) (currentTail & mask)] = item;
+        tail.set(currentTail + 1);  // publishes the slot to the consumer
+        waitStrategy.signalAllWhenBlocking();
+        return true;
+    }
+
+    /**
+     * Removes the oldest item. Must only be called by the consumer thread.
+     *
+     * @return the oldest item, or {@code null} if the ring is empty
+     */
+    @SuppressWarnings("unchecked")
+    public E poll() {
+        long currentHead = head.get();
+        if (currentHead >= cachedTail.get()) {
+            // The cached value says the ring is empty, check the real tail.
+            long currentTail = tail.get();
+            cachedTail.set(currentTail);
+            if (currentHead >= currentTail) return null;
+        }
+        int index = (int) (currentHead & mask);
+        E item = (E) buffer[index];
+        buffer[index] = null;       // lets the item be garbage collected
+        head.set(currentHead + 1);  // gives the slot back to the producer
+        waitStrategy.signalAllWhenBlocking();
+        return item;
+    }
+
+    /**
+     * Adds an item, waiting for space if the ring is full.
+     *
+     * @param item the item to add, not {@code null}
+     * @throws InterruptedException if the thread is interrupted while waiting
+     */
+    public void put(E item) throws InterruptedException {
+        while (!offer(item))
+            waitStrategy.waitFor(tail.get() - buffer.length + 1, headDependency);  // room for one item
+    }
+
+    /**
+     * Removes the oldest item, waiting until one is available.
+     *
+     * @return the oldest item
+     * @throws InterruptedException if the thread is interrupted while waiting
+     */
+    public E take() throws InterruptedException {
+        E item;
+        while ((item = poll()) == null)
+            waitStrategy.waitFor(head.get() + 1, tailDependency);
+        return item;
+    }
+
+    /**
+     * @return an estimate of the number of items in the ring, exact only
+     * when called while neither side is running
+     */
+    public int size() {
+        long currentHead = head.get();
+        long currentTail = tail.get();
+        return (int) Math.max(0, Math.min(buffer.length, currentTail - currentHead));
+    }
+}
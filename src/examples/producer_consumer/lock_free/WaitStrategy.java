@@ -0,0 +1,57 @@
+package examples.producer_consumer.lock_free;
+
+/**
+ * How a thread waits for another thread to make progress on a {@link Sequence}.
+ * <p>
+ * Lock-free structures have no lock to {@code wait()} on, so the waiting thread must
+ * choose between reacting fast and leaving the CPU to others:
+ * <ul>
+ *     <li>{@link BusySpinWaitStrategy}: re-reads the sequence in a tight loop.
+ *     The fastest wakeup, but it burns a whole core while waiting.</li>
+ *     <li>{@link YieldingWaitStrategy}: calls {@code Thread.yield()} between reads,
+ *     letting other runnable threads use the core.</li>
+ *     <li>{@link BackoffWaitStrategy}: spins first, then yields, then parks for a
+ *     short time, so a long wait costs almost no CPU.</li>
+ *     <li>{@link BlockingWaitStrategy}: sleeps on a {@code Condition} until the other
+ *     side signals it, like a {@code BlockingQueue}. The cheapest while idle, the
+ *     slowest to wake up, and the publisher pays for a lock on every signal.</li>
+ * </ul>
+ */
+public interface WaitStrategy {
+
+    /**
+     * Waits until the smallest of {@code dependencies} is at least {@code required}.
+     *
+     * @param required     the value to wait for
+     * @param dependencies the sequences written by the other threads
+     * @return the smallest value of {@code dependencies}, greater or equal to {@code required}
+     * @throws InterruptedException if the thread is interrupted while waiting
+     */
+    long waitFor(long required, Sequence[] dependencies) throws InterruptedException;
+
+    /**
+     * Called by a publisher after advancing a sequence, to wake up the threads that
+     * may be sleeping in {@link #waitFor(long, Sequence[])}. Only the blocking
+     * strategy does something here.
+     */
+    void signalAllWhenBlocking();
+
+    /**
+     * @param name one of {@code BUSY_SPIN}, {@code YIELDING}, {@code BACKOFF} or {@code BLOCKING}
+     * @return a new instance of the named strategy, with its default settings
+     */
+    static WaitStrategy forName(String name) {
+        switch (name) {
+            case "BUSY_SPIN":
+                return new BusySpinWaitStrategy();
+            case "YIELDING":
+                return new YieldingWaitStrategy();
+            case "BACKOFF":
+                return new BackoffWaitStrategy();
+            case "BLOCKING":
+                return new BlockingWaitStrategy();
+            default:
+                throw new IllegalArgumentException("Unknown wait strategy: " + name);
+        }
+    }
+}
@@ -0,0 +1,99 @@
+package examples.producer_consumer.lock_free;
+
+import java.lang.management.ManagementFactory;
+import java.util.Arrays;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Measures the <em>wakeup latency</em> of every {@link WaitStrategy}: the time between
+ * the producer publishing a value into an idle {@link SpscRingBuffer} and the consumer
+ * returning from {@code take()} with it.
+ * <p>
+ * The producer pauses for {@link #PAUSE_NANOS} between values, so the consumer is always
+ * waiting (spinning, yielding, parked or blocked) when the next value arrives. The result
+ * is reported as a latency distribution, together with the CPU time burnt by the consumer
+ * thread per value, which is the price of a fast wakeup.
+ * <p>
+ * The busy-spin numbers are only meaningful when the producer and the consumer have a
+ * core each; on a single core the spinning consumer delays the producer it waits for.
+ */
+public class WaitStrategyBenchmark {
+
+    private static final int VALUES = 20_000;
+    private static final long PAUSE_NANOS = 50_000;
+    private static final String[] STRATEGIES = {"BUSY_SPIN", "YIELDING", "BACKOFF", "BLOCKING"};
+
+    public static void main(String[] args) throws InterruptedException {
+        System.out.println("Available processors: " + Runtime.getRuntime().availableProcessors());
+        for (String name : STRATEGIES) {
+            run(WaitStrategy.forName(name));  // warm-up
+            long[] result = run(WaitStrategy.forName(name));
+            report(name, result);
+        }
+    }
+
+    /**
+     * @return the wakeup latency of every value, followed by the consumer's CPU time
+     */
+    private static long[] run(WaitStrategy waitStrategy) throws InterruptedException {
+        final SpscRingBuffer<Integer> ring = new SpscRingBuffer<Integer>(1024, waitStrategy);
+        final long[] publishTimes = new long[VALUES];
+        final long[] result = new long[VALUES + 1];
+
+        Thread producer = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                for (int i = 0; i < VALUES; i++) {
+                    LockSupport.parkNanos(PAUSE_NANOS);   // lets the consumer go idle
+                    publishTimes[i] = System.nanoTime();
+                    ring.offer(i);
+                }
+            }
+        });
+
+        Thread consumer = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                long cpuBefore = cpuTime();
+                try {
+                    for (int i = 0; i < VALUES; i++) {
+                        int value = ring.take();
+                        result[value] = System.nanoTime() - publishTimes[value];
+                    }
+                } catch (InterruptedException e) {
+                    e.printStackTrace();
+                }
+                result[VALUES] = cpuTime() - cpuBefore;
+            }
+        });
+
+        consumer.start();
+        producer.start();
+        producer.join();
+        consumer.join();
+        return result;
+    }
+
+    private static long cpuTime() {
+        return ManagementFactory.getThreadMXBean().getCurrentThreadCpuTime();
+    }
+
+    private static void report(String name, long[] result) {
+        long[] latencies = Arrays.copyOf(result, VALUES);
+        Arrays.sort(latencies);
+        System.out.printf("%-10s wakeup p50 %,9d ns   p90 %,9d ns   p99 %,10d ns   p99.9 %,11d ns"
+                        + "   max %,11d ns   consumer CPU %,8d ns/value%n",
+                name,
+                percentile(latencies, 50),
+                percentile(latencies, 90),
+                percentile(latencies, 99),
+                percentile(latencies, 99.9),
+                latencies[latencies.length - 1],
+                result[VALUES] / VALUES);
+    }
+
+    private static long percentile(long[] sortedValues, double percentile) {
+        int index = (int) Math.ceil(percentile / 100 * sortedValues.length) - 1;
+        return sortedValues[Math.max(0, index)];
+    }
+}
@@ -0,0 +1,23 @@
+package examples.producer_consumer.lock_free;
+
+/**
+ * Calls {@code Thread.yield()} between reads of the sequences, so other
+ * runnable threads can use the core. It still keeps the core busy when nothing
+ * else wants to run.
+ */
+public class YieldingWaitStrategy implements WaitStrategy {
+
+    @Override
+    public long waitFor(long required, Sequence[] dependencies) throws InterruptedException {
+        long available;
+        while ((available = Sequences.minimum(dependencies)) < required) {
+            if (Thread.interrupted()) throw new InterruptedException();
+            Thread.yield();
+        }
+        return available;
+    }
+
+    @Override
+    public void signalAllWhenBlocking() {
+    }
+}
@@ -1,5 +1,10 @@
 package examples.producer_consumer.low_level_synchronization;
 
+import examples.logging.AsyncLog;
+import examples.metrics.LockMetrics;
+import examples.producer_consumer.lock_free.WaitStrategy;
+import examples.producer_consumer.virtual_threads.ThreadMode;
+
 /**
  * Implementation of the producer-consumer example class, but rather
  * using elements from the {@code java.util.concurrent} package
@@ -18,11 +23,25 @@ package examples.producer_consumer.low_level_synchronization;
  */
 public class App {
 
+    /**
+     * Pass {@code RING_BUFFER} as the first argument to run the lock-free mode
+     * of {@link Processor} instead of the {@code wait()}/{@code notify()} one,
+     * optionally followed by the name of a {@link WaitStrategy} such as {@code BACKOFF}.
+     * <p>
+     * Start the JVM with {@code -Dexamples.threads=VIRTUAL} to run the producer and
+     * the consumer on virtual threads (Java 21 or later), and with
+     * {@code -Dexamples.lockMetrics=true} to measure the lock of the default mode and
+     * print its report at the end.
+     */
     public static void main(String[] args) throws InterruptedException {
 
-        final Processor processor = new Processor();    // This instance uses low-level synchronization
+        Processor.Mode mode = args.length > 0 ? Processor.Mode.valueOf(args[0]) : Processor.Mode.LOCKED_LIST;
+        WaitStrategy waitStrategy = WaitStrategy.forName(args.length > 1 ? args[1] : "YIELDING");
+        boolean measureLock = LockMetrics.enabledBySystemProperty();
+        final Processor processor = new Processor(mode, waitStrategy, measureLock);    // This instance uses low-level synchronization
 
-        Thread thread1 = new Thread(new Runnable() {
+        ThreadMode threadMode = ThreadMode.fromSystemProperty();
+        Thread thread1 = threadMode.newThread(new Runnable() {
             @Override
             public void run() {
                 try {
@@ -31,9 +50,9 @@ public class App {
                     e.printStackTrace();
                 }
             }
-        });
+        }, "producer");
 
-        Thread thread2 = new Thread(new Runnable() {
+        Thread thread2 = threadMode.newThread(new Runnable() {
             @Override
             public void run() {
                 try {
@@ -42,7 +61,7 @@ public class App {
                     e.printStackTrace();
                 }
             }
-        });
+        }, "consumer");
 
         thread1.start();
         thread2.start();
@@ -51,6 +70,10 @@ public class App {
 //        thread2.join();
         // The two threads are in an infinite loop, so we need to force the application to shut down.
         Thread.sleep(15000);    // wait for 15 seconds while the two threads execute
+        if (measureLock && mode == Processor.Mode.LOCKED_LIST) {
+            AsyncLog.print(LockMetrics.report());
+            AsyncLog.flush();
+        }
         System.exit(0);         // ends the application
     }
 }
@@ -1,7 +1,15 @@
 package examples.producer_consumer.low_level_synchronization;
 
+import examples.logging.AsyncLog;
+import examples.metrics.InstrumentedMonitor;
+import examples.producer_consumer.lock_free.SpscRingBuffer;
+import examples.producer_consumer.lock_free.WaitStrategy;
+import examples.producer_consumer.lock_free.YieldingWaitStrategy;
+import examples.producer_consumer.pattern.IntBlockingQueue;
+import examples.random.RandomStreams;
+import examples.random.SplitRandom;
+
 import java.util.LinkedList;
-import java.util.Random;
 
 /**
  * {@code Processor} demonstrates low-level synchronization by implementing {@code producer()}
@@ -21,6 +29,13 @@ import java.util.Random;
  *      <li>When multiple threads are waiting for the lock, {@code notifyAll()} can be used to wake
  *      them up instead of {@code notify()}, which only signals one thread.</li>
  *  </ul>
+ *<p>
+ * The {@link Mode#RING_BUFFER} mode replaces the list and the lock with a lock-free
+ * {@link SpscRingBuffer}. It is only correct with a single producer thread and a single
+ * consumer thread, which is exactly how {@link App} uses this class, and the way its threads
+ * wait for each other is chosen with a {@link WaitStrategy}. The {@link Mode#INT_QUEUE}
+ * mode keeps the values as primitive {@code int}s in an {@link IntBlockingQueue}, so no
+ * {@code Integer} and no list node is allocated per value.
  *
  * <br>
  * Tutorial and minor comments are from
@@ -35,47 +50,203 @@ import java.util.Random;
  */
 public class Processor {
 
+    /**
+     * The data structure used to hand values from the producer to the consumer.
+     */
+    public enum Mode {
+        /** A {@code LinkedList} guarded by {@code wait()} and {@code notify()}. */
+        LOCKED_LIST,
+        /** A lock-free single-producer/single-consumer ring buffer. */
+        RING_BUFFER,
+        /** A blocking queue of primitive {@code int} values. */
+        INT_QUEUE
+    }
+
     private LinkedList<Integer> sharedList = new LinkedList<Integer>();
     private final int listLimitSize = 10;
-    private final Object sharedExplicitLock = new Object();
+    private final Object sharedExplicitLock;
+    // sharedExplicitLock itself when its waits and holds are measured, see App; null otherwise
+    private final InstrumentedMonitor lockMetrics;
+
+    private final Mode mode;
+    private final SpscRingBuffer<Integer> ringBuffer;
+    private final IntBlockingQueue intQueue;
+
+    public Processor() {
+        this(Mode.LOCKED_LIST);
+    }
+
+    public Processor(Mode mode) {
+        this(mode, new YieldingWaitStrategy());
+    }
+
+    /**
+     * @param mode         the data structure shared by the producer and the consumer
+     * @param waitStrategy how the threads wait for each other in {@link Mode#RING_BUFFER} mode
+     */
+    public Processor(Mode mode, WaitStrategy waitStrategy) {
+        this(mode, waitStrategy, false);
+    }
+
+    /**
+     * @param measureLock {@code true} to measure how long the threads wait for the lock of
+     *                    {@link Mode#LOCKED_LIST} mode and hold it, at a small cost per entry
+     */
+    public Processor(Mode mode, WaitStrategy waitStrategy, boolean measureLock) {
+        this.mode = mode;
+        this.lockMetrics = measureLock ? new InstrumentedMonitor("low_level_synchronization.sharedExplicitLock") : null;
+        this.sharedExplicitLock = measureLock ? lockMetrics : new Object();
+        // the ring capacity is a power of two, 16 is the closest to listLimitSize
+        this.ringBuffer = mode == Mode.RING_BUFFER ? new SpscRingBuffer<Integer>(listLimitSize, waitStrategy) : null;
+        this.intQueue = mode == Mode.INT_QUEUE ? new IntBlockingQueue(listLimitSize) : null;
+    }
 
     public  void producer() throws InterruptedException {
         int valueToAddOnList = 0;
         // infinite loop
         while (true) {
+            if (mode == Mode.RING_BUFFER) {
+                ringBuffer.put(valueToAddOnList);
+                AsyncLog.println("Producer added: ", valueToAddOnList, "; ring size is ", ringBuffer.size());
+                valueToAddOnList++;
+                continue;
+            }
+            if (mode == Mode.INT_QUEUE) {
+                intQueue.put(valueToAddOnList);
+                AsyncLog.println("Producer added: ", valueToAddOnList, "; queue size is ", intQueue.size());
+                valueToAddOnList++;
+                continue;
+            }
+            long ticket = beforeEnter();
             synchronized (sharedExplicitLock) {
+                entered(ticket);
+                try {
+                    while (sharedList.size() == listLimitSize)
+                        /* Typically, the {@code wait()} method is placed inside a while loop to ensure that
+                         * the condition requiring the thread to wait is no longer true, so it can safely proceed
+                         * with the rest of the code after being notified. {@code waitOnLock()} calls
+                         * {@code sharedExplicitLock.wait()}.
+                         */
+                        waitOnLock();  // wait until the shared list has space to add a new value
 
-                while (sharedList.size() == listLimitSize)
-                    /* Typically, the {@code wait()} method is placed inside a while loop to ensure that
-                     * the condition requiring the thread to wait is no longer true, so it can safely proceed
-                     * with the rest of the code after being notified.
-                     */
-                    sharedExplicitLock.wait();  // wait until the shared list has space to add a new value
-
-                sharedList.add(valueToAddOnList);
-                System.out.println("Producer added: " + valueToAddOnList + "; list size is " + sharedList.size());
-                valueToAddOnList++;
-                sharedExplicitLock.notify();
+                    sharedList.add(valueToAddOnList);
+                    AsyncLog.println("Producer added: ", valueToAddOnList, "; list size is ", sharedList.size());
+                    valueToAddOnList++;
+                    sharedExplicitLock.notify();
+                } finally {
+                    beforeExit(ticket);
+                }
             }
         }
     }
 
     public void consumer() throws InterruptedException {
-        Random randomTimeInMilliseconds = new Random();
+        SplitRandom randomTimeInMilliseconds = RandomStreams.shared().current();
         // infinite loop
         while(true){
-            synchronized (sharedExplicitLock) {
-                while (sharedList.size() == 0)
-                    // again wait() inside a while loop
-                    sharedExplicitLock.wait();  // wait until the shared list contain some value in it
+            if (mode == Mode.RING_BUFFER) {
+                int valueRetrieved = ringBuffer.take();
+                AsyncLog.println("Removed value by consumer is: ", valueRetrieved,
+                        "; Now ring size is: ", ringBuffer.size());
+            } else if (mode == Mode.INT_QUEUE) {
+                int valueRetrieved = intQueue.take();
+                AsyncLog.println("Removed value by consumer is: ", valueRetrieved,
+                        "; Now queue size is: ", intQueue.size());
+            } else {
+                long ticket = beforeEnter();
+                synchronized (sharedExplicitLock) {
+                    entered(ticket);
+                    try {
+                        while (sharedList.size() == 0)
+                            // again wait() inside a while loop
+                            waitOnLock();  // wait until the shared list contain some value in it
 
-                int valueRetrieved = sharedList.removeFirst();
-                System.out.println("Removed value by consumer is: " + valueRetrieved +
-                        "; Now list size is: " + sharedList.size());
-                sharedExplicitLock.notify();
+                        int valueRetrieved = sharedList.removeFirst();
+                        AsyncLog.println("Removed value by consumer is: ", valueRetrieved,
+                                "; Now list size is: ", sharedList.size());
+                        sharedExplicitLock.notify();
+                    } finally {
+                        beforeExit(ticket);
+                    }
+                }
             }
             // This sleep time gives the producer time to fill out the shared list
             Thread.sleep(randomTimeInMilliseconds.nextInt(1000));
         }
     }
+
+    /**
+     * Adds one value without any console output, used by {@link ProcessorBenchmark}.
+     *
+     * @param value the value to hand to the consumer
+     * @throws InterruptedException if the thread is interrupted while waiting for space
+     */
+    void put(int value) throws InterruptedException {
+        if (mode == Mode.RING_BUFFER) {
+            ringBuffer.put(value);
+            return;
+        }
+        if (mode == Mode.INT_QUEUE) {
+            intQueue.put(value);
+            return;
+        }
+        long ticket = beforeEnter();
+        synchronized (sharedExplicitLock) {
+            entered(ticket);
+            try {
+                while (sharedList.size() == listLimitSize)
+                    waitOnLock();
+                sharedList.add(value);
+                sharedExplicitLock.notify();
+            } finally {
+                beforeExit(ticket);
+            }
+        }
+    }
+
+    /**
+     * Removes one value without any console output, used by {@link ProcessorBenchmark}.
+     *
+     * @return the oldest value
+     * @throws InterruptedException if the thread is interrupted while waiting for a value
+     */
+    int take() throws InterruptedException {
+        if (mode == Mode.RING_BUFFER)
+            return ringBuffer.take();
+        if (mode == Mode.INT_QUEUE)
+            return intQueue.take();
+        long ticket = beforeEnter();
+        synchronized (sharedExplicitLock) {
+            entered(ticket);
+            try {
+                while (sharedList.size() == 0)
+                    waitOnLock();
+                int value = sharedList.removeFirst();
+                sharedExplicitLock.notify();
+                return value;
+            } finally {
+                beforeExit(ticket);
+            }
+        }
+    }
+
+    // The calls an InstrumentedMonitor needs around each synchronized block; they do nothing
+    // when the lock is not measured
+    private long beforeEnter() {
+        return lockMetrics == null ? 0 : lockMetrics.beforeEnter();
+    }
+
+    private void entered(long ticket) {
+        if (lockMetrics != null) lockMetrics.entered(ticket);
+    }
+
+    private void beforeExit(long ticket) {
+        if (lockMetrics != null) lockMetrics.beforeExit(ticket);
+    }
+
+    // wait() on the shared lock; a measured lock also stops counting the hold while waiting
+    private void waitOnLock() throws InterruptedException {
+        if (lockMetrics == null) sharedExplicitLock.wait();
+        else lockMetrics.await();
+    }
 }
@@ -0,0 +1,126 @@
+package examples.producer_consumer.low_level_synchronization;
+
+import java.lang.management.ManagementFactory;
+import java.util.Arrays;
+
+/**
+ * Compares the {@link Processor.Mode modes} of {@link Processor} by moving
+ * the same amount of values from one producer thread to one consumer thread.
+ * <p>
+ * For every mode it reports:
+ * <ul>
+ *     <li>Throughput: values handed over per second.</li>
+ *     <li>Latency: time between the producer starting {@code put()} and the
+ *     consumer returning from {@code take()}, as percentiles.</li>
+ *     <li>Allocation: bytes allocated by the producer and the consumer threads
+ *     per value, as reported by the JVM's {@code ThreadMXBean}. Boxing and list
+ *     nodes show up here. The {@code int} queue allocates nothing per value, but
+ *     with only 10 slots the threads park very often, and the JDK lock allocates a
+ *     small node on every park (see {@code pattern.AllocationBenchmark} for a
+ *     bigger queue).</li>
+ * </ul>
+ * The producer writes the start time of every value into an array before handing the value
+ * over. Reading that array from the consumer is safe because the handoff itself (the lock,
+ * or the ordered store of the ring sequence) publishes the write.
+ * <p>
+ * The console output of {@link Processor#producer()} and {@link Processor#consumer()}
+ * would dominate any measurement, so the benchmark uses the silent {@code put()} and
+ * {@code take()} methods instead. Each mode runs a few warm-up rounds first to give the
+ * JIT compiler time to optimize the code.
+ */
+public class ProcessorBenchmark {
+
+    private static final int VALUES = 1_000_000;
+    private static final int WARM_UP_ROUNDS = 3;
+
+    // Index of the extra results stored after the latencies
+    private static final int ELAPSED = VALUES;
+    private static final int PRODUCER_BYTES = VALUES + 1;
+    private static final int CONSUMER_BYTES = VALUES + 2;
+
+    // HotSpot extension of the standard bean, able to report allocated bytes per thread
+    private static final com.sun.management.ThreadMXBean THREAD_BEAN =
+            (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+    public static void main(String[] args) throws InterruptedException {
+        for (Processor.Mode mode : Processor.Mode.values()) {
+            for (int i = 0; i < WARM_UP_ROUNDS; i++)
+                run(mode);
+            long[] result = run(mode);
+            report(mode, result);
+        }
+    }
+
+    /**
+     * @return the latency of every value, followed by the total elapsed time and
+     * the bytes allocated by the producer and by the consumer
+     */
+    private static long[] run(Processor.Mode mode) throws InterruptedException {
+        final Processor processor = new Processor(mode);
+        final long[] startTimes = new long[VALUES];
+        final long[] result = new long[VALUES + 3];
+
+        Thread producer = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                long allocatedBefore = allocatedBytes();
+                try {
+                    for (int i = 0; i < VALUES; i++) {
+                        startTimes[i] = System.nanoTime();
+                        processor.put(i);
+                    }
+                } catch (InterruptedException e) {
+                    e.printStackTrace();
+                }
+                result[PRODUCER_BYTES] = allocatedBytes() - allocatedBefore;
+            }
+        });
+
+        Thread consumer = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                long allocatedBefore = allocatedBytes();
+                try {
+                    for (int i = 0; i < VALUES; i++) {
+                        int value = processor.take();
+                        result[value] = System.nanoTime() - startTimes[value];
+                    }
+                } catch (InterruptedException e) {
+                    e.printStackTrace();
+                }
+                result[CONSUMER_BYTES] = allocatedBytes() - allocatedBefore;
+            }
+        });
+
+        long start = System.nanoTime();
+        producer.start();
+        consumer.start();
+        producer.join();
+        consumer.join();
+        result[ELAPSED] = System.nanoTime() - start;
+        return result;
+    }
+
+    private static long allocatedBytes() {
+        return THREAD_BEAN.getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+
+    private static void report(Processor.Mode mode, long[] result) {
+        long[] latencies = Arrays.copyOf(result, VALUES);
+        Arrays.sort(latencies);
+        System.out.printf("%-12s %,12.0f values/s   latency p50 %,8d ns   p99 %,10d ns   p99.9 %,10d ns"
+                        + "   max %,12d ns   allocated %6.2f bytes/value%n",
+                mode,
+                VALUES / (result[ELAPSED] / 1e9),
+                percentile(latencies, 50),
+                percentile(latencies, 99),
+                percentile(latencies, 99.9),
+                latencies[latencies.length - 1],
+                (result[PRODUCER_BYTES] + result[CONSUMER_BYTES]) / (double) VALUES);
+    }
+
+    private static long percentile(long[] sortedValues, double percentile) {
+        int index = (int) Math.ceil(percentile / 100 * sortedValues.length) - 1;
+        return sortedValues[Math.max(0, index)];
+    }
+}
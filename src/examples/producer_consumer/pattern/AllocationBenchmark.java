@@ -0,0 +1,143 @@
+package examples.producer_consumer.pattern;
+
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * Measures the bytes allocated per value when one producer thread hands
+ * {@code int} values to one consumer thread through:
+ * <ul>
+ *     <li>An {@code ArrayBlockingQueue<Integer>}, as {@link App} does.</li>
+ *     <li>An {@link IntBlockingQueue} with {@code put()} and {@code take()}.</li>
+ *     <li>An {@link IntBlockingQueue} with {@code put()} and a bulk {@code drainTo(int[])}.</li>
+ * </ul>
+ * The values go well beyond the {@code Integer} cache, so every value put into
+ * the {@code ArrayBlockingQueue} is boxed. The allocated bytes come from the
+ * JVM's {@code ThreadMXBean}, for both threads together.
+ * <p>
+ * The few bytes left for the {@code int} queue are not per value: the JDK lock
+ * allocates a small node every time a thread actually has to park, so that number
+ * drops as the queue gets bigger or the consumer drains in bulk.
+ */
+public class AllocationBenchmark {
+
+    private static final int VALUES = 10_000_000;
+    private static final int CAPACITY = 1024;
+
+    // HotSpot extension of the standard bean, able to report allocated bytes per thread
+    private static final com.sun.management.ThreadMXBean THREAD_BEAN =
+            (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+    /** One way of moving {@link #VALUES} values between the two threads. */
+    private interface Handoff {
+        void produce() throws InterruptedException;
+
+        long consume() throws InterruptedException;
+    }
+
+    public static void main(String[] args) throws InterruptedException {
+        for (int round = 0; round < 2; round++) {
+            boolean warmUp = round == 0;
+            measure("ArrayBlockingQueue<Integer>", boxed(), warmUp);
+            measure("IntBlockingQueue take()", primitive(false), warmUp);
+            measure("IntBlockingQueue drainTo()", primitive(true), warmUp);
+        }
+    }
+
+    private static Handoff boxed() {
+        final BlockingQueue<Integer> queue = new ArrayBlockingQueue<Integer>(CAPACITY);
+        return new Handoff() {
+            @Override
+            public void produce() throws InterruptedException {
+                for (int i = 0; i < VALUES; i++)
+                    queue.put(i);
+            }
+
+            @Override
+            public long consume() throws InterruptedException {
+                long sum = 0;
+                for (int i = 0; i < VALUES; i++)
+                    sum += queue.take();
+                return sum;
+            }
+        };
+    }
+
+    private static Handoff primitive(final boolean bulk) {
+        final IntBlockingQueue queue = new IntBlockingQueue(CAPACITY);
+        return new Handoff() {
+            @Override
+            public void produce() throws InterruptedException {
+                for (int i = 0; i < VALUES; i++)
+                    queue.put(i);
+            }
+
+            @Override
+            public long consume() throws InterruptedException {
+                long sum = 0;
+                if (!bulk) {
+                    for (int i = 0; i < VALUES; i++)
+                        sum += queue.take();
+                    return sum;
+                }
+                int[] batch = new int[CAPACITY];
+                int received = 0;
+                while (received < VALUES) {
+                    batch[0] = queue.take();  // waits for the first value
+                    int drained = 1 + queue.drainTo(batch, 1, batch.length - 1);
+                    for (int i = 0; i < drained; i++)
+                        sum += batch[i];
+                    received += drained;
+                }
+                return sum;
+            }
+        };
+    }
+
+    private static void measure(String name, final Handoff handoff, boolean warmUp) throws InterruptedException {
+        final long[] allocated = new long[2];
+
+        Thread producer = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                long before = allocatedBytes();
+                try {
+                    handoff.produce();
+                } catch (InterruptedException ignored) {
+                }
+                allocated[0] = allocatedBytes() - before;
+            }
+        });
+
+        Thread consumer = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                long before = allocatedBytes();
+                try {
+                    sink = handoff.consume();
+                } catch (InterruptedException ignored) {
+                }
+                allocated[1] = allocatedBytes() - before;
+            }
+        });
+
+        long start = System.nanoTime();
+        producer.start();
+        consumer.start();
+        producer.join();
+        consumer.join();
+        long elapsed = System.nanoTime() - start;
+
+        if (warmUp) return;
+        System.out.printf("%-28s %,12.0f values/s   allocated %6.2f bytes/value%n",
+                name, VALUES / (elapsed / 1e9), (allocated[0] + allocated[1]) / (double) VALUES);
+    }
+
+    private static long allocatedBytes() {
+        return THREAD_BEAN.getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+
+    // keeps the JIT compiler from removing the consumer loop
+    private static volatile long sink;
+}
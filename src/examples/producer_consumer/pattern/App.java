@@ -1,16 +1,40 @@
 package examples.producer_consumer.pattern;
 
-import java.util.Random;
+import examples.logging.AsyncLog;
+import examples.producer_consumer.virtual_threads.ThreadMode;
+import examples.random.RandomStreams;
+import examples.random.SplitRandom;
+
+import java.util.Arrays;
 import java.util.concurrent.ArrayBlockingQueue;
 import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.function.IntConsumer;
 
 /**
  * The Producer-Consumer pattern is based on the idea that one
  * or more threads (producers) generate items and add them to a shared
  * data structure (a {@code queue}), while other threads (consumers)
  * retrieve and process those items.
- *
- *
+ * <p>
+ * Run it with {@code batched [batchSize] [lingerMillis]} as arguments to use the
+ * batched mode: the producer publishes a whole array of values with one lock
+ * acquisition and the consumer drains up to {@code batchSize} values per wakeup
+ * from a {@link BatchingQueue}.
+ * </p>
+ * <p>
+ * Run it with {@code primitive} as argument to use an {@link IntBlockingQueue},
+ * which stores the values as {@code int}s and never boxes them into {@code Integer}s.
+ * </p>
+ * <p>
+ * Run it with {@code stealing [workers]} as arguments to replace the single
+ * consumer with a {@link WorkStealingPool}, where each worker has its own deque
+ * and idle workers steal values from busy ones.
+ * </p>
+ * <p>
+ * Start the JVM with {@code -Dexamples.threads=VIRTUAL} to run the producer and
+ * the consumer on virtual threads (Java 21 or later), see {@link ThreadMode}.
+ * </p>
  */
 public class App {
     /**
@@ -29,28 +53,53 @@ public class App {
      */
     private static BlockingQueue<Integer> queue = new ArrayBlockingQueue<Integer>(10);
 
+    /** Maximum number of values published or drained at once in batched mode. */
+    private static int batchSize = 10;
+    /** How long the batched consumer waits for a full batch once the first value arrives. */
+    private static long maxLingerMillis = 50;
+    private static BatchingQueue<Integer> batchingQueue;
+
+    private static IntBlockingQueue intQueue = new IntBlockingQueue(10);
+
 
     public static void main(String[] args) throws InterruptedException {
+        if (args.length > 0 && args[0].equals("stealing")) {
+            workStealing(args.length > 1 ? Integer.parseInt(args[1]) : 4);
+            return;
+        }
+        final boolean batched = args.length > 0 && args[0].equals("batched");
+        final boolean primitive = args.length > 0 && args[0].equals("primitive");
+        if (batched) {
+            if (args.length > 1) batchSize = Integer.parseInt(args[1]);
+            if (args.length > 2) maxLingerMillis = Long.parseLong(args[2]);
+            // room for a few batches, so the producer can fill one while the consumer drains another
+            batchingQueue = new BatchingQueue<Integer>(Math.max(10, 4 * batchSize));
+        }
 
-        Thread t1 = new Thread(new Runnable() {
+        ThreadMode threadMode = ThreadMode.fromSystemProperty();
+        Thread t1 = threadMode.newThread(new Runnable() {
             @Override
             public void run() {
                 try {
-                    producer();
+                    if (batched) batchedProducer();
+                    else if (primitive) primitiveProducer();
+                    else producer();
                 } catch (InterruptedException ignored) {
                 }
             }
-        });
+        }, "producer");
 
-        Thread t2 = new Thread(new Runnable() {
+        Thread t2 = threadMode.newThread(new Runnable() {
             @Override
             public void run() {
                 try {
-                    consumer();
+                    if (batched) batchedConsumer();
+                    else if (primitive) primitiveConsumer();
+                    else consumer();
                 } catch (InterruptedException ignored) {
                 }
             }
-        });
+        }, "consumer");
 
         t1.start();
         t2.start();
@@ -82,7 +131,7 @@ public class App {
      * processing items
      */
     private static void producer() throws InterruptedException {
-        Random random = new Random();
+        SplitRandom random = RandomStreams.shared().current();
         while (true) {
             queue.put(random.nextInt(100));
             /*
@@ -102,7 +151,7 @@ public class App {
      * processing items
      */
     private static void consumer() throws InterruptedException {
-        Random random = new Random();
+        SplitRandom random = RandomStreams.shared().current();
          /*
          * Uses randomness and sleep to periodically retrieve integers from the queue.
          * In a real-world scenario, processing each item takes time.
@@ -119,11 +168,122 @@ public class App {
                  * available in the queue if it is empty.
                  * While waiting, it does not consume excessive resources.
                  */
-                System.out.println("Taken value: " + value
+                AsyncLog.println("Taken value: " + value
                         + "; Queue size is: " + queue.size());
             }
         }
     }
 
-}
+    /**
+     * Batched version of {@link #producer()}.
+     * <p>
+     * The values are generated into an array first, then the whole array is
+     * published with {@code putAll()}, which takes the queue lock once for
+     * the batch instead of once for every value.
+     * </p>
+     *
+     * @throws InterruptedException if the thread is interrupted while
+     * processing items
+     */
+    private static void batchedProducer() throws InterruptedException {
+        SplitRandom random = RandomStreams.shared().current();
+        Integer[] batch = new Integer[batchSize];
+        while (true) {
+            for (int i = 0; i < batch.length; i++)
+                batch[i] = random.nextInt(100);
+            batchingQueue.putAll(batch, 0, batch.length);
+        }
+    }
 
+    /**
+     * Batched version of {@link #consumer()}.
+     * <p>
+     * Every wakeup drains up to {@code batchSize} values, waiting at most
+     * {@code maxLingerMillis} for the batch to fill up, and then processes
+     * the whole batch without touching the queue again.
+     * </p>
+     *
+     * @throws InterruptedException if the thread is interrupted while
+     * processing items
+     */
+    private static void batchedConsumer() throws InterruptedException {
+        Integer[] batch = new Integer[batchSize];
+        while (true) {
+            Thread.sleep(100);  // simulates the time spent processing the previous batch
+
+            int drained = batchingQueue.drainTo(batch, batch.length, maxLingerMillis, TimeUnit.MILLISECONDS);
+            long sum = 0;
+            for (int i = 0; i < drained; i++)
+                sum += batch[i];
+            AsyncLog.println("Taken batch of " + drained + " values, sum: " + sum
+                    + "; Queue size is: " + batchingQueue.size());
+        }
+    }
+
+    /**
+     * Version of {@link #producer()} that puts the random values as {@code int}s.
+     *
+     * @throws InterruptedException if the thread is interrupted while
+     * processing items
+     */
+    private static void primitiveProducer() throws InterruptedException {
+        SplitRandom random = RandomStreams.shared().current();
+        while (true) {
+            intQueue.put(random.nextInt(100));
+        }
+    }
+
+    /**
+     * Version of {@link #consumer()} that takes the values as {@code int}s.
+     *
+     * @throws InterruptedException if the thread is interrupted while
+     * processing items
+     */
+    private static void primitiveConsumer() throws InterruptedException {
+        SplitRandom random = RandomStreams.shared().current();
+        while (true) {
+            Thread.sleep(100);
+
+            if (random.nextInt(10) == 0) {
+                int value = intQueue.take();
+                AsyncLog.println("Taken value: " + value
+                        + "; Queue size is: " + intQueue.size());
+            }
+        }
+    }
+
+    /**
+     * Runs the producer on the main thread and several consumers in a
+     * {@link WorkStealingPool}.
+     * <p>
+     * Each value is processed for as many milliseconds as the value itself,
+     * so some workers get much more work than others, and the idle ones steal it.
+     * </p>
+     *
+     * @param workers number of consumer threads
+     * @throws InterruptedException if the thread is interrupted while
+     * processing items
+     */
+    private static void workStealing(int workers) throws InterruptedException {
+        WorkStealingPool pool = new WorkStealingPool(workers, 10, WorkStealingPool.Distribution.ROUND_ROBIN,
+                new IntConsumer() {
+                    @Override
+                    public void accept(int value) {
+                        try {
+                            Thread.sleep(value);    // simulates processing time
+                        } catch (InterruptedException ignored) {
+                        }
+                        AsyncLog.println(Thread.currentThread().getName() + " processed value: " + value);
+                    }
+                });
+        pool.start();
+
+        SplitRandom random = RandomStreams.shared().current();
+        for (int i = 0; i < 500; i++)
+            pool.submit(random.nextInt(100));
+        pool.shutdown();    // waits until every value is processed
+
+        AsyncLog.println("Processed per worker: " + Arrays.toString(pool.processedPerWorker()));
+        AsyncLog.println("Stolen per worker: " + Arrays.toString(pool.stolenPerWorker()));
+    }
+}
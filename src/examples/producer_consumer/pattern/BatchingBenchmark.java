@@ -0,0 +1,127 @@
+package examples.producer_consumer.pattern;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures how many values per second one producer thread can hand to one
+ * consumer thread with:
+ * <ul>
+ *     <li>An {@code ArrayBlockingQueue} using {@code put()} and {@code take()}
+ *     for every value, as {@link App} does.</li>
+ *     <li>A {@link BatchingQueue} using {@code putAll()} and {@code drainTo()}
+ *     with several batch sizes.</li>
+ * </ul>
+ * Both queues hold the same number of values, so only the number of lock
+ * acquisitions changes between runs.
+ */
+public class BatchingBenchmark {
+
+    private static final int VALUES = 5_000_000;
+    private static final int CAPACITY = 1024;
+    private static final int[] BATCH_SIZES = {1, 16, 64, 256};
+    private static final long MAX_LINGER_MICROS = 100;
+
+    public static void main(String[] args) throws InterruptedException {
+        for (int round = 0; round < 2; round++) {
+            boolean warmUp = round == 0;
+            report("ArrayBlockingQueue", 1, perItem(), warmUp);
+            for (int batchSize : BATCH_SIZES)
+                report("BatchingQueue", batchSize, batched(batchSize), warmUp);
+        }
+    }
+
+    private static long perItem() throws InterruptedException {
+        final BlockingQueue<Integer> queue = new ArrayBlockingQueue<Integer>(CAPACITY);
+
+        Thread producer = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    for (int i = 0; i < VALUES; i++)
+                        queue.put(i & 127);   // stays inside the Integer cache, no boxing cost
+                } catch (InterruptedException ignored) {
+                }
+            }
+        });
+
+        Thread consumer = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    long sum = 0;
+                    for (int i = 0; i < VALUES; i++)
+                        sum += queue.take();
+                    blackHole(sum);
+                } catch (InterruptedException ignored) {
+                }
+            }
+        });
+
+        return time(producer, consumer);
+    }
+
+    private static long batched(final int batchSize) throws InterruptedException {
+        final BatchingQueue<Integer> queue = new BatchingQueue<Integer>(CAPACITY);
+
+        Thread producer = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    Integer[] batch = new Integer[batchSize];
+                    for (int i = 0; i < VALUES; i += batchSize) {
+                        int length = Math.min(batchSize, VALUES - i);
+                        for (int j = 0; j < length; j++)
+                            batch[j] = (i + j) & 127;
+                        queue.putAll(batch, 0, length);
+                    }
+                } catch (InterruptedException ignored) {
+                }
+            }
+        });
+
+        Thread consumer = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    Integer[] batch = new Integer[batchSize];
+                    long sum = 0;
+                    int received = 0;
+                    while (received < VALUES) {
+                        int drained = queue.drainTo(batch, batchSize, MAX_LINGER_MICROS, TimeUnit.MICROSECONDS);
+                        for (int j = 0; j < drained; j++)
+                            sum += batch[j];
+                        received += drained;
+                    }
+                    blackHole(sum);
+                } catch (InterruptedException ignored) {
+                }
+            }
+        });
+
+        return time(producer, consumer);
+    }
+
+    private static long time(Thread producer, Thread consumer) throws InterruptedException {
+        long start = System.nanoTime();
+        producer.start();
+        consumer.start();
+        producer.join();
+        consumer.join();
+        return System.nanoTime() - start;
+    }
+
+    private static void report(String queue, int batchSize, long elapsedNanos, boolean warmUp) {
+        if (warmUp) return;
+        System.out.printf("%-20s batch %4d   %,12.0f values/s%n",
+                queue, batchSize, VALUES / (elapsedNanos / 1e9));
+    }
+
+    // keeps the JIT compiler from removing the consumer loop
+    private static volatile long sink;
+
+    private static void blackHole(long value) {
+        sink = value;
+    }
+}
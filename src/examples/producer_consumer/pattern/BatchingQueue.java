@@ -0,0 +1,186 @@
+package examples.producer_consumer.pattern;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * A bounded blocking queue that moves items in batches.
+ * <p>
+ * Like {@code ArrayBlockingQueue}, it keeps the items in a circular array
+ * guarded by a single {@code ReentrantLock} with two {@code Condition}s,
+ * one for "not empty" and one for "not full". The difference is that the lock
+ * is acquired once per <em>batch</em> instead of once per item:
+ * <ul>
+ *     <li>{@link #putAll(Object[], int, int)} copies a whole array of items into the
+ *     queue while holding the lock a single time, as long as there is space for it.</li>
+ *     <li>{@link #drainTo(Object[], int, long, TimeUnit)} waits for the first item, then
+ *     <em>lingers</em> for a bounded amount of time to let a full batch accumulate, and
+ *     finally removes up to {@code maxItems} items at once.</li>
+ * </ul>
+ * Fewer lock handoffs means fewer context switches between the producer and the
+ * consumer, which is usually what limits the throughput of a per-item
+ * {@code put()}/{@code take()} pipeline.
+ *
+ * @param <E> the type of the items held in the queue
+ */
+public class BatchingQueue<E> {
+
+    private final Object[] items;
+    private int takeIndex;
+    private int putIndex;
+    private int count;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition notEmpty = lock.newCondition();
+    private final Condition notFull = lock.newCondition();
+
+    public BatchingQueue(int capacity) {
+        if (capacity < 1) throw new IllegalArgumentException("Capacity must be positive: " + capacity);
+        items = new Object[capacity];
+    }
+
+    /**
+     * Adds a single item, waiting for space if the queue is full.
+     *
+     * @param item the item to add, not {@code null}
+     * @throws InterruptedException if the thread is interrupted while waiting
+     */
+    public void put(E item) throws InterruptedException {
+        if (item == null) throw new NullPointerException();
+        lock.lockInterruptibly();
+        try {
+            while (count == items.length)
+                notFull.await();
+            enqueue(item);
+            notEmpty.signal();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Adds {@code length} items from {@code batch}, starting at {@code offset}.
+     * <p>
+     * When the whole batch fits, it is copied with a single lock acquisition.
+     * When it does not, the part that fits is added, the consumer is signalled,
+     * and the producer waits for space to add the rest.
+     *
+     * @param batch  the array holding the items, none of them {@code null}
+     * @param offset index of the first item to add
+     * @param length number of items to add
+     * @throws NullPointerException if one of the items is {@code null}; nothing is added then
+     * @throws InterruptedException if the thread is interrupted while waiting;
+     *                              the items added before the interruption stay in the queue
+     */
+    public void putAll(E[] batch, int offset, int length) throws InterruptedException {
+        if (offset < 0 || length < 0 || offset + length > batch.length)
+            throw new IndexOutOfBoundsException("offset " + offset + ", length " + length);
+        int end = offset + length;
+        // Checked up front, so that a null item does not leave half of the batch in the queue
+        for (int i = offset; i < end; i++)
+            if (batch[i] == null) throw new NullPointerException("null item at index " + i);
+        lock.lockInterruptibly();
+        try {
+            while (offset < end) {
+                while (count == items.length)
+                    notFull.await();
+                int chunk = Math.min(end - offset, items.length - count);
+                for (int i = 0; i < chunk; i++)
+                    enqueue(batch[offset + i]);
+                offset += chunk;
+                notEmpty.signal();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Removes a single item, waiting until one is available.
+     *
+     * @return the oldest item
+     * @throws InterruptedException if the thread is interrupted while waiting
+     */
+    public E take() throws InterruptedException {
+        lock.lockInterruptibly();
+        try {
+            while (count == 0)
+                notEmpty.await();
+            E item = dequeue();
+            notFull.signal();
+            return item;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Removes up to {@code maxItems} items into {@code target}.
+     * <p>
+     * The call waits until at least one item is available. After that, if fewer than
+     * {@code maxItems} items are queued, it keeps waiting for more, but never longer than
+     * {@code maxLinger} in total. A linger of zero drains whatever is available as soon
+     * as the first item arrives.
+     *
+     * @param target    the array that receives the items, from index 0
+     * @param maxItems  the maximum number of items to remove
+     * @param maxLinger how long to wait for a full batch once the first item is available
+     * @param unit      the unit of {@code maxLinger}
+     * @return the number of items copied into {@code target}, at least 1
+     * @throws InterruptedException if the thread is interrupted while waiting
+     */
+    public int drainTo(E[] target, int maxItems, long maxLinger, TimeUnit unit) throws InterruptedException {
+        if (maxItems < 1 || maxItems > target.length)
+            throw new IllegalArgumentException("maxItems out of range: " + maxItems);
+        lock.lockInterruptibly();
+        try {
+            while (count == 0)
+                notEmpty.await();
+
+            long lingerNanos = unit.toNanos(maxLinger);
+            while (count < maxItems && count < items.length && lingerNanos > 0)
+                lingerNanos = notEmpty.awaitNanos(lingerNanos);
+
+            int drained = Math.min(count, maxItems);
+            for (int i = 0; i < drained; i++)
+                target[i] = dequeue();
+            notFull.signalAll();      // a whole batch of space is now free
+            if (count > 0)
+                notEmpty.signal();    // let another consumer take the rest
+            return drained;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int size() {
+        lock.lock();
+        try {
+            return count;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int capacity() {
+        return items.length;
+    }
+
+    // Must be called with the lock held and count < items.length
+    private void enqueue(E item) {
+        items[putIndex] = item;
+        if (++putIndex == items.length) putIndex = 0;
+        count++;
+    }
+
+    // Must be called with the lock held and count > 0
+    @SuppressWarnings("unchecked")
+    private E dequeue() {
+        E item = (E) items[takeIndex];
+        items[takeIndex] = null;
+        if (++takeIndex == items.length) takeIndex = 0;
+        count--;
+        return item;
+    }
+}
@@ -0,0 +1,157 @@
+package examples.producer_consumer.pattern;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * A bounded blocking queue of primitive {@code int} values.
+ * <p>
+ * A {@code BlockingQueue<Integer>} can only store objects, so every value
+ * outside the small cache of {@code Integer.valueOf()} (-128 to 127) is boxed
+ * into a new {@code Integer} when it is added, and a {@code LinkedList} also
+ * allocates a node for it. This queue keeps the values in a pre-allocated
+ * {@code int[]} used as a ring, so once it is built, {@code put()},
+ * {@code take()} and {@code drainTo()} do not allocate anything.
+ * <p>
+ * The synchronization is the same as in {@code ArrayBlockingQueue}: one
+ * {@code ReentrantLock} and two {@code Condition}s.
+ */
+public class IntBlockingQueue {
+
+    private final int[] values;
+    private int takeIndex;
+    private int putIndex;
+    private int count;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition notEmpty = lock.newCondition();
+    private final Condition notFull = lock.newCondition();
+
+    public IntBlockingQueue(int capacity) {
+        if (capacity < 1) throw new IllegalArgumentException("Capacity must be positive: " + capacity);
+        values = new int[capacity];
+    }
+
+    /**
+     * Adds a value, waiting for space if the queue is full.
+     *
+     * @param value the value to add
+     * @throws InterruptedException if the thread is interrupted while waiting
+     */
+    public void put(int value) throws InterruptedException {
+        lock.lockInterruptibly();
+        try {
+            while (count == values.length)
+                notFull.await();
+            enqueue(value);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Adds a value if there is space for it, waiting at most {@code timeout}.
+     *
+     * @return {@code true} if the value was added
+     * @throws InterruptedException if the thread is interrupted while waiting
+     */
+    public boolean offer(int value, long timeout, TimeUnit unit) throws InterruptedException {
+        long nanos = unit.toNanos(timeout);
+        lock.lockInterruptibly();
+        try {
+            while (count == values.length) {
+                if (nanos <= 0) return false;
+                nanos = notFull.awaitNanos(nanos);
+            }
+            enqueue(value);
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Removes the oldest value, waiting until one is available.
+     *
+     * @return the oldest value
+     * @throws InterruptedException if the thread is interrupted while waiting
+     */
+    public int take() throws InterruptedException {
+        lock.lockInterruptibly();
+        try {
+            while (count == 0)
+                notEmpty.await();
+            return dequeue();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Removes every available value, up to the length of {@code target}, without waiting.
+     *
+     * @param target the array that receives the values, from index 0
+     * @return the number of values copied into {@code target}
+     */
+    public int drainTo(int[] target) {
+        return drainTo(target, 0, target.length);
+    }
+
+    /**
+     * Removes up to {@code maxValues} available values without waiting.
+     *
+     * @param target    the array that receives the values
+     * @param offset    index of {@code target} where the first value is written
+     * @param maxValues the maximum number of values to remove
+     * @return the number of values copied into {@code target}
+     */
+    public int drainTo(int[] target, int offset, int maxValues) {
+        if (offset < 0 || maxValues < 0 || offset + maxValues > target.length)
+            throw new IndexOutOfBoundsException("offset " + offset + ", maxValues " + maxValues);
+        lock.lock();
+        try {
+            int drained = Math.min(count, maxValues);
+            // at most two copies: up to the end of the ring, then from its start
+            int firstPart = Math.min(drained, values.length - takeIndex);
+            System.arraycopy(values, takeIndex, target, offset, firstPart);
+            System.arraycopy(values, 0, target, offset + firstPart, drained - firstPart);
+            takeIndex = (takeIndex + drained) % values.length;
+            count -= drained;
+            if (drained > 0) notFull.signalAll();
+            return drained;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int size() {
+        lock.lock();
+        try {
+            return count;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int capacity() {
+        return values.length;
+    }
+
+    // Must be called with the lock held and count < values.length
+    private void enqueue(int value) {
+        values[putIndex] = value;
+        if (++putIndex == values.length) putIndex = 0;
+        count++;
+        notEmpty.signal();
+    }
+
+    // Must be called with the lock held and count > 0
+    private int dequeue() {
+        int value = values[takeIndex];
+        if (++takeIndex == values.length) takeIndex = 0;
+        count--;
+        notFull.signal();
+        return value;
+    }
+}
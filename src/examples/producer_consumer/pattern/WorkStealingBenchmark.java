@@ -0,0 +1,135 @@
+package examples.producer_consumer.pattern;
+
+import java.util.Queue;
+import java.util.Random;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.function.IntConsumer;
+
+/**
+ * Compares the throughput of N consumers sharing one {@code ArrayBlockingQueue}
+ * against a {@link WorkStealingPool} with N workers, for N from 1 up to twice the
+ * number of available processors.
+ * <p>
+ * Each value stands for a CPU-bound task whose cost is the value itself, and the
+ * values are skewed: most are cheap and a few are expensive. With round-robin
+ * distribution that leaves some workers with far more work than others, which is
+ * what stealing is meant to fix.
+ */
+public class WorkStealingBenchmark {
+
+    private static final int VALUES = 200_000;
+    private static final int CAPACITY = 1024;
+    private static final int STOP = -1;
+
+    // Every consumer thread adds its results to its own accumulator, and publish()
+    // adds them all to the sink once a run is over, so the threads do not all write
+    // to the same variable after every task
+    private static final Queue<long[]> ACCUMULATORS = new ConcurrentLinkedQueue<long[]>();
+    private static final ThreadLocal<long[]> ACCUMULATOR = new ThreadLocal<long[]>() {
+        @Override
+        protected long[] initialValue() {
+            long[] accumulator = new long[1];
+            ACCUMULATORS.add(accumulator);
+            return accumulator;
+        }
+    };
+
+    private static final IntConsumer TASK = new IntConsumer() {
+        @Override
+        public void accept(int value) {
+            ACCUMULATOR.get()[0] += spin(value);
+        }
+    };
+
+    public static void main(String[] args) throws InterruptedException {
+        int[] values = skewedValues();
+        int maxConsumers = 2 * Runtime.getRuntime().availableProcessors();
+        System.out.println("Available processors: " + Runtime.getRuntime().availableProcessors());
+
+        for (int round = 0; round < 2; round++) {
+            boolean warmUp = round == 0;
+            for (int consumers = 1; consumers <= Math.max(4, maxConsumers); consumers *= 2) {
+                long shared = sharedQueue(values, consumers);
+                long stealing = workStealing(values, consumers);
+                if (warmUp) continue;
+                System.out.printf("%3d consumers   shared queue %,12.0f values/s   work stealing %,12.0f values/s%n",
+                        consumers, VALUES / (shared / 1e9), VALUES / (stealing / 1e9));
+            }
+        }
+    }
+
+    private static long sharedQueue(int[] values, int consumerCount) throws InterruptedException {
+        final BlockingQueue<Integer> queue = new ArrayBlockingQueue<Integer>(CAPACITY);
+        Thread[] consumers = new Thread[consumerCount];
+        for (int i = 0; i < consumerCount; i++) {
+            consumers[i] = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        while (true) {
+                            int value = queue.take();
+                            if (value == STOP) return;
+                            TASK.accept(value);
+                        }
+                    } catch (InterruptedException ignored) {
+                    }
+                }
+            });
+        }
+
+        long start = System.nanoTime();
+        for (Thread consumer : consumers)
+            consumer.start();
+        for (int value : values)
+            queue.put(value);
+        for (int i = 0; i < consumerCount; i++)
+            queue.put(STOP);
+        for (Thread consumer : consumers)
+            consumer.join();
+        long elapsed = System.nanoTime() - start;
+        publish();
+        return elapsed;
+    }
+
+    private static long workStealing(int[] values, int workers) throws InterruptedException {
+        WorkStealingPool pool = new WorkStealingPool(workers, CAPACITY / workers + 1,
+                WorkStealingPool.Distribution.ROUND_ROBIN, TASK);
+        long start = System.nanoTime();
+        pool.start();
+        for (int value : values)
+            pool.submit(value);
+        pool.shutdown();
+        long elapsed = System.nanoTime() - start;
+        publish();
+        return elapsed;
+    }
+
+    // 90% of the values cost 10 iterations, 10% cost 1,000
+    private static int[] skewedValues() {
+        Random random = new Random(42);
+        int[] values = new int[VALUES];
+        for (int i = 0; i < VALUES; i++)
+            values[i] = random.nextInt(10) == 0 ? 1_000 : 10;
+        return values;
+    }
+
+    private static long spin(int iterations) {
+        long x = iterations;
+        for (int i = 0; i < iterations; i++)
+            x = x * 6364136223846793005L + 1442695040888963407L;
+        return x;
+    }
+
+    // Called once the consumer threads have stopped, so their accumulators are complete
+    private static void publish() {
+        long sum = 0;
+        for (long[] accumulator; (accumulator = ACCUMULATORS.poll()) != null; )
+            sum += accumulator[0];
+        sink += sum;
+    }
+
+    // keeps the JIT compiler from removing the work
+    private static volatile long sink;
+}
@@ -0,0 +1,180 @@
+package examples.producer_consumer.pattern;
+
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.function.IntConsumer;
+
+/**
+ * A pool of consumer threads where each worker owns its own deque of values.
+ * <p>
+ * When several consumers share one {@code ArrayBlockingQueue}, every
+ * {@code take()} competes for the same lock, so adding consumers soon stops
+ * adding throughput. Here the producer hands each value to a single worker,
+ * chosen round-robin or by key, so every lock is normally shared by two threads:
+ * the producer and the owner.
+ * <p>
+ * Splitting the work up front has a risk: one worker may get the slow values
+ * while the others sit idle. So when a worker finds its own deque empty, it
+ * <em>steals</em> from the other end of another worker's deque. The owner takes
+ * the oldest values from the head, the thieves take the newest ones from the tail.
+ * <p>
+ * Each deque is a {@code LinkedBlockingDeque}, which guards both ends with a single
+ * lock and boxes every value, so a thief does contend with the owner and the
+ * producer for that lock. What the pool gains over a shared queue is that each lock
+ * is normally only used by the producer and one owner; a thief only joins in when
+ * it has run out of work of its own.
+ * <p>
+ * Stealing means that values with the same key are not guaranteed to be processed
+ * in order, or by the same thread.
+ */
+public class WorkStealingPool {
+
+    /** How the producer picks the worker that receives a value. */
+    public enum Distribution {
+        ROUND_ROBIN,
+        BY_KEY
+    }
+
+    private final Worker[] workers;
+    private final Distribution distribution;
+    private final IntConsumer task;
+    private int nextWorker;             // used by the producer thread only
+    private volatile boolean running;
+
+    /**
+     * @param workerCount   number of consumer threads
+     * @param dequeCapacity number of values each worker can hold before the producer waits
+     * @param distribution  how values are assigned to workers
+     * @param task          the processing done for each value
+     */
+    public WorkStealingPool(int workerCount, int dequeCapacity, Distribution distribution, IntConsumer task) {
+        if (workerCount < 1) throw new IllegalArgumentException("At least one worker is needed");
+        this.distribution = distribution;
+        this.task = task;
+        workers = new Worker[workerCount];
+        for (int i = 0; i < workerCount; i++)
+            workers[i] = new Worker(i, dequeCapacity);
+    }
+
+    public void start() {
+        running = true;
+        for (Worker worker : workers)
+            worker.thread.start();
+    }
+
+    /**
+     * Hands a value to a worker, using the value itself as the key.
+     *
+     * @throws InterruptedException if interrupted while waiting for space in the worker's deque
+     */
+    public void submit(int value) throws InterruptedException {
+        submit(value, value);
+    }
+
+    /**
+     * Hands a value to a worker. Must be called by a single producer thread.
+     *
+     * @param key   selects the worker in {@link Distribution#BY_KEY} mode
+     * @param value the value to process
+     * @throws InterruptedException if interrupted while waiting for space in the worker's deque
+     */
+    public void submit(int key, int value) throws InterruptedException {
+        if (!running) throw new IllegalStateException("The pool is not running");
+        int index;
+        if (distribution == Distribution.BY_KEY) {
+            index = Math.floorMod(key, workers.length);
+        } else {
+            index = nextWorker;
+            if (++nextWorker == workers.length) nextWorker = 0;
+        }
+        workers[index].deque.putLast(value);
+    }
+
+    /**
+     * Waits until every submitted value has been processed, then stops the workers.
+     *
+     * @throws InterruptedException if interrupted while waiting
+     */
+    public void shutdown() throws InterruptedException {
+        running = false;
+        for (Worker worker : workers)
+            worker.thread.join();
+    }
+
+    /**
+     * @return the number of values processed by each worker, stolen ones included;
+     * only exact after {@link #shutdown()}
+     */
+    public long[] processedPerWorker() {
+        long[] processed = new long[workers.length];
+        for (int i = 0; i < workers.length; i++)
+            processed[i] = workers[i].processed;
+        return processed;
+    }
+
+    /**
+     * @return the number of values each worker stole from the others;
+     * only exact after {@link #shutdown()}
+     */
+    public long[] stolenPerWorker() {
+        long[] stolen = new long[workers.length];
+        for (int i = 0; i < workers.length; i++)
+            stolen[i] = workers[i].stolen;
+        return stolen;
+    }
+
+    private boolean allDequesEmpty() {
+        for (Worker worker : workers)
+            if (!worker.deque.isEmpty()) return false;
+        return true;
+    }
+
+    private class Worker implements Runnable {
+        // One lock for both ends: the owner, the producer and the thieves all take it
+        private final LinkedBlockingDeque<Integer> deque;
+        private final Thread thread;
+        private long processed;     // written by this worker only
+        private long stolen;
+
+        Worker(int index, int capacity) {
+            this.deque = new LinkedBlockingDeque<Integer>(capacity);
+            this.thread = new Thread(this, "worker-" + index);
+        }
+
+        @Override
+        public void run() {
+            try {
+                while (true) {
+                    Integer value = deque.pollFirst();
+                    if (value == null) {
+                        value = steal();
+                        if (value != null) stolen++;
+                    }
+                    if (value == null) {
+                        // Nothing to do anywhere: stop if the producer is done,
+                        // otherwise wait a little for the producer.
+                        if (!running && allDequesEmpty()) return;
+                        value = deque.pollFirst(1, TimeUnit.MILLISECONDS);
+                        if (value == null) continue;
+                    }
+                    task.accept(value);
+                    processed++;
+                }
+            } catch (InterruptedException ignored) {
+            }
+        }
+
+        // Visits the other workers, starting at a random one, and takes their newest value
+        private Integer steal() {
+            int start = ThreadLocalRandom.current().nextInt(workers.length);
+            for (int i = 0; i < workers.length; i++) {
+                Worker victim = workers[(start + i) % workers.length];
+                if (victim == this) continue;
+                Integer value = victim.deque.pollLast();
+                if (value != null) return value;
+            }
+            return null;
+        }
+    }
+}
@@ -0,0 +1,89 @@
+package examples.producer_consumer.pipeline;
+
+import examples.logging.AsyncLog;
+import examples.producer_consumer.lock_free.BackoffWaitStrategy;
+import examples.producer_consumer.lock_free.BlockingWaitStrategy;
+import examples.random.RandomStreams;
+import examples.random.SplitRandom;
+
+/**
+ * The mutable event that travels through the pipeline. Each stage writes its
+ * own fields, so no two stages ever write the same field of an event.
+ */
+class ValueEvent {
+    int raw;        // written by the producer
+    int value;      // written by "parse"
+    int squared;    // written by "square"
+    boolean even;   // written by "parity"
+}
+
+/**
+ * The producer-consumer pattern of {@link examples.producer_consumer.pattern.App}
+ * extended to several consumer stages sharing a single {@link Pipeline}:
+ * <pre>
+ *                         +--&gt; square --+
+ *     producer --&gt; parse -+             +--&gt; emit
+ *                         +--&gt; parity --+
+ * </pre>
+ * {@code square} and {@code parity} run in parallel on the same events, and
+ * {@code emit} waits for both of them. No event is allocated or copied after
+ * the ring is built.
+ * <p>
+ * The producer only publishes every 100 milliseconds, so {@code parse},
+ * {@code square} and {@code parity} use a {@link BackoffWaitStrategy} and
+ * {@code emit} a {@link BlockingWaitStrategy} to avoid burning the CPU while idle.
+ */
+public class App {
+
+    public static void main(String[] args) throws InterruptedException {
+        Pipeline<ValueEvent> pipeline = new Pipeline<ValueEvent>(new EventFactory<ValueEvent>() {
+            @Override
+            public ValueEvent newInstance() {
+                return new ValueEvent();
+            }
+        }, 16);
+
+        Stage<ValueEvent> parse = pipeline.addStage("parse", new EventHandler<ValueEvent>() {
+            @Override
+            public void onEvent(ValueEvent event, long sequence, boolean endOfBatch) {
+                event.value = Math.abs(event.raw % 100);
+            }
+        }, new BackoffWaitStrategy());
+
+        Stage<ValueEvent> square = pipeline.addStage("square", new EventHandler<ValueEvent>() {
+            @Override
+            public void onEvent(ValueEvent event, long sequence, boolean endOfBatch) {
+                event.squared = event.value * event.value;
+            }
+        }, new BackoffWaitStrategy(), parse);
+
+        Stage<ValueEvent> parity = pipeline.addStage("parity", new EventHandler<ValueEvent>() {
+            @Override
+            public void onEvent(ValueEvent event, long sequence, boolean endOfBatch) {
+                event.even = event.value % 2 == 0;
+            }
+        }, new BackoffWaitStrategy(), parse);
+
+        pipeline.addStage("emit", new EventHandler<ValueEvent>() {
+            @Override
+            public void onEvent(ValueEvent event, long sequence, boolean endOfBatch) {
+                AsyncLog.println("Event " + sequence + ": value " + event.value
+                        + ", squared " + event.squared + ", " + (event.even ? "even" : "odd"));
+            }
+        }, new BlockingWaitStrategy(), square, parity);
+
+        pipeline.start();
+
+        // The producer: 50 values, one every 100 milliseconds
+        SplitRandom random = RandomStreams.shared().current();
+        for (int i = 0; i < 50; i++) {
+            long sequence = pipeline.next();
+            pipeline.get(sequence).raw = random.nextInt();
+            pipeline.publish(sequence);
+            Thread.sleep(100);
+        }
+
+        pipeline.shutdown();    // waits until "emit" has printed every event
+        AsyncLog.println("Pipeline finished.");
+    }
+}
@@ -0,0 +1,13 @@
+package examples.producer_consumer.pipeline;
+
+/**
+ * Creates the mutable events that fill the slots of a {@link Pipeline}.
+ * <p>
+ * It is only called when the pipeline is built; after that the same
+ * instances are reused for every value that goes through the ring.
+ *
+ * @param <E> the type of the event
+ */
+public interface EventFactory<E> {
+    E newInstance();
+}
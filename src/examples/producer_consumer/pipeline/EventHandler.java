@@ -0,0 +1,21 @@
+package examples.producer_consumer.pipeline;
+
+/**
+ * The work done by one {@link Stage} of a {@link Pipeline}.
+ * <p>
+ * A handler may read the fields written by the stages it depends on and write
+ * its own fields of the event. It must not keep a reference to the event after
+ * returning, because the slot is reused once every stage has processed it.
+ *
+ * @param <E> the type of the event
+ */
+public interface EventHandler<E> {
+
+    /**
+     * @param event      the event in the slot, updated in place
+     * @param sequence   the position of the event in the stream
+     * @param endOfBatch {@code true} for the last event that was available when the
+     *                   stage woke up, a good moment to flush any buffered output
+     */
+    void onEvent(E event, long sequence, boolean endOfBatch);
+}
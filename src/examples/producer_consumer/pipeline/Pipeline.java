@@ -0,0 +1,212 @@
+package examples.producer_consumer.pipeline;
+
+import examples.producer_consumer.lock_free.Sequence;
+import examples.producer_consumer.lock_free.Sequences;
+import examples.producer_consumer.lock_free.WaitStrategy;
+import examples.producer_consumer.lock_free.YieldingWaitStrategy;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A multi-stage producer-consumer pipeline built on a single ring of
+ * pre-allocated, mutable events, in the style of the LMAX Disruptor.
+ * <p>
+ * Chaining several consumers with a {@code BlockingQueue} between each pair
+ * means one lock handoff, and usually one allocation, per event and per stage.
+ * Here there is a single ring instead:
+ * <ul>
+ *     <li>The producer claims the next slot with {@link #next()}, writes the fields
+ *     of the event it finds there, and makes it visible with {@link #publish(long)}.</li>
+ *     <li>Each {@link Stage} processes the events in place and then advances its own
+ *     sequence. A stage only reads the sequences of the stages it was declared after.</li>
+ *     <li>The producer never overwrites a slot until every final stage has processed it.</li>
+ * </ul>
+ * The topology is declared with {@link #addStage(String, EventHandler, Stage[])}
+ * before calling {@link #start()}. Stages declared after the same stage run in
+ * parallel, and a stage declared after several stages joins them:
+ * <pre>
+ *     Stage&lt;E&gt; parse  = pipeline.addStage("parse", parser);
+ *     Stage&lt;E&gt; enrichA = pipeline.addStage("enrichA", enricherA, parse);
+ *     Stage&lt;E&gt; enrichB = pipeline.addStage("enrichB", enricherB, parse);
+ *     pipeline.addStage("emit", emitter, enrichA, enrichB);
+ * </pre>
+ * Every stage can be given its own {@link WaitStrategy}; by default it yields the CPU
+ * while waiting. Only one thread may publish events.
+ *
+ * @param <E> the type of the events in the ring
+ */
+public class Pipeline<E> {
+
+    private final Object[] slots;
+    private final int mask;
+
+    private final Sequence cursor = new Sequence(-1);   // last published event
+    private final List<Stage<E>> stages = new ArrayList<Stage<E>>();
+    private final List<Thread> threads = new ArrayList<Thread>();
+    private Sequence[] gatingSequences;                  // sequences of the final stages
+    private WaitStrategy[] firstStageStrategies;         // signalled by publish()
+
+    // Owned by the producer thread
+    private long nextSequence = 0;
+    private long cachedGatingSequence = -1;
+
+    private volatile boolean running;
+    private boolean started;
+
+    /**
+     * @param factory creates the events stored in the ring
+     * @param size    number of slots, must be a power of two
+     */
+    public Pipeline(EventFactory<E> factory, int size) {
+        if (size < 1 || Integer.bitCount(size) != 1)
+            throw new IllegalArgumentException("Size must be a power of two: " + size);
+        slots = new Object[size];
+        mask = size - 1;
+        for (int i = 0; i < size; i++)
+            slots[i] = factory.newInstance();
+    }
+
+    /**
+     * Declares a new stage that yields the CPU while it waits for events.
+     *
+     * @param name    name of the stage, also used for its thread
+     * @param handler the work done by the stage on each event
+     * @param after   the stages that must process an event before this one;
+     *                none means the stage reads directly from the producer
+     * @return the new stage, to be used as a dependency of later stages
+     */
+    @SafeVarargs
+    public final Stage<E> addStage(String name, EventHandler<? super E> handler, Stage<E>... after) {
+        return addStage(name, handler, new YieldingWaitStrategy(), after);
+    }
+
+    /**
+     * Declares a new stage.
+     *
+     * @param name         name of the stage, also used for its thread
+     * @param handler      the work done by the stage on each event
+     * @param waitStrategy how the stage waits for the events to become available
+     * @param after        the stages that must process an event before this one;
+     *                     none means the stage reads directly from the producer
+     * @return the new stage, to be used as a dependency of later stages
+     */
+    @SafeVarargs
+    public final synchronized Stage<E> addStage(String name, EventHandler<? super E> handler,
+                                                WaitStrategy waitStrategy, Stage<E>... after) {
+        if (started) throw new IllegalStateException("The pipeline is already started");
+        Sequence[] dependencies;
+        if (after.length == 0) {
+            dependencies = new Sequence[]{cursor};
+        } else {
+            dependencies = new Sequence[after.length];
+            for (int i = 0; i < after.length; i++) {
+                if (after[i].pipeline() != this)
+                    throw new IllegalArgumentException("Stage " + after[i].getName() + " belongs to another pipeline");
+                dependencies[i] = after[i].sequence();
+            }
+        }
+        Stage<E> stage = new Stage<E>(name, this, handler, waitStrategy, dependencies);
+        for (Stage<E> dependency : after)
+            dependency.addDependent(stage);
+        stages.add(stage);
+        return stage;
+    }
+
+    /**
+     * Starts one thread per stage. The topology cannot change afterwards.
+     */
+    public synchronized void start() {
+        if (started) throw new IllegalStateException("The pipeline is already started");
+        if (stages.isEmpty()) throw new IllegalStateException("The pipeline has no stages");
+        started = true;
+
+        List<Sequence> gating = new ArrayList<Sequence>();
+        List<WaitStrategy> firstStages = new ArrayList<WaitStrategy>();
+        for (Stage<E> stage : stages) {
+            if (!stage.hasDependents()) gating.add(stage.sequence());
+            if (stage.readsFromProducer()) firstStages.add(stage.waitStrategy());
+            stage.freezeTopology();
+        }
+        gatingSequences = gating.toArray(new Sequence[0]);
+        firstStageStrategies = firstStages.toArray(new WaitStrategy[0]);
+
+        running = true;
+        for (Stage<E> stage : stages) {
+            Thread thread = new Thread(stage, stage.getName());
+            threads.add(thread);
+            thread.start();
+        }
+    }
+
+    /**
+     * Claims the next slot of the ring, waiting until every final stage is done with
+     * the event that used it before. Must only be called by the producer thread.
+     *
+     * @return the sequence of the claimed slot, to be passed to {@link #get(long)}
+     * and {@link #publish(long)}
+     */
+    public long next() {
+        if (!started) throw new IllegalStateException("The pipeline is not started");
+        long sequence = nextSequence++;
+        long wrapPoint = sequence - slots.length;
+        while (cachedGatingSequence < wrapPoint) {
+            cachedGatingSequence = Sequences.minimum(gatingSequences);
+            if (cachedGatingSequence < wrapPoint) Thread.yield();
+        }
+        return sequence;
+    }
+
+    /**
+     * @param sequence a claimed or published sequence
+     * @return the event stored in the slot of {@code sequence}
+     */
+    @SuppressWarnings("unchecked")
+    public E get(long sequence) {
+        return (E) slots[(int) (sequence & mask)];
+    }
+
+    /**
+     * Makes the event at {@code sequence} visible to the first stages.
+     *
+     * @param sequence the sequence returned by the last call to {@link #next()}
+     */
+    public void publish(long sequence) {
+        cursor.set(sequence);
+        for (WaitStrategy strategy : firstStageStrategies)
+            strategy.signalAllWhenBlocking();
+    }
+
+    Sequence cursor() {
+        return cursor;
+    }
+
+    boolean isRunning() {
+        return running;
+    }
+
+    /**
+     * Waits until every published event has gone through all the stages, then stops
+     * the stage threads.
+     *
+     * @throws InterruptedException if interrupted while waiting for the threads to finish
+     */
+    public void shutdown() throws InterruptedException {
+        while (Sequences.minimum(gatingSequences) < cursor.get())
+            Thread.yield();
+        halt();
+    }
+
+    /**
+     * Stops the stage threads without waiting for the pending events.
+     *
+     * @throws InterruptedException if interrupted while waiting for the threads to finish
+     */
+    public void halt() throws InterruptedException {
+        running = false;
+        for (Thread thread : threads)
+            thread.interrupt();     // wakes up the stages sleeping in their wait strategy
+        for (Thread thread : threads)
+            thread.join();
+    }
+}
@@ -0,0 +1,113 @@
+package examples.producer_consumer.pipeline;
+
+import examples.producer_consumer.lock_free.Sequence;
+import examples.producer_consumer.lock_free.WaitStrategy;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * One consumer of a {@link Pipeline}, running on its own thread.
+ * <p>
+ * A stage keeps the sequence of the last event it has processed. It may only
+ * process an event once every stage it depends on has processed it (or, for the
+ * first stages, once the producer has published it). Because each stage only waits
+ * for the sequences of the stages before it, no queue sits between the stages:
+ * every stage works on the very same event object in the ring.
+ * <p>
+ * Each stage has its own {@link WaitStrategy}, so a latency-critical stage can
+ * spin while a batch stage further down blocks.
+ *
+ * @param <E> the type of the event
+ */
+public final class Stage<E> implements Runnable {
+
+    private final String name;
+    private final Pipeline<E> pipeline;
+    private final EventHandler<? super E> handler;
+    private final Sequence[] dependencies;
+    private final WaitStrategy waitStrategy;
+    private final Sequence sequence = new Sequence(-1);
+    private final List<WaitStrategy> dependentStrategies = new ArrayList<WaitStrategy>();
+    private WaitStrategy[] strategiesToSignal = new WaitStrategy[0];
+
+    Stage(String name, Pipeline<E> pipeline, EventHandler<? super E> handler,
+          WaitStrategy waitStrategy, Sequence[] dependencies) {
+        this.name = name;
+        this.pipeline = pipeline;
+        this.handler = handler;
+        this.waitStrategy = waitStrategy;
+        this.dependencies = dependencies;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * @return the sequence of the last event processed by this stage
+     */
+    public long getSequence() {
+        return sequence.get();
+    }
+
+    Sequence sequence() {
+        return sequence;
+    }
+
+    Pipeline<E> pipeline() {
+        return pipeline;
+    }
+
+    WaitStrategy waitStrategy() {
+        return waitStrategy;
+    }
+
+    void addDependent(Stage<E> dependent) {
+        dependentStrategies.add(dependent.waitStrategy());
+    }
+
+    boolean readsFromProducer() {
+        return dependencies.length == 1 && dependencies[0] == pipeline.cursor();
+    }
+
+    boolean hasDependents() {
+        return !dependentStrategies.isEmpty();
+    }
+
+    // Called by Pipeline.start(), before the thread of this stage starts
+    void freezeTopology() {
+        strategiesToSignal = dependentStrategies.toArray(new WaitStrategy[0]);
+    }
+
+    @Override
+    public void run() {
+        long next = sequence.get() + 1;
+        while (pipeline.isRunning()) {
+            long available;
+            try {
+                available = waitStrategy.waitFor(next, dependencies);
+            } catch (InterruptedException e) {
+                continue;   // halted while waiting, the loop condition ends the thread
+            }
+
+            for (long current = next; current <= available; current++) {
+                try {
+                    handler.onEvent(pipeline.get(current), current, current == available);
+                } catch (RuntimeException e) {
+                    // A failing event must not stall the stages behind this one.
+                    e.printStackTrace();
+                }
+            }
+            sequence.set(available);    // one ordered store for the whole batch
+            for (WaitStrategy strategy : strategiesToSignal)
+                strategy.signalAllWhenBlocking();
+            next = available + 1;
+        }
+    }
+
+    @Override
+    public String toString() {
+        return name + "@" + sequence.get();
+    }
+}
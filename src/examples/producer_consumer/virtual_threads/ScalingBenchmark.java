@@ -0,0 +1,211 @@
+package examples.producer_consumer.virtual_threads;
+
+import examples.producer_consumer.pattern.IntBlockingQueue;
+
+import java.io.BufferedReader;
+import java.io.FileReader;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+
+/**
+ * Compares {@link ThreadMode#PLATFORM platform} and {@link ThreadMode#VIRTUAL virtual}
+ * threads with 1,000, 10,000 and 100,000 consumers, each one blocked on its own
+ * {@link IntBlockingQueue} (other counts can be passed as arguments).
+ * <p>
+ * For every mode and number of consumers it reports:
+ * <ul>
+ *     <li><b>Start:</b> time to start all the consumers.</li>
+ *     <li><b>Memory:</b> growth of the used heap and of the resident memory of the process
+ *     (Linux only) once every consumer is waiting. Platform thread stacks live outside the
+ *     heap, virtual thread stacks live inside it.</li>
+ *     <li><b>Switch:</b> the cost of one block-and-wakeup, measured with two threads of the
+ *     same mode passing a token back and forth while all the consumers are idle.</li>
+ *     <li><b>Latency:</b> time from the producer putting a message into a random consumer's
+ *     queue until that consumer has taken it, as percentiles.</li>
+ * </ul>
+ * Virtual threads need Java 21 or later; on older JVMs that mode is skipped. Creating
+ * 100,000 platform threads may also fail, depending on the limits of the operating system.
+ */
+public class ScalingBenchmark {
+
+    private static final int MESSAGES = 20_000;
+    private static final int ROUND_TRIPS = 20_000;
+    private static final int STOP = -1;
+
+    public static void main(String[] args) throws InterruptedException {
+        int[] consumerCounts = {1_000, 10_000, 100_000};
+        if (args.length > 0) {
+            consumerCounts = new int[args.length];
+            for (int i = 0; i < args.length; i++)
+                consumerCounts[i] = Integer.parseInt(args[i]);
+        }
+
+        for (int consumers : consumerCounts) {
+            for (ThreadMode mode : ThreadMode.values()) {
+                if (!mode.isSupported()) {
+                    System.out.printf("%-8s %,8d consumers   skipped: not supported on Java %s%n",
+                            mode, consumers, System.getProperty("java.version"));
+                    continue;
+                }
+                run(mode, consumers);
+            }
+        }
+    }
+
+    private static void run(ThreadMode mode, int consumerCount) throws InterruptedException {
+        final IntBlockingQueue[] queues = new IntBlockingQueue[consumerCount];
+        for (int i = 0; i < consumerCount; i++)
+            queues[i] = new IntBlockingQueue(16);
+        final long[] publishTimes = new long[MESSAGES];
+        final long[] latencies = new long[MESSAGES];
+        final CountDownLatch started = new CountDownLatch(consumerCount);
+        final CountDownLatch received = new CountDownLatch(MESSAGES);
+
+        long heapBefore = usedHeap();
+        long rssBefore = residentMemory();
+
+        // Start every consumer
+        Thread[] consumers = new Thread[consumerCount];
+        long start = System.nanoTime();
+        int startedCount = 0;
+        try {
+            for (; startedCount < consumerCount; startedCount++) {
+                final IntBlockingQueue queue = queues[startedCount];
+                consumers[startedCount] = mode.newThread(new Runnable() {
+                    @Override
+                    public void run() {
+                        started.countDown();
+                        try {
+                            while (true) {
+                                int message = queue.take();
+                                if (message == STOP) return;
+                                latencies[message] = System.nanoTime() - publishTimes[message];
+                                received.countDown();
+                            }
+                        } catch (InterruptedException ignored) {
+                        }
+                    }
+                }, "consumer-" + startedCount);
+                consumers[startedCount].start();
+            }
+        } catch (OutOfMemoryError e) {
+            // "unable to create native thread": the operating system refused another thread
+            System.out.printf("%-8s %,8d consumers   failed after %,d threads: %s%n",
+                    mode, consumerCount, startedCount, e.getMessage());
+            stop(queues, consumers, startedCount);
+            return;
+        }
+        started.await();
+        long startNanos = System.nanoTime() - start;
+
+        Thread.sleep(500);  // lets every consumer reach take() before measuring
+        long heapGrowth = usedHeap() - heapBefore;
+        long rssAfter = residentMemory();
+
+        long switchNanos = pingPong(mode);
+
+        // Every message goes to a random, usually idle, consumer
+        Random random = new Random(42);
+        long sendStart = System.nanoTime();
+        for (int i = 0; i < MESSAGES; i++) {
+            publishTimes[i] = System.nanoTime();
+            queues[random.nextInt(consumerCount)].put(i);
+        }
+        received.await();
+        long sendNanos = System.nanoTime() - sendStart;
+
+        stop(queues, consumers, consumerCount);
+
+        Arrays.sort(latencies);
+        System.out.printf("%-8s %,8d consumers   start %,7d ms   heap %,8d KB   RSS %9s KB   switch %,7d ns"
+                        + "   latency p50 %,9d ns   p99 %,11d ns   %,10.0f messages/s%n",
+                mode, consumerCount,
+                startNanos / 1_000_000,
+                heapGrowth / 1024,
+                rssBefore < 0 || rssAfter < 0 ? "n/a" : String.format("%,d", (rssAfter - rssBefore) / 1024),
+                switchNanos,
+                percentile(latencies, 50),
+                percentile(latencies, 99),
+                MESSAGES / (sendNanos / 1e9));
+    }
+
+    /**
+     * Two threads pass a token back and forth; every pass blocks one thread and wakes up
+     * the other.
+     *
+     * @return the average cost of one pass
+     */
+    private static long pingPong(ThreadMode mode) throws InterruptedException {
+        final IntBlockingQueue ping = new IntBlockingQueue(1);
+        final IntBlockingQueue pong = new IntBlockingQueue(1);
+        Thread partner = mode.newThread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    for (int i = 0; i < ROUND_TRIPS; i++)
+                        pong.put(ping.take());
+                } catch (InterruptedException ignored) {
+                }
+            }
+        }, "pong");
+
+        final long[] elapsed = new long[1];
+        Thread initiator = mode.newThread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    long start = System.nanoTime();
+                    for (int i = 0; i < ROUND_TRIPS; i++) {
+                        ping.put(i);
+                        pong.take();
+                    }
+                    elapsed[0] = System.nanoTime() - start;
+                } catch (InterruptedException ignored) {
+                }
+            }
+        }, "ping");
+
+        partner.start();
+        initiator.start();
+        initiator.join();
+        partner.join();
+        return elapsed[0] / (2L * ROUND_TRIPS);
+    }
+
+    private static void stop(IntBlockingQueue[] queues, Thread[] consumers, int count) throws InterruptedException {
+        for (int i = 0; i < count; i++)
+            queues[i].put(STOP);
+        for (int i = 0; i < count; i++)
+            consumers[i].join();
+    }
+
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++)
+            System.gc();
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    /**
+     * @return the resident memory of this process in bytes, read from {@code /proc},
+     * or -1 when it is not available
+     */
+    private static long residentMemory() {
+        try (BufferedReader reader = new BufferedReader(new FileReader("/proc/self/status"))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.startsWith("VmRSS:"))
+                    return Long.parseLong(line.replaceAll("[^0-9]", "")) * 1024;
+            }
+        } catch (IOException | NumberFormatException ignored) {
+        }
+        return -1;
+    }
+
+    private static long percentile(long[] sortedValues, double percentile) {
+        int index = (int) Math.ceil(percentile / 100 * sortedValues.length) - 1;
+        return sortedValues[Math.max(0, index)];
+    }
+}
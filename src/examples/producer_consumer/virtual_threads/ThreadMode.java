@@ -0,0 +1,102 @@
+package examples.producer_consumer.virtual_threads;
+
+import java.lang.reflect.Method;
+
+/**
+ * The kind of thread used to run the producers and consumers of the examples.
+ * <p>
+ * A <em>platform</em> thread is a thin wrapper around an operating system thread: it
+ * reserves a native stack (usually 1 MB of address space) and every block or wakeup is
+ * a context switch done by the kernel. A <em>virtual</em> thread (Java 21 and later) is
+ * scheduled by the JVM on a small pool of platform "carrier" threads; when it blocks on a
+ * {@code BlockingQueue} or a {@code ReentrantLock}, its stack is copied to the heap and
+ * the carrier runs another virtual thread. Tens of thousands of mostly idle consumers
+ * are then cheap.
+ * <p>
+ * A virtual thread that blocks inside a {@code synchronized} block, or in {@code wait()},
+ * <em>pins</em> its carrier (up to Java 23), so the low-level {@code wait()}/{@code notify()}
+ * examples do not benefit from it as much as the {@code java.util.concurrent} ones.
+ * <p>
+ * The examples are compiled for older Java versions, so virtual threads are created
+ * through reflection. {@link #VIRTUAL} fails with an {@code UnsupportedOperationException}
+ * when the running JVM does not have them.
+ */
+public enum ThreadMode {
+
+    PLATFORM {
+        @Override
+        public Thread newThread(Runnable task, String name) {
+            return new Thread(task, name);
+        }
+
+        @Override
+        public boolean isSupported() {
+            return true;
+        }
+    },
+
+    VIRTUAL {
+        @Override
+        public Thread newThread(Runnable task, String name) {
+            if (!isSupported())
+                throw new UnsupportedOperationException("Virtual threads need Java 21 or later, running on "
+                        + System.getProperty("java.version"));
+            try {
+                Object builder = OF_VIRTUAL.invoke(null);
+                builder = BUILDER_NAME.invoke(builder, name);
+                return (Thread) BUILDER_UNSTARTED.invoke(builder, task);
+            } catch (ReflectiveOperationException e) {
+                throw new IllegalStateException("Cannot create a virtual thread", e);
+            }
+        }
+
+        @Override
+        public boolean isSupported() {
+            return OF_VIRTUAL != null;
+        }
+    };
+
+    /** System property used by the examples to choose the mode, for example {@code -Dexamples.threads=VIRTUAL}. */
+    public static final String PROPERTY = "examples.threads";
+
+    // Thread.ofVirtual(), Thread.Builder.name(String) and Thread.Builder.unstarted(Runnable)
+    private static final Method OF_VIRTUAL;
+    private static final Method BUILDER_NAME;
+    private static final Method BUILDER_UNSTARTED;
+
+    static {
+        Method ofVirtual = null;
+        Method name = null;
+        Method unstarted = null;
+        try {
+            ofVirtual = Thread.class.getMethod("ofVirtual");
+            Class<?> builderClass = Class.forName("java.lang.Thread$Builder");
+            name = builderClass.getMethod("name", String.class);
+            unstarted = builderClass.getMethod("unstarted", Runnable.class);
+        } catch (ReflectiveOperationException e) {
+            ofVirtual = null;   // running on a JVM older than Java 21
+        }
+        OF_VIRTUAL = ofVirtual;
+        BUILDER_NAME = name;
+        BUILDER_UNSTARTED = unstarted;
+    }
+
+    /**
+     * @param task the code run by the thread
+     * @param name the name of the thread
+     * @return a new, not yet started, thread of this kind
+     */
+    public abstract Thread newThread(Runnable task, String name);
+
+    /**
+     * @return {@code true} if the running JVM can create threads of this kind
+     */
+    public abstract boolean isSupported();
+
+    /**
+     * @return the mode named by the {@value #PROPERTY} system property, {@link #PLATFORM} by default
+     */
+    public static ThreadMode fromSystemProperty() {
+        return valueOf(System.getProperty(PROPERTY, PLATFORM.name()));
+    }
+}
@@ -3,17 +3,22 @@ package examples.producer_consumer.wait_and_notify;
 /**
  * Example class of the produce and consumer pattern but using
  * low-level thread synchronization, in case is needed.
+ * <p>
+ * Run it with {@code double_buffer} as argument to swap whole buffers of
+ * records between the two threads instead of waiting for the return key.
  */
 public class App {
 
     public static void main(String[] args) throws InterruptedException{
         final Processor processor = new Processor();
+        final boolean doubleBuffered = args.length > 0 && args[0].equals("double_buffer");
 
         Thread t1 = new Thread(new Runnable() {
             @Override
             public void run() {
                 try {
-                    processor.produce();
+                    if (doubleBuffered) processor.produceDoubleBuffered();
+                    else processor.produce();
                 } catch (InterruptedException e) {
                     e.printStackTrace();
                 }
@@ -24,7 +29,8 @@ public class App {
             @Override
             public void run() {
                 try {
-                    processor.consume();
+                    if (doubleBuffered) processor.consumeDoubleBuffered();
+                    else processor.consume();
                 } catch (InterruptedException e) {
                     e.printStackTrace();
                 }
@@ -0,0 +1,68 @@
+package examples.producer_consumer.wait_and_notify;
+
+/**
+ * A rendezvous point where two threads swap buffers, built with
+ * {@code wait()} and {@code notifyAll()}.
+ * <p>
+ * This is the same idea as {@code java.util.concurrent.Exchanger}, used for
+ * <em>double buffering</em>: the producer fills buffer A while the consumer
+ * processes buffer B, then both call {@link #exchange(Object)} and leave with
+ * the other buffer. Only the references change hands, the data is never copied,
+ * and the two threads synchronize once per buffer instead of once per element.
+ * <p>
+ * The first thread to arrive leaves its buffer and {@code wait()}s. The second one
+ * takes that buffer, leaves its own, and wakes the first one up with {@code notifyAll()}.
+ * A {@code generation} counter tells the waiting thread that its exchange has really
+ * happened, so a spurious wakeup is not mistaken for one.
+ *
+ * @param <T> the type of the buffers
+ */
+public class DoubleBuffer<T> {
+
+    private T offered;          // buffer left by the thread that arrived first
+    private T reply;            // buffer left for it by the second thread
+    private boolean waiting;    // true while a thread is waiting for a partner
+    private long generation;    // incremented on every completed exchange
+
+    /**
+     * Gives {@code buffer} to the other thread and returns the buffer the other thread gives.
+     *
+     * @param buffer the buffer handed over, ready to be used by the other thread
+     * @return the buffer handed over by the other thread
+     * @throws InterruptedException if the thread is interrupted while waiting for the
+     *                              other thread; the buffer is then not handed over
+     */
+    public synchronized T exchange(T buffer) throws InterruptedException {
+        if (waiting) {
+            // Second to arrive: complete the exchange and wake the other thread up.
+            T received = offered;
+            offered = null;
+            reply = buffer;
+            waiting = false;
+            generation++;
+            notifyAll();
+            return received;
+        }
+
+        // First to arrive: leave the buffer and wait for the partner.
+        offered = buffer;
+        waiting = true;
+        long arrivalGeneration = generation;
+        try {
+            while (arrivalGeneration == generation)
+                wait();
+        } catch (InterruptedException e) {
+            if (arrivalGeneration == generation) {
+                // Nobody came, take the buffer back.
+                offered = null;
+                waiting = false;
+                throw e;
+            }
+            // The exchange already happened, keep the interrupt for later.
+            Thread.currentThread().interrupt();
+        }
+        T received = reply;
+        reply = null;
+        return received;
+    }
+}
@@ -0,0 +1,161 @@
+package examples.producer_consumer.wait_and_notify;
+
+/**
+ * Measures the sustained throughput, in MB/s, of moving records from a producer
+ * thread to a consumer thread:
+ * <ul>
+ *     <li><b>Element at a time:</b> every record is handed over through a single slot
+ *     guarded by {@code wait()}/{@code notify()}, the way {@link Processor#produce()}
+ *     and {@link Processor#consume()} coordinate.</li>
+ *     <li><b>Double buffered:</b> the producer fills a whole {@link RecordBatch} and
+ *     swaps it with the consumer's batch through a {@link DoubleBuffer}, for several
+ *     batch sizes.</li>
+ * </ul>
+ * Both modes write and read every byte of every record, so the difference comes
+ * from the number of handoffs.
+ */
+public class DoubleBufferBenchmark {
+
+    private static final long TOTAL_BYTES = 1L << 30;   // 1 GiB per run
+    private static final long TOTAL_RECORDS = TOTAL_BYTES / RecordBatch.RECORD_SIZE;
+    private static final int[] RECORDS_PER_BATCH = {64, 1024, 16384};
+
+    /**
+     * A one-record mailbox: the producer waits until the slot is empty, the consumer
+     * waits until it is full.
+     */
+    private static class SingleSlot {
+        private byte[] record;
+
+        synchronized void put(byte[] newRecord) throws InterruptedException {
+            while (record != null)
+                wait();
+            record = newRecord;
+            notify();
+        }
+
+        synchronized byte[] take() throws InterruptedException {
+            while (record == null)
+                wait();
+            byte[] taken = record;
+            record = null;
+            notify();
+            return taken;
+        }
+    }
+
+    public static void main(String[] args) throws InterruptedException {
+        for (int round = 0; round < 2; round++) {
+            boolean warmUp = round == 0;
+            report("element at a time", 1, elementAtATime(), warmUp);
+            for (int recordsPerBatch : RECORDS_PER_BATCH)
+                report("double buffered", recordsPerBatch, doubleBuffered(recordsPerBatch), warmUp);
+        }
+    }
+
+    private static long elementAtATime() throws InterruptedException {
+        final SingleSlot slot = new SingleSlot();
+
+        Thread producer = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    for (long i = 0; i < TOTAL_RECORDS; i++) {
+                        // a new record each time, the consumer owns the previous one
+                        byte[] record = new byte[RecordBatch.RECORD_SIZE];
+                        fill(record, 0, record.length, i);
+                        slot.put(record);
+                    }
+                } catch (InterruptedException ignored) {
+                }
+            }
+        });
+
+        Thread consumer = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    long checksum = 0;
+                    for (long i = 0; i < TOTAL_RECORDS; i++) {
+                        byte[] record = slot.take();
+                        checksum += sum(record, 0, record.length);
+                    }
+                    sink = checksum;
+                } catch (InterruptedException ignored) {
+                }
+            }
+        });
+
+        return time(producer, consumer);
+    }
+
+    private static long doubleBuffered(final int recordsPerBatch) throws InterruptedException {
+        final DoubleBuffer<RecordBatch> doubleBuffer = new DoubleBuffer<RecordBatch>();
+        final long batches = TOTAL_RECORDS / recordsPerBatch;
+
+        Thread producer = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    RecordBatch batch = new RecordBatch(recordsPerBatch);
+                    for (long i = 0; i < batches; i++) {
+                        fill(batch.data, 0, batch.data.length, i);
+                        batch.records = recordsPerBatch;
+                        batch = doubleBuffer.exchange(batch);
+                    }
+                } catch (InterruptedException ignored) {
+                }
+            }
+        });
+
+        Thread consumer = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    RecordBatch batch = new RecordBatch(recordsPerBatch);
+                    long checksum = 0;
+                    for (long i = 0; i < batches; i++) {
+                        batch = doubleBuffer.exchange(batch);
+                        checksum += sum(batch.data, 0, batch.records * RecordBatch.RECORD_SIZE);
+                        batch.records = 0;
+                    }
+                    sink = checksum;
+                } catch (InterruptedException ignored) {
+                }
+            }
+        });
+
+        return time(producer, consumer);
+    }
+
+    private static void fill(byte[] data, int from, int to, long seed) {
+        byte value = (byte) seed;
+        for (int i = from; i < to; i++)
+            data[i] = value++;
+    }
+
+    private static long sum(byte[] data, int from, int to) {
+        long sum = 0;
+        for (int i = from; i < to; i++)
+            sum += data[i];
+        return sum;
+    }
+
+    private static long time(Thread producer, Thread consumer) throws InterruptedException {
+        long start = System.nanoTime();
+        producer.start();
+        consumer.start();
+        producer.join();
+        consumer.join();
+        return System.nanoTime() - start;
+    }
+
+    private static void report(String mode, int recordsPerBatch, long elapsedNanos, boolean warmUp) {
+        if (warmUp) return;
+        System.out.printf("%-18s %6d records/handoff   %,10.1f MB/s%n",
+                mode, recordsPerBatch, TOTAL_BYTES / 1e6 / (elapsedNanos / 1e9));
+    }
+
+    // keeps the JIT compiler from removing the consumer loop
+    private static volatile long sink;
+}
@@ -1,14 +1,28 @@
 package examples.producer_consumer.wait_and_notify;
 
+import examples.logging.AsyncLog;
+import examples.random.RandomStreams;
+import examples.random.SplitRandom;
+
 import java.util.Scanner;
 
 /**
  * If low-level synchronization is needed, the {@code wait} and {@code notify}
  * keywords can be used to coordinate thread execution.
  * {@code Processor} class implement both keywords to demonstrate their usage.
+ * <p>
+ * {@link #produceDoubleBuffered()} and {@link #consumeDoubleBuffered()} use the same
+ * two-party coordination to move whole buffers of records: the producer fills one
+ * {@link RecordBatch} while the consumer reads the other, and a {@link DoubleBuffer}
+ * swaps them.
  */
 public class Processor {
 
+    private static final int BATCHES = 10;
+    private static final int RECORDS_PER_BATCH = 1024;
+
+    private final DoubleBuffer<RecordBatch> doubleBuffer = new DoubleBuffer<RecordBatch>();
+
     /**
      * Exemplifies the use of the {@code wait()} method.
      * <p>
@@ -27,13 +41,12 @@ public class Processor {
     public void produce() throws InterruptedException {
         // This code needs to execute first.
         synchronized (this) {
-            System.out.println("Producer thread running...");
+            AsyncLog.println("Producer thread running...");
             wait();
-            System.out.println("Resumed");
+            AsyncLog.println("Resumed");
         }
     }
 
-
     /**
      * Demonstrates the use of the {@code notify()} method.
      * <p>
@@ -51,12 +64,52 @@ public class Processor {
         Scanner scanner = new Scanner(System.in);
         Thread.sleep(1000); // ensures that the other thread had time to start first
         synchronized (this) {
-            System.out.println("Waiting for return key");
+            AsyncLog.println("Waiting for return key");
+            AsyncLog.flush();   // makes sure the prompt is on the console before waiting for input
             scanner.nextLine();
-            System.out.println("Return key pressed.");
+            AsyncLog.println("Return key pressed.");
             notify();
             Thread.sleep(5000); // waits 5 second before releasing "this" object lock.
-            System.out.println("Consumption done.");
+            AsyncLog.println("Consumption done.");
+        }
+    }
+
+    /**
+     * Fills {@link #BATCHES} batches of random records, swapping each full batch
+     * for an empty one through the {@link DoubleBuffer}.
+     * <p>
+     * Only two {@link RecordBatch} instances exist: the one being filled here and
+     * the one being read by {@link #consumeDoubleBuffered()}.
+     */
+    public void produceDoubleBuffered() throws InterruptedException {
+        SplitRandom random = RandomStreams.shared().current();
+        RecordBatch batch = new RecordBatch(RECORDS_PER_BATCH);
+        for (int i = 0; i < BATCHES; i++) {
+            random.nextBytes(batch.data);
+            batch.records = batch.capacity();
+            AsyncLog.println("Producer filled batch " + i + " with " + batch.records + " records");
+            batch = doubleBuffer.exchange(batch);   // hands the full batch, gets back an empty one
+        }
+        batch.records = 0;
+        doubleBuffer.exchange(batch);               // an empty batch tells the consumer to stop
+    }
+
+    /**
+     * Reads the batches produced by {@link #produceDoubleBuffered()} until it receives an
+     * empty batch.
+     */
+    public void consumeDoubleBuffered() throws InterruptedException {
+        RecordBatch batch = new RecordBatch(RECORDS_PER_BATCH);  // the second buffer, empty
+        while (true) {
+            batch = doubleBuffer.exchange(batch);   // hands the read batch, gets back a full one
+            if (batch.records == 0) break;
+
+            long checksum = 0;
+            for (int i = 0; i < batch.records * RecordBatch.RECORD_SIZE; i++)
+                checksum += batch.data[i];
+            AsyncLog.println("Consumer read " + batch.records + " records, checksum: " + checksum);
+            batch.records = 0;
         }
+        AsyncLog.println("Consumption done.");
     }
 }
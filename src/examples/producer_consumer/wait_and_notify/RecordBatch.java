@@ -0,0 +1,21 @@
+package examples.producer_consumer.wait_and_notify;
+
+/**
+ * A reusable buffer of fixed-size records, handed between the producer and
+ * the consumer through a {@link DoubleBuffer}.
+ */
+class RecordBatch {
+
+    static final int RECORD_SIZE = 128;     // bytes per record
+
+    final byte[] data;
+    int records;                            // number of valid records in data
+
+    RecordBatch(int capacityInRecords) {
+        data = new byte[capacityInRecords * RECORD_SIZE];
+    }
+
+    int capacity() {
+        return data.length / RECORD_SIZE;
+    }
+}
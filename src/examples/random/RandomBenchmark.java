@@ -0,0 +1,127 @@
+package examples.random;
+
+import examples.metrics.ParallelTimer;
+
+import java.util.Random;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Draws {@value #NUMBERS} numbers between 0 and 99, as the stages of
+ * {@code multiple_locks.Worker} do, with 1 to 8 threads, each thread drawing its share:
+ * <ul>
+ *     <li>from one {@code java.util.Random} shared by every thread, as the Workers did,</li>
+ *     <li>from the JDK's {@code ThreadLocalRandom}, for reference,</li>
+ *     <li>from each thread's own stream, {@link RandomStreams#current()},</li>
+ *     <li>the same, filling an {@code int[]} of {@value #BLOCK} numbers at a time with
+ *     {@link SplitRandom#fill(int[], int, int, int)}.</li>
+ * </ul>
+ * It prints millions of numbers per second, after checking that streams with the same seed
+ * give the same numbers and that a fill gives the same numbers as single calls.
+ */
+public class RandomBenchmark {
+
+    private static final int NUMBERS = 32_000_000;
+    private static final int BLOCK = 1024;
+    private static final int[] THREADS = {1, 2, 4, 8};
+
+    private static volatile long sink;
+
+    /** One way of drawing numbers; returns their sum. */
+    private interface Source {
+        long draw(int count);
+    }
+
+    public static void main(String[] args) throws InterruptedException {
+        checkReplay();
+
+        final Random shared = new Random();
+        final RandomStreams streams = RandomStreams.shared();
+        String[] names = {"shared Random", "ThreadLocalRandom", "RandomStreams", "RandomStreams fill"};
+        Source[] sources = {
+                new Source() {
+                    @Override
+                    public long draw(int count) {
+                        long sum = 0;
+                        for (int i = 0; i < count; i++)
+                            sum += shared.nextInt(100);
+                        return sum;
+                    }
+                },
+                new Source() {
+                    @Override
+                    public long draw(int count) {
+                        ThreadLocalRandom random = ThreadLocalRandom.current();
+                        long sum = 0;
+                        for (int i = 0; i < count; i++)
+                            sum += random.nextInt(100);
+                        return sum;
+                    }
+                },
+                new Source() {
+                    @Override
+                    public long draw(int count) {
+                        SplitRandom random = streams.current();
+                        long sum = 0;
+                        for (int i = 0; i < count; i++)
+                            sum += random.nextInt(100);
+                        return sum;
+                    }
+                },
+                new Source() {
+                    @Override
+                    public long draw(int count) {
+                        SplitRandom random = streams.current();
+                        int[] block = new int[BLOCK];
+                        long sum = 0;
+                        for (int done = 0; done < count; done += BLOCK) {
+                            int length = Math.min(BLOCK, count - done);
+                            random.fill(block, 0, length, 100);
+                            for (int i = 0; i < length; i++)
+                                sum += block[i];
+                        }
+                        return sum;
+                    }
+                },
+        };
+
+        // Warm-up, so that every source is compiled before it is measured
+        for (Source source : sources)
+            run(source, 2, NUMBERS / 8);
+
+        System.out.printf("Millions of numbers per second, %,d numbers, %d cores, seed %d%n",
+                NUMBERS, Runtime.getRuntime().availableProcessors(), streams.getSeed());
+        System.out.printf("%-20s", "threads");
+        for (int threads : THREADS)
+            System.out.printf("%9d", threads);
+        System.out.println();
+        for (int s = 0; s < sources.length; s++) {
+            System.out.printf("%-20s", names[s]);
+            for (int threads : THREADS)
+                System.out.printf("%9.1f", NUMBERS / (run(sources[s], threads, NUMBERS) / 1e3));
+            System.out.println();
+        }
+    }
+
+    private static void checkReplay() {
+        SplitRandom first = new RandomStreams(42).stream(7);
+        SplitRandom second = new RandomStreams(42).stream(7);
+        int[] filled = new int[BLOCK];
+        second.fill(filled, 0, BLOCK, 100);
+        for (int i = 0; i < BLOCK; i++) {
+            int value = first.nextInt(100);
+            if (value != filled[i] || value < 0 || value >= 100)
+                throw new IllegalStateException("Stream 7 of seed 42 differs at number " + i);
+        }
+        if (new RandomStreams(42).stream(8).nextLong() == new RandomStreams(42).stream(7).nextLong())
+            throw new IllegalStateException("Streams 7 and 8 start with the same number");
+    }
+
+    private static long run(final Source source, int threads, int numbers) throws InterruptedException {
+        return ParallelTimer.time(threads, numbers, new ParallelTimer.Share() {
+            @Override
+            public void run(int thread, int first, int count) {
+                sink += source.draw(count);
+            }
+        });
+    }
+}
@@ -0,0 +1,85 @@
+package examples.random;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Hands out independent {@link SplitRandom} generators, all derived from one seed, so
+ * that the threads of a run never share a generator and the run can be replayed.
+ * <p>
+ * Each generator is identified by a number, its <em>stream</em>: the same seed and the
+ * same stream always give the same numbers, whichever thread asks and whenever it asks.
+ * {@link #current()} gives every thread its own stream, found from the thread's name and
+ * how many threads had that name before it, so the threads of a program that names and
+ * starts them in the same order get the same numbers from one run to the next.
+ * <p>
+ * The seed of {@link #shared()} comes from the {@value #PROPERTY} system property, for
+ * example {@code -Dexamples.seed=42}. Without it a new seed is picked for each run;
+ * {@link #getSeed()} tells which one, to replay the run later.
+ */
+public class RandomStreams {
+
+    /** System property that sets the seed of {@link #shared()}. */
+    public static final String PROPERTY = "examples.seed";
+
+    private static final RandomStreams SHARED = fromSystemProperty();
+
+    private final long seed;
+    private final ConcurrentMap<String, AtomicInteger> threadsByName = new ConcurrentHashMap<String, AtomicInteger>();
+    private final ThreadLocal<SplitRandom> local = new ThreadLocal<SplitRandom>() {
+        @Override
+        protected SplitRandom initialValue() {
+            String name = Thread.currentThread().getName();
+            AtomicInteger count = threadsByName.get(name);
+            if (count == null) {
+                AtomicInteger created = new AtomicInteger();
+                count = threadsByName.putIfAbsent(name, created);
+                if (count == null) count = created;
+            }
+            int occurrence = count.getAndIncrement();
+            return stream(((long) name.hashCode() << 32) ^ occurrence);
+        }
+    };
+
+    public RandomStreams(long seed) {
+        this.seed = seed;
+    }
+
+    /**
+     * @return streams seeded by the {@value #PROPERTY} system property, or by a new seed
+     * if it is not set
+     */
+    public static RandomStreams fromSystemProperty() {
+        String value = System.getProperty(PROPERTY);
+        if (value != null) return new RandomStreams(Long.parseLong(value.trim()));
+        return new RandomStreams(SplitRandom.mix64(System.nanoTime() ^ System.currentTimeMillis()));
+    }
+
+    /**
+     * @return the streams used by the examples, created once per run
+     */
+    public static RandomStreams shared() {
+        return SHARED;
+    }
+
+    public long getSeed() {
+        return seed;
+    }
+
+    /**
+     * @return a new generator for stream {@code id}; generators for the same id start
+     * with the same numbers
+     */
+    public SplitRandom stream(long id) {
+        return new SplitRandom(SplitRandom.mix64(seed + SplitRandom.mix64(id)));
+    }
+
+    /**
+     * @return the generator of the calling thread, created on its first call; only that
+     * thread may use it
+     */
+    public SplitRandom current() {
+        return local.get();
+    }
+}
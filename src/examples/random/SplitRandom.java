@@ -0,0 +1,146 @@
+package examples.random;
+
+/**
+ * A fast random number generator for a single thread, with the SplitMix64 algorithm of
+ * {@code java.util.SplittableRandom}.
+ * <p>
+ * {@code java.util.Random} keeps its seed in an {@code AtomicLong}, so that one instance
+ * can be shared. Every number costs a compare-and-set, and when several threads share the
+ * instance, those compare-and-sets fail and retry on a contended cache line. This class
+ * keeps its state in a plain {@code long} instead. It is not thread-safe: each thread
+ * needs its own generator, which {@link RandomStreams} hands out. A generator started from
+ * the same seed always produces the same numbers, so a run can be replayed.
+ */
+public final class SplitRandom {
+
+    private static final long GOLDEN_GAMMA = 0x9e3779b97f4a7c15L;
+
+    private long state;
+    private final long gamma;
+
+    public SplitRandom(long seed) {
+        this(seed, GOLDEN_GAMMA);
+    }
+
+    private SplitRandom(long seed, long gamma) {
+        this.state = seed;
+        this.gamma = gamma;
+    }
+
+    /**
+     * @return a new generator whose numbers are independent of this one's; the same
+     * sequence of calls on generators with the same seed returns the same generators
+     */
+    public SplitRandom split() {
+        return new SplitRandom(mix64(nextSeed()), mixGamma(nextSeed()));
+    }
+
+    public long nextLong() {
+        return mix64(nextSeed());
+    }
+
+    public int nextInt() {
+        return mix32(nextSeed());
+    }
+
+    /**
+     * @return a number from 0 (inclusive) to {@code bound} (exclusive), every number
+     * equally likely
+     */
+    public int nextInt(int bound) {
+        if (bound <= 0) throw new IllegalArgumentException("bound must be positive: " + bound);
+        // Multiplies instead of dividing, and rejects the few values that would make
+        // the low numbers more likely
+        long product = (nextInt() & 0xffffffffL) * bound;
+        if ((product & 0xffffffffL) < bound) {
+            long threshold = (1L << 32) % bound;
+            while ((product & 0xffffffffL) < threshold)
+                product = (nextInt() & 0xffffffffL) * bound;
+        }
+        return (int) (product >>> 32);
+    }
+
+    /**
+     * @return a number from 0 (inclusive) to 1 (exclusive)
+     */
+    public double nextDouble() {
+        return (nextLong() >>> 11) * 0x1.0p-53;
+    }
+
+    /**
+     * Fills {@code length} elements of {@code target}, starting at {@code offset}, with
+     * numbers from 0 (inclusive) to {@code bound} (exclusive): the same numbers as that
+     * many {@link #nextInt(int)} calls, without a call per number.
+     */
+    public void fill(int[] target, int offset, int length, int bound) {
+        if (bound <= 0) throw new IllegalArgumentException("bound must be positive: " + bound);
+        long threshold = (1L << 32) % bound;
+        long s = state;
+        for (int i = offset, end = offset + length; i < end; i++) {
+            long product;
+            do {
+                s += gamma;
+                product = (mix32(s) & 0xffffffffL) * bound;
+            } while ((product & 0xffffffffL) < threshold);
+            target[i] = (int) (product >>> 32);
+        }
+        state = s;
+    }
+
+    /**
+     * Fills {@code length} elements of {@code target}, starting at {@code offset}, with
+     * numbers of the whole {@code int} range.
+     */
+    public void fill(int[] target, int offset, int length) {
+        long s = state;
+        for (int i = offset, end = offset + length; i < end; i++) {
+            s += gamma;
+            target[i] = mix32(s);
+        }
+        state = s;
+    }
+
+    /**
+     * Fills {@code target} with random bytes, eight bytes per number drawn.
+     */
+    public void nextBytes(byte[] target) {
+        int i = 0;
+        for (int end = target.length & ~7; i < end; ) {
+            long bits = nextLong();
+            for (int n = 0; n < 8; n++, bits >>>= 8)
+                target[i++] = (byte) bits;
+        }
+        if (i < target.length) {
+            long bits = nextLong();
+            for (; i < target.length; i++, bits >>>= 8)
+                target[i] = (byte) bits;
+        }
+    }
+
+    private long nextSeed() {
+        return state += gamma;
+    }
+
+    /**
+     * The finalizer of SplitMix64: turns consecutive seeds into unrelated numbers.
+     * Also used by {@link RandomStreams} to derive independent seeds.
+     */
+    static long mix64(long z) {
+        z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+        z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+        return z ^ (z >>> 31);
+    }
+
+    private static int mix32(long z) {
+        z = (z ^ (z >>> 33)) * 0x62a9d9ed799705f5L;
+        return (int) (((z ^ (z >>> 28)) * 0xcb24d0a5c88c35b3L) >>> 32);
+    }
+
+    // An odd gamma with enough bit transitions, as in SplittableRandom
+    private static long mixGamma(long z) {
+        z = (z ^ (z >>> 33)) * 0xff51afd7ed558ccdL;
+        z = (z ^ (z >>> 33)) * 0xc4ceb9fe1a85ec53L;
+        z = (z ^ (z >>> 33)) | 1L;
+        return Long.bitCount(z ^ (z >>> 1)) < 24 ? z ^ 0xaaaaaaaaaaaaaaaaL : z;
+    }
+}
@@ -1,11 +1,35 @@
 package examples.re_entrant_locks.dead_lock;
 
+import java.util.concurrent.atomic.AtomicLong;
+
 /**
  * Represent a bank account and its basic operations.
  */
 public class Account {
+    private static final AtomicLong NEXT_ID = new AtomicLong(1);
+
+    private final long id;
     private int balance = 10000;   // Initial balance of the account
 
+    /**
+     * Creates an account with the next free id.
+     */
+    public Account() {
+        this(NEXT_ID.getAndIncrement());
+    }
+
+    /**
+     * @param id the number of the account, which never changes; {@link OrderedLockManager}
+     *           locks accounts in the order of their ids
+     */
+    public Account(long id) {
+        this.id = id;
+    }
+
+    public long getId() {
+        return id;
+    }
+
     // getter
     public int getBalance() {
         return balance;
@@ -16,9 +16,16 @@ package examples.re_entrant_locks.dead_lock;
  * </p>
  */
 public class App {
+
+    /**
+     * Pass {@code back_off} as argument to let {@link Runner} acquire the locks
+     * with {@code tryLock()} and a sleep between attempts, instead of in the
+     * order of the account ids.
+     */
     public static void main(String[] args) throws InterruptedException {
 
-        final Runner runner = new Runner();
+        boolean backOff = args.length > 0 && args[0].equals("back_off");
+        final Runner runner = new Runner(10000, backOff);
 
         Thread thread1 = new Thread(new Runnable() {
             @Override
@@ -0,0 +1,116 @@
+package examples.re_entrant_locks.dead_lock;
+
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Gives every account a lock, found by the account's id, and acquires any set of these
+ * locks in the order of the ids.
+ * <p>
+ * A deadlock needs two threads that each hold a lock the other one wants, which can
+ * only happen if they take the locks in different orders. When every thread takes them
+ * from the lowest id to the highest, the thread holding the highest lock of the pair never
+ * waits for the other one, so no deadlock is possible. There is then no need for
+ * {@code tryLock()}, for giving the locks back, or for sleeping before trying again: a
+ * thread simply waits for each lock in turn.
+ */
+public class OrderedLockManager {
+
+    private final ConcurrentMap<Long, Lock> locks = new ConcurrentHashMap<Long, Lock>();
+
+    /**
+     * Uses {@code lock} for the account {@code id}, for example an instrumented lock.
+     * Must be called before the first use of that id.
+     */
+    public void register(long id, Lock lock) {
+        if (locks.putIfAbsent(id, lock) != null)
+            throw new IllegalStateException("Account " + id + " already has a lock");
+    }
+
+    /**
+     * @return the lock of the account {@code id}, a new {@code ReentrantLock} the first time
+     */
+    public Lock lockFor(long id) {
+        Lock lock = locks.get(id);
+        if (lock != null) return lock;
+        Lock created = new ReentrantLock();
+        lock = locks.putIfAbsent(id, created);
+        return lock == null ? created : lock;
+    }
+
+    /**
+     * Acquires the locks of two accounts, lowest id first. The same id twice is locked once.
+     *
+     * @throws InterruptedException if interrupted while waiting, in which case no lock is held
+     */
+    public void lockAll(long first, long second) throws InterruptedException {
+        if (first == second) {
+            lockFor(first).lockInterruptibly();
+            return;
+        }
+        Lock low = lockFor(Math.min(first, second));
+        Lock high = lockFor(Math.max(first, second));
+        low.lockInterruptibly();
+        try {
+            high.lockInterruptibly();
+        } catch (InterruptedException e) {
+            low.unlock();
+            throw e;
+        }
+    }
+
+    /**
+     * Releases the locks taken by {@link #lockAll(long, long)}.
+     */
+    public void unlockAll(long first, long second) {
+        if (first == second) {
+            lockFor(first).unlock();
+            return;
+        }
+        lockFor(Math.max(first, second)).unlock();
+        lockFor(Math.min(first, second)).unlock();
+    }
+
+    /**
+     * Acquires the locks of any number of accounts, in increasing order of ids. An id that
+     * appears more than once is locked once.
+     *
+     * @return the ids in the order they were locked, to pass to {@link #unlockAll(long[])}
+     * @throws InterruptedException if interrupted while waiting, in which case no lock is held
+     */
+    public long[] lockAll(long... ids) throws InterruptedException {
+        long[] sorted = distinctSorted(ids);
+        for (int i = 0; i < sorted.length; i++) {
+            try {
+                lockFor(sorted[i]).lockInterruptibly();
+            } catch (InterruptedException e) {
+                for (int j = i - 1; j >= 0; j--)
+                    lockFor(sorted[j]).unlock();
+                throw e;
+            }
+        }
+        return sorted;
+    }
+
+    /**
+     * Releases the locks taken by {@link #lockAll(long...)}, in the opposite order.
+     *
+     * @param locked the array returned by {@code lockAll()}
+     */
+    public void unlockAll(long[] locked) {
+        for (int i = locked.length - 1; i >= 0; i--)
+            lockFor(locked[i]).unlock();
+    }
+
+    private static long[] distinctSorted(long[] ids) {
+        long[] sorted = ids.clone();
+        Arrays.sort(sorted);
+        int distinct = 0;
+        for (int i = 0; i < sorted.length; i++)
+            if (i == 0 || sorted[i] != sorted[i - 1]) sorted[distinct++] = sorted[i];
+        return distinct == sorted.length ? sorted : Arrays.copyOf(sorted, distinct);
+    }
+}
@@ -1,22 +1,28 @@
 package examples.re_entrant_locks.dead_lock;
 
-import java.util.Random;
+import examples.logging.AsyncLog;
+import examples.metrics.InstrumentedLock;
+import examples.metrics.LatencyHistogram;
+import examples.metrics.LockMetrics;
+import examples.random.RandomStreams;
+import examples.random.SplitRandom;
+
 import java.util.concurrent.locks.Lock;
-import java.util.concurrent.locks.ReentrantLock;
 
 /**
  * The {@code Runner} class provide a solution for the **DeadLock** problem
  * by ensuring that both locks are acquired safely before proceeding.
  * <p>
- * This is achieved by using a method that checks whether both lock are
- * available. If one of the locks is already held by another {@code Thread},
+ * By default, an {@link OrderedLockManager} acquires both locks in the order of
+ * the account ids, whichever account the money leaves from. All the threads then
+ * request the locks in the same sequence, so none of them can hold a lock that
+ * another one holding the second lock is waiting for.
+ * <p>
+ * With {@code backOff}, it uses a method that checks whether both lock are
+ * available instead. If one of the locks is already held by another {@code Thread},
  * it releases the acquired lock and retries later. To avoid excessive contention,
  * the {@code Thread} sleeps for a short period before attempting to acquire both
- * locks again.
- * <p>
- * Another approach to prevent deadlocks is to enforce a consistent lock acquisition
- * order across all threads, ensuring that locks are always requested in the
- * same sequence.
+ * locks again. {@link TransferBenchmark} compares the two.
  * <p>
  * A **Deadlock** can occur not only when using **Re-entrant locks**, but also
  * with nested {@code synchronized} blocks if the locks are acquired in an
@@ -24,11 +30,45 @@ import java.util.concurrent.locks.ReentrantLock;
  * </p>
  */
 public class Runner {
-    private final Account userAccount1 = new Account();
-    private final Account userAccount2 = new Account();
+    private final Account userAccount1 = new Account(1);
+    private final Account userAccount2 = new Account(2);
+
+    // Measure how long the threads wait for each lock and hold it, see notifiesFinish()
+    private final Lock lockAccount1 = new InstrumentedLock("dead_lock.lockAccount1");
+    private final Lock lockAccount2 = new InstrumentedLock("dead_lock.lockAccount2");
+    private final OrderedLockManager lockManager = new OrderedLockManager();
+
+    private final int transfers;
+    private final boolean backOff;
+    private final long holdNanos;
+    private final LatencyHistogram lockWaits;
+
+    public Runner() {
+        this(10000, false);
+    }
 
-    private final Lock lockAccount1 = new ReentrantLock();
-    private final Lock lockAccount2 = new ReentrantLock();
+    /**
+     * @param transfers number of transfers made by each process
+     * @param backOff   {@code true} to acquire the locks with {@code tryLock()} and a
+     *                  sleep between attempts instead of in the order of the account ids
+     */
+    public Runner(int transfers, boolean backOff) {
+        this(transfers, backOff, 0, null);
+    }
+
+    /**
+     * @param holdNanos how long each transfer keeps the locks, to simulate a slower one
+     * @param lockWaits where to record how long each transfer waited for both locks, or
+     *                  {@code null}
+     */
+    Runner(int transfers, boolean backOff, long holdNanos, LatencyHistogram lockWaits) {
+        this.transfers = transfers;
+        this.backOff = backOff;
+        this.holdNanos = holdNanos;
+        this.lockWaits = lockWaits;
+        lockManager.register(userAccount1.getId(), lockAccount1);
+        lockManager.register(userAccount2.getId(), lockAccount2);
+    }
 
     /**
      * Method to handles the Thread acquisition of the locks.
@@ -58,55 +98,73 @@ public class Runner {
 
     /**
      * The process makes a transfer for the {@code userAccount1} to the
-     * {@code userAccount2} and gets the locks in inverse order of the
-     * {@code runsSecondProcess()} method.
+     * {@code userAccount2}. With {@code backOff}, it tries the locks in inverse
+     * order of the {@code runsSecondProcess()} method.
      *
      * @throws InterruptedException Thrown when a thread is waiting,
      * sleeping, or otherwise occupied, and the thread is interrupted
      */
     public void runsFirstProcess() throws InterruptedException {
-        Random randomAmount = new Random();
+        SplitRandom randomAmount = RandomStreams.shared().current();
 
-        for (int i = 0; i < 10000; i++) {
-            adquiereLocks(lockAccount1, lockAccount2);
-            try {
-                Account.transfer(userAccount1, userAccount2, randomAmount.nextInt(100));
-            } finally {
-                lockAccount1.unlock();
-                lockAccount2.unlock();
-            }
-        }
+        for (int i = 0; i < transfers; i++)
+            transfer(userAccount1, lockAccount1, userAccount2, lockAccount2, randomAmount.nextInt(100));
     }
 
     /**
      * The process makes a transfer for the {@code userAccount2} to the
-     * {@code userAccount1} and gets the locks in inverse order of the
-     * {@code runsFirstProcess()} method.
+     * {@code userAccount1}. With {@code backOff}, it tries the locks in inverse
+     * order of the {@code runsFirstProcess()} method.
      *
      * @throws InterruptedException Thrown when a thread is waiting,
      * sleeping, or otherwise occupied, and the thread is interrupted
      */
     public void runsSecondProcess() throws InterruptedException {
-        Random randomAmount = new Random();
+        SplitRandom randomAmount = RandomStreams.shared().current();
 
-        for (int i = 0; i < 10000; i++) {
-            adquiereLocks(lockAccount2, lockAccount1);
-            try {
-                Account.transfer(userAccount2, userAccount1, randomAmount.nextInt(100));
-            } finally {
-                lockAccount1.unlock();
-                lockAccount2.unlock();
+        for (int i = 0; i < transfers; i++)
+            transfer(userAccount2, lockAccount2, userAccount1, lockAccount1, randomAmount.nextInt(100));
+    }
+
+    private void transfer(Account from, Lock fromLock, Account to, Lock toLock, int amount)
+            throws InterruptedException {
+        long start = lockWaits != null ? System.nanoTime() : 0;
+        if (backOff) adquiereLocks(fromLock, toLock);
+        else lockManager.lockAll(from.getId(), to.getId());
+        if (lockWaits != null) lockWaits.record(System.nanoTime() - start);
+        try {
+            Account.transfer(from, to, amount);
+            if (holdNanos > 0) {
+                long end = System.nanoTime() + holdNanos;
+                while (System.nanoTime() < end) {
+                    // simulates a slower transfer
+                }
+            }
+        } finally {
+            if (backOff) {
+                fromLock.unlock();
+                toLock.unlock();
+            } else {
+                lockManager.unlockAll(from.getId(), to.getId());
             }
         }
     }
 
+    /**
+     * @return the sum of both balances, which the transfers must not change
+     */
+    int getTotalBalance() {
+        return userAccount1.getBalance() + userAccount2.getBalance();
+    }
+
     /**
      * Notifies the end of the Thread's running.
      */
     public void notifiesFinish() {
-        System.out.println("Account user1 balance: " + userAccount1.getBalance());
-        System.out.println("Account user2 balance: " + userAccount2.getBalance());
-        System.out.println("Overall balance of both user: " +
+        AsyncLog.println("Account user1 balance: " + userAccount1.getBalance());
+        AsyncLog.println("Account user2 balance: " + userAccount2.getBalance());
+        AsyncLog.println("Overall balance of both user: " +
                 (userAccount1.getBalance() + userAccount2.getBalance()));
+        AsyncLog.print(LockMetrics.report());
     }
 }
@@ -0,0 +1,86 @@
+package examples.re_entrant_locks.dead_lock;
+
+import examples.metrics.LatencyHistogram;
+import examples.metrics.LockMetrics;
+
+import java.util.concurrent.CountDownLatch;
+
+/**
+ * Runs the two processes of {@link Runner} with 1, 2 and 4 threads each, so that half
+ * the threads move money from the first account to the second one and half the other
+ * way, and compares acquiring the locks:
+ * <ul>
+ *     <li>with {@code tryLock()}, giving both back and sleeping 1 ms when one is taken,</li>
+ *     <li>in the order of the account ids, with an {@link OrderedLockManager}.</li>
+ * </ul>
+ * It prints the transfers per second, the share of acquisitions of the first account's
+ * lock that found it held, and how long a transfer waited for both locks. It also checks
+ * that no money was created or lost.
+ * <p>
+ * Transfers run as they are, then keeping the locks for {@value #SLOW_HOLD_NANOS} ns each,
+ * so that a thread is more often switched out while it holds them.
+ */
+public class TransferBenchmark {
+
+    private static final int TRANSFERS = 500_000;       // per thread
+    private static final int SLOW_TRANSFERS = 20_000;   // per thread, when holding the locks longer
+    private static final long SLOW_HOLD_NANOS = 5_000;
+    private static final int[] THREADS = {1, 2, 4};     // per direction
+
+    public static void main(String[] args) throws InterruptedException {
+        for (int round = 0; round < 2; round++) {
+            boolean print = round == 1;
+            for (long holdNanos : new long[]{0, SLOW_HOLD_NANOS}) {
+                if (print)
+                    System.out.printf("%nLocks held %s, %d cores%n%-22s %9s %14s %11s %14s %14s%n",
+                            holdNanos == 0 ? "for the transfer only" : "for " + holdNanos + " ns",
+                            Runtime.getRuntime().availableProcessors(), "", "threads", "transfers/s",
+                            "contended", "wait p99 us", "wait max us");
+                for (int threads : THREADS) {
+                    run(print, "tryLock + sleep(1)", threads, true, holdNanos);
+                    run(print, "OrderedLockManager", threads, false, holdNanos);
+                }
+            }
+        }
+    }
+
+    private static void run(boolean print, String name, int threadsPerDirection, boolean backOff,
+                            long holdNanos) throws InterruptedException {
+        int transfers = holdNanos == 0 ? TRANSFERS : SLOW_TRANSFERS;
+        LatencyHistogram lockWaits = new LatencyHistogram();
+        final Runner runner = new Runner(transfers, backOff, holdNanos, lockWaits);
+        LockMetrics metrics = LockMetrics.named("dead_lock.lockAccount1");
+        metrics.reset();
+        final CountDownLatch start = new CountDownLatch(1);
+        Thread[] threads = new Thread[threadsPerDirection * 2];
+        for (int t = 0; t < threads.length; t++) {
+            final boolean first = t % 2 == 0;
+            threads[t] = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        start.await();
+                        if (first) runner.runsFirstProcess();
+                        else runner.runsSecondProcess();
+                    } catch (InterruptedException e) {
+                        e.printStackTrace();
+                    }
+                }
+            });
+            threads[t].start();
+        }
+
+        long begin = System.nanoTime();
+        start.countDown();
+        for (Thread thread : threads)
+            thread.join();
+        long elapsed = System.nanoTime() - begin;
+
+        if (runner.getTotalBalance() != 20000)
+            throw new IllegalStateException(name + " changed the total balance to " + runner.getTotalBalance());
+        if (print)
+            System.out.printf("%-22s %9d %,14.0f %10.1f%% %,14.1f %,14.1f%n", name, threads.length,
+                    (double) transfers * threads.length / (elapsed / 1e9), metrics.getContentionRatio() * 100,
+                    lockWaits.getPercentile(99) / 1e3, lockWaits.getMax() / 1e3);
+    }
+}
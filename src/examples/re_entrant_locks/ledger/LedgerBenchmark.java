@@ -0,0 +1,141 @@
+package examples.re_entrant_locks.ledger;
+
+import examples.metrics.ParallelTimer;
+import examples.random.SplitRandom;
+
+
+/**
+ * Makes {@value #TRANSFERS} transfers of 1 to 100 between the accounts of a
+ * {@link ShardedLedger} of 10 million accounts (or the number given as argument), with 1
+ * and 4 threads, and prints the transfers per second:
+ * <ul>
+ *     <li>with the balances on the heap and off it,</li>
+ *     <li>one {@link ShardedLedger#transfer} at a time, and in batches of {@value #BATCH}
+ *     with {@link ShardedLedger#transferAll},</li>
+ *     <li>with every account equally likely, and with a Zipfian distribution where account
+ *     0 is the busiest, account 1 the second busiest, and so on, as in real ledgers where a
+ *     few accounts see most of the traffic.</li>
+ * </ul>
+ * After each run it checks with {@link ShardedLedger#audit()} that no money was created or
+ * lost, and prints how long the last audit took.
+ */
+public class LedgerBenchmark {
+
+    private static final int TRANSFERS = 4_000_000;
+    private static final int BATCH = 64;
+    private static final long INITIAL_BALANCE = 1_000;
+    private static final double ZIPF_THETA = 0.99;
+    private static final int[] THREADS = {1, 4};
+
+    public static void main(String[] args) throws InterruptedException {
+        long accounts = args.length > 0 ? Long.parseLong(args[0]) : 10_000_000;
+        SplitRandom random = new SplitRandom(42);
+        long[][] uniform = transfers(random, accounts, null);
+        long[][] zipfian = transfers(random, accounts, new Zipfian(accounts, ZIPF_THETA));
+
+        long auditNanos = 0;
+        for (int round = 0; round < 2; round++) {
+            boolean print = round == 1;
+            if (print) {
+                System.out.printf("%,d accounts, %,d transfers, %d cores, millions of transfers per second%n%-24s",
+                        accounts, TRANSFERS, Runtime.getRuntime().availableProcessors(), "");
+                for (String distribution : new String[]{"uniform", "zipfian"})
+                    for (int threads : THREADS)
+                        System.out.printf("%15s", distribution + " x" + threads);
+                System.out.println();
+            }
+            for (ShardedLedger.Storage storage : ShardedLedger.Storage.values()) {
+                for (int batch : new int[]{1, BATCH}) {
+                    if (print) System.out.printf("%-24s", storage + (batch == 1 ? " transfer" : " transferAll"));
+                    for (long[][] transfers : new long[][][]{uniform, zipfian}) {
+                        for (int threads : THREADS) {
+                            ShardedLedger ledger = new ShardedLedger(accounts, INITIAL_BALANCE, storage);
+                            long elapsed = run(ledger, transfers, threads, batch);
+                            long start = System.nanoTime();
+                            long total = ledger.audit();
+                            auditNanos = System.nanoTime() - start;
+                            if (total != accounts * INITIAL_BALANCE)
+                                throw new IllegalStateException("The ledger holds " + total + " instead of "
+                                        + accounts * INITIAL_BALANCE);
+                            if (print) System.out.printf("%15.2f", TRANSFERS / (elapsed / 1e3));
+                        }
+                    }
+                    if (print) System.out.println();
+                }
+            }
+        }
+        System.out.printf("audit of %,d accounts: %.1f ms%n", accounts, auditNanos / 1e6);
+    }
+
+    // Returns the source accounts, the target accounts and the amounts
+    private static long[][] transfers(SplitRandom random, long accounts, Zipfian zipfian) {
+        long[] from = new long[TRANSFERS];
+        long[] to = new long[TRANSFERS];
+        long[] amounts = new long[TRANSFERS];
+        for (int i = 0; i < TRANSFERS; i++) {
+            from[i] = zipfian == null ? uniform(random, accounts) : zipfian.next(random);
+            to[i] = zipfian == null ? uniform(random, accounts) : zipfian.next(random);
+            amounts[i] = 1 + random.nextInt(100);
+        }
+        return new long[][]{from, to, amounts};
+    }
+
+    private static long uniform(SplitRandom random, long accounts) {
+        return (random.nextLong() >>> 1) % accounts;
+    }
+
+    private static long run(final ShardedLedger ledger, long[][] transfers, int threads, final int batch)
+            throws InterruptedException {
+        final long[] from = transfers[0];
+        final long[] to = transfers[1];
+        final long[] amounts = transfers[2];
+        return ParallelTimer.time(threads, TRANSFERS, new ParallelTimer.Share() {
+            @Override
+            public void run(int thread, int first, int count) {
+                int end = first + count;
+                if (batch == 1) {
+                    for (int i = first; i < end; i++)
+                        ledger.transfer(from[i], to[i], amounts[i]);
+                } else {
+                    for (int i = first; i < end; i += batch)
+                        ledger.transferAll(from, to, amounts, i, Math.min(batch, end - i));
+                }
+            }
+        });
+    }
+
+    /**
+     * Draws numbers from 0 to {@code n - 1}, 0 being the most likely, with the method of
+     * Gray et al., "Quickly Generating Billion-Record Synthetic Databases", also used by YCSB.
+     */
+    private static final class Zipfian {
+        private final long n;
+        private final double theta;
+        private final double alpha;
+        private final double zetaN;
+        private final double eta;
+
+        Zipfian(long n, double theta) {
+            this.n = n;
+            this.theta = theta;
+            this.alpha = 1 / (1 - theta);
+            this.zetaN = zeta(n, theta);
+            this.eta = (1 - Math.pow(2.0 / n, 1 - theta)) / (1 - zeta(2, theta) / zetaN);
+        }
+
+        long next(SplitRandom random) {
+            double u = random.nextDouble();
+            double uz = u * zetaN;
+            if (uz < 1) return 0;
+            if (uz < 1 + Math.pow(0.5, theta)) return 1;
+            return Math.min(n - 1, (long) (n * Math.pow(eta * u - eta + 1, alpha)));
+        }
+
+        private static double zeta(long n, double theta) {
+            double sum = 0;
+            for (long i = 1; i <= n; i++)
+                sum += 1 / Math.pow(i, theta);
+            return sum;
+        }
+    }
+}
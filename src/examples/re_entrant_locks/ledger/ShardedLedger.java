@@ -0,0 +1,340 @@
+package examples.re_entrant_locks.ledger;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.LongBuffer;
+import java.util.Arrays;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * The balances of millions of accounts, for the transfers of
+ * {@link examples.re_entrant_locks.dead_lock.Runner} at scale.
+ * <p>
+ * An {@code Account} object per account, with a lock each, costs tens of bytes of header
+ * and pointers for 8 bytes of balance, and gives the garbage collector tens of millions
+ * of objects to trace. Here an account is only a number, its id, and its balance a
+ * {@code long} in an array:
+ * <ul>
+ *     <li>The accounts are split into {@code shards}, account {@code id} going to shard
+ *     {@code id % shards}, so that neighbouring ids, often busy at the same time, land in
+ *     different shards. Each shard stores its balances in a {@code long[]}, or outside the
+ *     heap in a direct buffer, which the garbage collector never scans.</li>
+ *     <li>Each shard has a fixed number of locks, its <em>stripes</em>, and an account is
+ *     guarded by the stripe of its position in the shard. With the default 64 shards of
+ *     1,024 stripes, 65,536 locks guard millions of accounts, and two transfers only wait
+ *     for each other when their accounts share a stripe.</li>
+ * </ul>
+ * A transfer locks the stripes of both accounts in the order of their numbers, as
+ * {@link examples.re_entrant_locks.dead_lock.OrderedLockManager} does with account ids, so
+ * no deadlock is possible. {@link #transferAll} takes every stripe of a whole batch of
+ * transfers at once, in the same order, so a stripe used by several transfers of the batch
+ * is locked once. {@link #audit()} takes every stripe, all 65,536 by default, so it sees
+ * no transfer half done; it is meant for checks, not for the busy path.
+ */
+public class ShardedLedger {
+
+    /** Where the balances are stored. */
+    public enum Storage {
+        /** A {@code long[]} per shard. */
+        HEAP,
+        /** A direct buffer per shard, outside the Java heap. */
+        OFF_HEAP
+    }
+
+    private final long accounts;
+    private final int shards;
+    private final int stripesPerShard;
+    private final Balances[] balances;
+    private final ReentrantLock[] stripes;      // shard s uses stripes[s * stripesPerShard ...]
+
+    // The stripes of a batch, reused from one transferAll() call to the next
+    private final ThreadLocal<Batch> batches = new ThreadLocal<Batch>() {
+        @Override
+        protected Batch initialValue() {
+            return new Batch(stripes.length);
+        }
+    };
+
+    /**
+     * Creates a ledger with 64 shards of 1,024 stripes.
+     */
+    public ShardedLedger(long accounts, long initialBalance, Storage storage) {
+        this(accounts, 64, 1024, initialBalance, storage);
+    }
+
+    /**
+     * @param accounts        number of accounts, with ids from 0 to {@code accounts - 1}
+     * @param shards          number of shards
+     * @param stripesPerShard number of locks in each shard
+     * @param initialBalance  balance of every account at the start
+     * @param storage         where the balances are stored
+     */
+    public ShardedLedger(long accounts, int shards, int stripesPerShard, long initialBalance, Storage storage) {
+        if (accounts <= 0 || shards <= 0 || stripesPerShard <= 0)
+            throw new IllegalArgumentException("accounts, shards and stripes must be positive");
+        long perShard = (accounts + shards - 1) / shards;
+        if (perShard > Integer.MAX_VALUE)
+            throw new IllegalArgumentException("Too many accounts per shard: " + perShard);
+        this.accounts = accounts;
+        this.shards = shards;
+        this.stripesPerShard = stripesPerShard;
+        this.balances = new Balances[shards];
+        for (int s = 0; s < shards; s++) {
+            int size = (int) ((accounts - s + shards - 1) / shards);   // ids s, s + shards, ... below accounts
+            balances[s] = storage == Storage.HEAP ? new HeapBalances(size) : new OffHeapBalances(size);
+            balances[s].fill(initialBalance);
+        }
+        this.stripes = new ReentrantLock[shards * stripesPerShard];
+        for (int i = 0; i < stripes.length; i++)
+            stripes[i] = new ReentrantLock();
+    }
+
+    public long getAccountCount() {
+        return accounts;
+    }
+
+    public long getBalance(long id) {
+        ReentrantLock lock = stripes[stripeOf(id)];
+        lock.lock();
+        try {
+            return balances[shardOf(id)].get(indexOf(id));
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Moves {@code amount} from account {@code from} to account {@code to}, if {@code from}
+     * has enough money.
+     *
+     * @return {@code false} if the balance of {@code from} is lower than {@code amount}
+     */
+    public boolean transfer(long from, long to, long amount) {
+        check(from, to, amount);
+        int first = stripeOf(from);
+        int second = stripeOf(to);
+        ReentrantLock low = stripes[Math.min(first, second)];
+        ReentrantLock high = stripes[Math.max(first, second)];
+        low.lock();
+        if (high != low) high.lock();
+        try {
+            return apply(from, to, amount);
+        } finally {
+            if (high != low) high.unlock();
+            low.unlock();
+        }
+    }
+
+    /**
+     * Makes {@code length} transfers, the i-th one moving {@code amounts[i]} from
+     * {@code from[i]} to {@code to[i]}, starting at {@code offset}, in that order. Each
+     * transfer is made only if its source account has enough money at that point.
+     * <p>
+     * Every stripe involved is locked once for the whole batch, so an {@link #audit()}
+     * sees all of the batch or none of it. Other threads wait longer for these stripes
+     * than for a single transfer: batches of tens of transfers work best.
+     *
+     * @return the number of transfers made
+     */
+    public int transferAll(long[] from, long[] to, long[] amounts, int offset, int length) {
+        for (int i = offset; i < offset + length; i++)
+            check(from[i], to[i], amounts[i]);
+        Batch batch = batches.get();
+        for (int i = offset; i < offset + length; i++) {
+            batch.mark(stripeOf(from[i]));
+            batch.mark(stripeOf(to[i]));
+        }
+        int[] locked = batch.drainInOrder(length * 2);
+        int count = batch.drained;
+
+        for (int i = 0; i < count; i++)
+            stripes[locked[i]].lock();
+        try {
+            int made = 0;
+            for (int i = offset; i < offset + length; i++)
+                if (apply(from[i], to[i], amounts[i])) made++;
+            return made;
+        } finally {
+            for (int i = count - 1; i >= 0; i--)
+                stripes[locked[i]].unlock();
+        }
+    }
+
+    /**
+     * Adds up every balance while no transfer is in progress. Transfers never create or
+     * destroy money, so the result must always be the number of accounts times the initial
+     * balance. Every transfer waits while the audit runs.
+     */
+    public long audit() {
+        for (ReentrantLock lock : stripes)
+            lock.lock();
+        try {
+            long total = 0;
+            for (Balances shard : balances)
+                total += shard.sum();
+            return total;
+        } finally {
+            for (int i = stripes.length - 1; i >= 0; i--)
+                stripes[i].unlock();
+        }
+    }
+
+    // Called with the stripes of both accounts locked
+    private boolean apply(long from, long to, long amount) {
+        Balances source = balances[shardOf(from)];
+        int sourceIndex = indexOf(from);
+        long balance = source.get(sourceIndex);
+        if (balance < amount) return false;
+        source.set(sourceIndex, balance - amount);
+        Balances target = balances[shardOf(to)];
+        int targetIndex = indexOf(to);
+        target.set(targetIndex, target.get(targetIndex) + amount);
+        return true;
+    }
+
+    private void check(long from, long to, long amount) {
+        if (from < 0 || from >= accounts || to < 0 || to >= accounts)
+            throw new IndexOutOfBoundsException("No account " + (from < 0 || from >= accounts ? from : to));
+        if (amount < 0) throw new IllegalArgumentException("Negative amount: " + amount);
+    }
+
+    private int shardOf(long id) {
+        return (int) (id % shards);
+    }
+
+    private int indexOf(long id) {
+        return (int) (id / shards);
+    }
+
+    private int stripeOf(long id) {
+        return shardOf(id) * stripesPerShard + indexOf(id) % stripesPerShard;
+    }
+
+    /**
+     * The set of stripes a batch needs, as one bit per stripe, so that they come out
+     * sorted and without duplicates with no sorting. A second level of bits tells which
+     * words have a bit set, so only those words are read.
+     */
+    private static final class Batch {
+        private final long[] words;
+        private final long[] summary;
+        private int[] order = new int[0];
+        int drained;
+
+        Batch(int stripes) {
+            words = new long[(stripes + 63) >>> 6];
+            summary = new long[(words.length + 63) >>> 6];
+        }
+
+        void mark(int stripe) {
+            int word = stripe >>> 6;
+            words[word] |= 1L << stripe;
+            summary[word >>> 6] |= 1L << word;
+        }
+
+        /**
+         * @return the marked stripes in increasing order, in the first {@link #drained}
+         * elements; every mark is cleared
+         */
+        int[] drainInOrder(int atMost) {
+            if (order.length < atMost) order = new int[atMost];
+            int count = 0;
+            for (int s = 0; s < summary.length; s++) {
+                long used = summary[s];
+                summary[s] = 0;
+                while (used != 0) {
+                    int word = (s << 6) + Long.numberOfTrailingZeros(used);
+                    used &= used - 1;
+                    long bits = words[word];
+                    words[word] = 0;
+                    while (bits != 0) {
+                        order[count++] = (word << 6) + Long.numberOfTrailingZeros(bits);
+                        bits &= bits - 1;
+                    }
+                }
+            }
+            drained = count;
+            return order;
+        }
+    }
+
+    /** The balances of one shard. */
+    private interface Balances {
+        long get(int index);
+
+        void set(int index, long balance);
+
+        void fill(long balance);
+
+        long sum();
+    }
+
+    private static final class HeapBalances implements Balances {
+        private final long[] values;
+
+        HeapBalances(int size) {
+            values = new long[size];
+        }
+
+        @Override
+        public long get(int index) {
+            return values[index];
+        }
+
+        @Override
+        public void set(int index, long balance) {
+            values[index] = balance;
+        }
+
+        @Override
+        public void fill(long balance) {
+            Arrays.fill(values, balance);
+        }
+
+        @Override
+        public long sum() {
+            long sum = 0;
+            for (long value : values)
+                sum += value;
+            return sum;
+        }
+    }
+
+    /**
+     * In the processor's native byte order, so reading and writing a {@code long} needs
+     * no byte swapping. The memory is given back when the ledger is garbage collected.
+     */
+    private static final class OffHeapBalances implements Balances {
+        private final LongBuffer values;
+
+        OffHeapBalances(int size) {
+            if (size > Integer.MAX_VALUE / 8)
+                throw new IllegalArgumentException("Too many accounts per shard for a direct buffer: " + size);
+            values = ByteBuffer.allocateDirect(size * 8).order(ByteOrder.nativeOrder()).asLongBuffer();
+        }
+
+        @Override
+        public long get(int index) {
+            return values.get(index);
+        }
+
+        @Override
+        public void set(int index, long balance) {
+            values.put(index, balance);
+        }
+
+        @Override
+        public void fill(long balance) {
+            for (int i = 0; i < values.capacity(); i++)
+                values.put(i, balance);
+        }
+
+        @Override
+        public long sum() {
+            long sum = 0;
+            for (int i = 0; i < values.capacity(); i++)
+                sum += values.get(i);
+            return sum;
+        }
+    }
+}
@@ -1,5 +1,7 @@
 package examples.re_entrant_locks.lock;
 
+import examples.logging.AsyncLog;
+
 import java.util.Scanner;
 import java.util.concurrent.locks.Condition;
 import java.util.concurrent.locks.Lock;
@@ -65,9 +67,9 @@ public class Runner {
      */
     public void firstProcess() throws InterruptedException {
         lock.lock();
-        System.out.println("Waiting...");
+        AsyncLog.println("Waiting...");
         condition.await();
-        System.out.println("Woken up...");
+        AsyncLog.println("Woken up...");
 
         try {
             increment();
@@ -79,9 +81,10 @@ public class Runner {
     public void secondProcess() throws InterruptedException {
         Thread.sleep(1000);
         lock.lock();
-        System.out.println("Press the return key");
+        AsyncLog.println("Press the return key");
+        AsyncLog.flush();   // makes sure the prompt is on the console before waiting for input
         new Scanner(System.in).nextLine();
-        System.out.println("Got return key!");
+        AsyncLog.println("Got return key!");
 
         condition.signal();
 
@@ -93,7 +96,7 @@ public class Runner {
     }
 
     public void finishedNotification() {
-        System.out.println("Counter has count: " + counter + " times.");
+        AsyncLog.println("Counter has count: " + counter + " times.");
     }
 
 
@@ -1,5 +1,7 @@
 package examples.semaphore;
 
+import examples.logging.AsyncLog;
+
 import java.util.concurrent.Semaphore;
 
 /**
@@ -54,7 +56,7 @@ public class Connection {
 
         synchronized (this) {
             nConnections++;
-            System.out.println("Current connections: " + nConnections);
+            AsyncLog.println("Current connections: ", nConnections);
         }
 
         // Simulate some work in the middle of the task
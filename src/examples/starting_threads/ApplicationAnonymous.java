@@ -1,4 +1,7 @@
 package examples.starting_threads;
+
+import examples.logging.AsyncLog;
+
 /**
  * A third way to implement a {@code Thread} is by using an
  * anonymous class when instantiating the {@code Thread} class.
@@ -19,7 +22,7 @@ public class ApplicationAnonymous {
             @Override
             public void run() {
                 for (int i = 0; i < 5; i++) {
-                    System.out.println("Hello " + i + " Thread: " + Thread.currentThread().getName());
+                    AsyncLog.println("Hello " + i + " Thread: " + Thread.currentThread().getName());
 
                     try {
                         Thread.sleep(500);
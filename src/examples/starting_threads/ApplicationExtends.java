@@ -1,5 +1,7 @@
 package examples.starting_threads;
 
+import examples.logging.AsyncLog;
+
 /**
  * Example class that shows how to implement a Thread using
  * inheritance through {@code Thread} class and overriding
@@ -19,7 +21,7 @@ class Runner extends Thread {
     @Override
     public void run() {
         for (int i = 0; i < 5; i++) {
-            System.out.println("Hello " + i + "Thread: " + Thread.currentThread().getName());
+            AsyncLog.println("Hello " + i + "Thread: " + Thread.currentThread().getName());
             try {
                 Thread.sleep(100);  // pauses the current execution of the Thread.
             } catch (InterruptedException e) {
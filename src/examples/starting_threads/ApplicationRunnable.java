@@ -1,5 +1,7 @@
 package examples.starting_threads;
 
+import examples.logging.AsyncLog;
+
 /**
  * Example class that shows how to implement a Thread using the
  * interface {@code Thread}  and implementing method {@code run()}.
@@ -18,7 +20,7 @@ class RunnerRunnable implements Runnable {
     @Override
     public void run() {
         for (int i = 0; i < 5; i++) {
-            System.out.println("Hello " + i + " Thread: " + Thread.currentThread().getName());
+            AsyncLog.println("Hello " + i + " Thread: " + Thread.currentThread().getName());
 
             try {
                 Thread.sleep(100);  // simulates the thread doing some work
@@ -1,5 +1,7 @@
 package examples.swing;
 
+import examples.logging.AsyncLog;
+
 import javax.swing.*;
 import java.awt.*;
 import java.awt.event.ActionEvent;
@@ -111,7 +113,7 @@ public class MainFrame extends JFrame {
                 // Note: the UI should not be updated inside this thread!
                 for (int i = 0; i < 30; i++) {
                     Thread.sleep(100);
-                    System.out.println("Cycle: " + i);  // simulates some work
+                    AsyncLog.println("Cycle: " + i);  // simulates some work
                     publish(i); // This method sends the data to be process by the process() method.
                 }
                 return true;
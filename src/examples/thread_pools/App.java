@@ -1,40 +1,8 @@
 package examples.thread_pools;
 
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
-import java.util.concurrent.TimeUnit;
-
-/**
- * Represents a process that runs as a thread.
- */
-class Processor implements Runnable{
-
-    /**
-     * Adding an {@code id} field is not necessary but can be useful when:
-     * <ul>
-     *     <li>You need to track specific tasks in logs or debugging.</li>
-     *     <li>You want to monitor execution order or performance of different tasks.</li>
-     *     <li>You are identifying failed tasks in a large-scale system.</li>
-     * </ul>
-     */
-    private int id;
-
-    public Processor(int id) {
-        this.id = id;
-    }
+import examples.logging.AsyncLog;
 
-    @Override
-    public void run() {
-        System.out.println("Starting: " + id);
-
-        try {
-            System.out.println("Task " + id + " is running on " + Thread.currentThread().getName());
-            Thread.sleep(5000);
-        } catch (InterruptedException ignored) {
-        }
-        System.out.println("Complete: " + id);
-    }
-}
+import java.util.concurrent.TimeUnit;
 
 /**
  * A Thread pool example implementation.
@@ -45,12 +13,18 @@ class Processor implements Runnable{
  * An advantage of thread pools is that avoids the overhead of
  * starting new threads for each task by recycling the threads
  * in the pool.
+ * <p>
+ * Run it with {@code elastic} as argument to let an {@link ElasticThreadPoolExecutor}
+ * choose the number of threads, between 1 and 5.
  */
 public class App {
 
     public static void main(String[] args) {
         // Create a pool with the assigned number of threads.
-        ExecutorService executor = Executors.newFixedThreadPool(2);
+        // It works like Executors.newFixedThreadPool(2), and also measures every task.
+        InstrumentedThreadPoolExecutor executor = args.length > 0 && args[0].equals("elastic")
+                ? new ElasticThreadPoolExecutor(1, 5)
+                : new InstrumentedThreadPoolExecutor(2);
         for (int i = 0; i < 5; i++) {
             executor.submit(new Processor(i));  // The passed instance should implement the Runnable interface
             // This method assigns a task to an available thread in the pool.
@@ -59,7 +33,7 @@ public class App {
         }
         executor.shutdown();    // Tells the executor to stop accepting new tasks
 
-        System.out.println("All tasks submitted.");
+        AsyncLog.println("All tasks submitted.");
 
         try {
             executor.awaitTermination(1, TimeUnit.DAYS);
@@ -68,6 +42,9 @@ public class App {
         } catch (InterruptedException ignored) {
         }
 
-        System.out.println("All task completed.");
+        AsyncLog.println("All task completed.");
+        AsyncLog.println(executor.report());
+        for (InstrumentedThreadPoolExecutor.TaskTiming timing : executor.getRecentTasks())
+            AsyncLog.println(timing.toString());
     }
 }
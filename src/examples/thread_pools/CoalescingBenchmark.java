@@ -0,0 +1,103 @@
+package examples.thread_pools;
+
+import examples.metrics.LatencyHistogram;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Runs tasks that sum the numbers below 100, the work of {@code MyCallable} in
+ * {@code callable_and_future.App3} without the printing, on {@value #THREADS} threads:
+ * <ul>
+ *     <li>{@code Executors.newFixedThreadPool()}, one task per queue operation,</li>
+ *     <li>a {@link CoalescingExecutor}, which hands its threads batches of tasks,</li>
+ *     <li>the same, with the producer also queueing {@value #SUBMIT_BATCH} tasks at a time
+ *     through {@link CoalescingExecutor#executeAll(Runnable[], int, int)}.</li>
+ * </ul>
+ * Each pool gets two loads: as many tasks as the producer can submit, to compare
+ * throughput, and 20,000 tasks per second, to check that the coalescing pool does not
+ * delay tasks when there are few of them. Every task records the time from its submission
+ * to its end.
+ */
+public class CoalescingBenchmark {
+
+    private static final int THREADS = 4;
+    private static final int TASKS = 1_000_000;
+    private static final int LIGHT_TASKS = 40_000;
+    private static final int LIGHT_RATE = 20_000;   // tasks per second
+    private static final int SUBMIT_BATCH = 64;
+
+    private static final AtomicLong done = new AtomicLong();
+    private static volatile long sink;
+
+    public static void main(String[] args) throws InterruptedException {
+        for (int round = 0; round < 2; round++) {
+            boolean print = round == 1;
+            if (print) System.out.printf("%d threads%n", THREADS);
+            for (boolean light : new boolean[]{false, true}) {
+                ExecutorService fixed = Executors.newFixedThreadPool(THREADS);
+                run(print, light, "fixed pool", fixed, 1);
+                fixed.shutdown();
+                fixed.awaitTermination(1, TimeUnit.MINUTES);
+
+                for (int submitBatch : light ? new int[]{1} : new int[]{1, SUBMIT_BATCH}) {
+                    CoalescingExecutor coalescing = new CoalescingExecutor(THREADS);
+                    run(print, light, submitBatch == 1 ? "coalescing" : "coalescing + executeAll", coalescing, submitBatch);
+                    coalescing.shutdown();
+                    coalescing.awaitTermination(1, TimeUnit.MINUTES);
+                    if (print)
+                        System.out.printf("%53s mean batch %.1f tasks%n", "", coalescing.getMeanBatchSize());
+                }
+            }
+        }
+    }
+
+    private static void run(boolean print, boolean light, String name, Executor executor, int submitBatch) {
+        final LatencyHistogram latency = new LatencyHistogram();
+        int tasks = light ? LIGHT_TASKS : TASKS;
+        Runnable[] pending = new Runnable[submitBatch];
+        int pendingCount = 0;
+        done.set(0);
+
+        long start = System.nanoTime();
+        for (int i = 0; i < tasks; i++) {
+            if (light) {
+                long due = start + i * (1_000_000_000L / LIGHT_RATE);
+                while (System.nanoTime() < due)
+                    Thread.yield();
+            }
+            final long submittedAt = System.nanoTime();
+            Runnable task = new Runnable() {
+                @Override
+                public void run() {
+                    int sum = 0;
+                    for (int n = 0; n < 100; n++)
+                        sum += n;
+                    sink += sum;
+                    latency.record(System.nanoTime() - submittedAt);
+                    done.incrementAndGet();
+                }
+            };
+            if (submitBatch == 1) {
+                executor.execute(task);
+                continue;
+            }
+            pending[pendingCount++] = task;
+            if (pendingCount == submitBatch || i == tasks - 1) {
+                ((CoalescingExecutor) executor).executeAll(pending, 0, pendingCount);
+                pendingCount = 0;
+            }
+        }
+        while (done.get() < tasks)
+            Thread.yield();
+        long elapsed = System.nanoTime() - start;
+
+        if (print)
+            System.out.printf("  %-6s %-24s %,11.0f tasks/s   latency p50 %,8.1f us  p99 %,9.1f us%n",
+                    light ? "light" : "full", name, tasks / (elapsed / 1e9),
+                    latency.getPercentile(50) / 1e3, latency.getPercentile(99) / 1e3);
+    }
+}
@@ -0,0 +1,222 @@
+package examples.thread_pools;
+
+import examples.producer_consumer.pattern.BatchingQueue;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A thread pool for tasks that take only microseconds, which hands its threads whole
+ * batches of tasks instead of one task at a time.
+ * <p>
+ * When a task is as small as the sum in {@code callable_and_future.App3}, a pool thread
+ * spends more time taking it from the queue, and being woken up to do so, than running
+ * it. Here each pool thread drains up to a batch of tasks from a {@link BatchingQueue}
+ * with a single lock acquisition, then runs them in a loop. When fewer tasks than a batch
+ * are waiting, it can <em>linger</em> a little to let more arrive.
+ * <p>
+ * The best batch size and linger depend on the load, so every pool thread adjusts its
+ * own after each batch:
+ * <ul>
+ *     <li><b>Batch size:</b> a full batch means more tasks are waiting, so the next batch
+ *     may be twice as big, up to the maximum. A batch less than a quarter full halves it.</li>
+ *     <li><b>Linger:</b> the time it should take, at the measured arrival rate, for a batch
+ *     to fill up, never more than the maximum. If not even two tasks arrive during the
+ *     maximum linger, waiting only delays them, so the linger drops to zero.</li>
+ * </ul>
+ * Under load the batches grow and the linger shrinks. When tasks are rare, they run
+ * one by one as soon as they arrive.
+ */
+public class CoalescingExecutor implements Executor {
+
+    private static final Runnable STOP = new Runnable() {
+        @Override
+        public void run() {
+        }
+    };
+
+    private final BatchingQueue<Runnable> queue;
+    private final Thread[] threads;
+    private final int maxBatch;
+    private final long maxLingerNanos;
+    private volatile boolean shutdown;
+    // Callers between their shutdown check and the end of their put(). shutdown() waits for
+    // them before queueing the STOP markers, so that no task lands behind the markers.
+    private final AtomicInteger submitting = new AtomicInteger();
+
+    private final AtomicLong batches = new AtomicLong();
+    private final AtomicLong tasks = new AtomicLong();
+
+    /**
+     * Creates a pool with batches of up to 256 tasks and a linger of up to 100 microseconds.
+     */
+    public CoalescingExecutor(int threads) {
+        this(threads, 256, 100, TimeUnit.MICROSECONDS, 65_536);
+    }
+
+    /**
+     * @param threads   number of threads in the pool
+     * @param maxBatch  most tasks a thread takes at once
+     * @param maxLinger longest a thread waits for a batch to fill up
+     * @param unit      the unit of {@code maxLinger}
+     * @param capacity  number of tasks that can wait before {@code execute()} waits
+     */
+    public CoalescingExecutor(int threads, int maxBatch, long maxLinger, TimeUnit unit, int capacity) {
+        this.queue = new BatchingQueue<Runnable>(capacity);
+        this.maxBatch = maxBatch;
+        this.maxLingerNanos = unit.toNanos(maxLinger);
+        this.threads = new Thread[threads];
+        for (int i = 0; i < threads; i++) {
+            this.threads[i] = new Thread(new Worker(), "coalescing-pool-" + i);
+            this.threads[i].start();
+        }
+    }
+
+    /**
+     * Queues a task, waiting for space if the queue is full.
+     */
+    @Override
+    public void execute(Runnable task) {
+        if (task == null) throw new NullPointerException();
+        beginSubmit();
+        try {
+            queue.put(task);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RejectedExecutionException(e);
+        } finally {
+            submitting.decrementAndGet();
+        }
+    }
+
+    /**
+     * Queues {@code length} tasks from {@code batch}, starting at {@code offset}, with as few
+     * lock acquisitions as the free space allows.
+     */
+    public void executeAll(Runnable[] batch, int offset, int length) {
+        beginSubmit();
+        try {
+            queue.putAll(batch, offset, length);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RejectedExecutionException(e);
+        } finally {
+            submitting.decrementAndGet();
+        }
+    }
+
+    // Counts the caller in before checking shutdown: if the check passes, shutdown() has not
+    // queued its markers yet and waits for this caller's put() to end
+    private void beginSubmit() {
+        submitting.incrementAndGet();
+        if (shutdown) {
+            submitting.decrementAndGet();
+            throw new RejectedExecutionException("Executor is shut down");
+        }
+    }
+
+    /**
+     * Stops accepting tasks. The tasks already queued still run, and so do the tasks of
+     * {@code execute()} calls already past their check; this method waits until they are
+     * queued.
+     */
+    public void shutdown() {
+        shutdown = true;
+        // The pool threads keep draining, so a put() waiting for space does end
+        while (submitting.get() > 0)
+            Thread.yield();
+        try {
+            // Queued after every task: a thread that takes one exits once its batch is done
+            for (int i = 0; i < threads.length; i++)
+                queue.put(STOP);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+        long end = System.nanoTime() + unit.toNanos(timeout);
+        for (Thread thread : threads) {
+            long left = end - System.nanoTime();
+            if (left <= 0) return false;
+            TimeUnit.NANOSECONDS.timedJoin(thread, left);
+            if (thread.isAlive()) return false;
+        }
+        return true;
+    }
+
+    public long getCompletedTaskCount() {
+        return tasks.get();
+    }
+
+    /**
+     * @return the number of batches taken by the pool threads
+     */
+    public long getBatchCount() {
+        return batches.get();
+    }
+
+    public double getMeanBatchSize() {
+        long count = batches.get();
+        return count == 0 ? 0 : (double) tasks.get() / count;
+    }
+
+    private final class Worker implements Runnable {
+        private final Runnable[] batch = new Runnable[maxBatch];
+        private int batchLimit = 1;
+        private long lingerNanos;
+        private double arrivalsPerNano;     // moving average
+        private long lastDrain = System.nanoTime();
+
+        @Override
+        public void run() {
+            try {
+                while (true) {
+                    int drained = queue.drainTo(batch, batchLimit, lingerNanos, TimeUnit.NANOSECONDS);
+                    int stops = 0;
+                    int ran = 0;
+                    for (int i = 0; i < drained; i++) {
+                        Runnable task = batch[i];
+                        batch[i] = null;
+                        if (task == STOP) {
+                            stops++;
+                            continue;
+                        }
+                        try {
+                            task.run();
+                        } catch (RuntimeException e) {
+                            e.printStackTrace();
+                        }
+                        ran++;
+                    }
+                    tasks.addAndGet(ran);
+                    batches.incrementAndGet();
+                    if (stops > 0) {
+                        // This thread only needed one, give the others back
+                        for (int i = 1; i < stops; i++)
+                            queue.put(STOP);
+                        return;
+                    }
+                    adapt(drained);
+                }
+            } catch (InterruptedException ignored) {
+            }
+        }
+
+        private void adapt(int drained) {
+            long now = System.nanoTime();
+            double rate = (double) drained / Math.max(1, now - lastDrain);
+            arrivalsPerNano = arrivalsPerNano == 0 ? rate : 0.8 * arrivalsPerNano + 0.2 * rate;
+            lastDrain = now;
+
+            if (drained == batchLimit) batchLimit = Math.min(maxBatch, batchLimit * 2);
+            else if (drained < batchLimit / 4) batchLimit = Math.max(1, batchLimit / 2);
+
+            if (arrivalsPerNano * maxLingerNanos < 2) lingerNanos = 0;
+            else lingerNanos = Math.min(maxLingerNanos, (long) (batchLimit / arrivalsPerNano));
+        }
+    }
+}
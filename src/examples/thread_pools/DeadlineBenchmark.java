@@ -0,0 +1,127 @@
+package examples.thread_pools;
+
+import examples.metrics.LatencyHistogram;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Overloads a pool of 4 threads with {@link Processor} tasks that sleep 10 milliseconds:
+ * the pool can run 400 of them per second and gets 500. One task in five has
+ * {@link DeadlineExecutor.Priority#HIGH} priority, the others
+ * {@link DeadlineExecutor.Priority#NORMAL}. The same load goes to:
+ * <ul>
+ *     <li>{@code Executors.newFixedThreadPool(4)}, which serves the tasks in order of arrival,</li>
+ *     <li>a {@link DeadlineExecutor} that runs late tasks anyway,</li>
+ *     <li>a {@link DeadlineExecutor} that sheds late tasks.</li>
+ * </ul>
+ * For each priority it prints how many tasks met their deadline, and the response time
+ * percentiles of the tasks that ran.
+ */
+public class DeadlineBenchmark {
+
+    private static final int THREADS = 4;
+    private static final int TASK_MILLIS = 10;
+    private static final int TASKS_PER_SECOND = 500;
+    private static final long RUN_MILLIS = 3000;
+
+    public static void main(String[] args) throws InterruptedException {
+        System.out.printf("%d threads, %d ms tasks, %d tasks/s for %d ms (capacity %d tasks/s)%n%n",
+                THREADS, TASK_MILLIS, TASKS_PER_SECOND, RUN_MILLIS, THREADS * 1000 / TASK_MILLIS);
+
+        final ExecutorService fifo = Executors.newFixedThreadPool(THREADS);
+        run("FIFO", new Scheduler() {
+            @Override
+            public void submit(Runnable task, DeadlineExecutor.Priority priority) {
+                fifo.execute(task);
+            }
+
+            @Override
+            public void finish() throws InterruptedException {
+                fifo.shutdown();
+                fifo.awaitTermination(1, TimeUnit.MINUTES);
+            }
+        });
+
+        run("EDF", edf(new DeadlineExecutor(THREADS, false)));
+        run("EDF, shedding late", edf(new DeadlineExecutor(THREADS, true)));
+    }
+
+    private interface Scheduler {
+        void submit(Runnable task, DeadlineExecutor.Priority priority);
+
+        void finish() throws InterruptedException;
+    }
+
+    private static Scheduler edf(final DeadlineExecutor executor) {
+        return new Scheduler() {
+            @Override
+            public void submit(Runnable task, DeadlineExecutor.Priority priority) {
+                executor.submit(task, priority);
+            }
+
+            @Override
+            public void finish() throws InterruptedException {
+                executor.shutdown();
+                executor.awaitTermination(1, TimeUnit.MINUTES);
+            }
+        };
+    }
+
+    /** What happened to the tasks of one priority. */
+    private static final class Outcome {
+        final LatencyHistogram responseTime = new LatencyHistogram();
+        final LongAdder ran = new LongAdder();
+        final LongAdder met = new LongAdder();
+        int submitted;
+    }
+
+    private static void run(String name, Scheduler scheduler) throws InterruptedException {
+        DeadlineExecutor.Priority[] priorities = {DeadlineExecutor.Priority.HIGH, DeadlineExecutor.Priority.NORMAL};
+        Outcome[] outcomes = {new Outcome(), new Outcome()};
+
+        long start = System.nanoTime();
+        int submitted = 0;
+        long elapsed;
+        while ((elapsed = System.nanoTime() - start) < TimeUnit.MILLISECONDS.toNanos(RUN_MILLIS)) {
+            long due = elapsed * TASKS_PER_SECOND / 1_000_000_000L;
+            while (submitted < due) {
+                int kind = submitted % 5 == 0 ? 0 : 1;
+                outcomes[kind].submitted++;
+                scheduler.submit(measured(new Processor(submitted, TASK_MILLIS, false), priorities[kind], outcomes[kind]),
+                        priorities[kind]);
+                submitted++;
+            }
+            Thread.sleep(1);
+        }
+        scheduler.finish();
+
+        System.out.println(name);
+        for (int i = 0; i < priorities.length; i++) {
+            Outcome outcome = outcomes[i];
+            LatencyHistogram latency = outcome.responseTime;
+            System.out.printf("  %-6s %,5d tasks  in time %5.1f%%  shed %,5d   p50 %,8.1f ms  p99 %,8.1f ms  p99.9 %,8.1f ms%n",
+                    priorities[i], outcome.submitted, 100.0 * outcome.met.sum() / outcome.submitted,
+                    outcome.submitted - outcome.ran.sum(),
+                    latency.getPercentile(50) / 1e6, latency.getPercentile(99) / 1e6, latency.getPercentile(99.9) / 1e6);
+        }
+    }
+
+    // Wraps a task so that it measures its own response time, whatever the executor
+    private static Runnable measured(final Runnable task, final DeadlineExecutor.Priority priority,
+                                     final Outcome outcome) {
+        final long submittedAt = System.nanoTime();
+        return new Runnable() {
+            @Override
+            public void run() {
+                task.run();
+                long responseTime = System.nanoTime() - submittedAt;
+                outcome.responseTime.record(responseTime);
+                outcome.ran.increment();
+                if (responseTime <= priority.getDeadline(TimeUnit.NANOSECONDS)) outcome.met.increment();
+            }
+        };
+    }
+}
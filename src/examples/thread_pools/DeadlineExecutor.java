@@ -0,0 +1,223 @@
+package examples.thread_pools;
+
+import examples.metrics.LatencyHistogram;
+
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A thread pool that runs the task with the earliest deadline first, instead of the
+ * oldest one like {@code Executors.newFixedThreadPool()}.
+ * <p>
+ * Every task gets a deadline when it is submitted, either an absolute one or one
+ * derived from a {@link Priority}. When the pool cannot keep up, a FIFO pool makes every
+ * task wait behind all the older ones, so urgent tasks miss their deadline as soon as
+ * the queue is long. Here an urgent task goes straight to the front.
+ * <p>
+ * When a thread picks a task whose deadline has already passed, running it would only
+ * make the tasks behind it late too, so it is dropped (<em>shed</em>) and counted,
+ * unless shedding is turned off. Tasks that started in time but finished after their
+ * deadline are counted as <em>missed</em>.
+ * <p>
+ * The waiting tasks are kept in a {@link ConcurrentSkipListSet}, ordered by deadline. It
+ * is lock-free, so submitting threads and pool threads do not queue up behind one lock as
+ * they would around a {@code PriorityQueue}. A {@link Semaphore} counts the waiting tasks
+ * so that idle pool threads can sleep.
+ */
+public class DeadlineExecutor implements Executor {
+
+    /**
+     * A priority is a deadline relative to the submission time.
+     */
+    public enum Priority {
+        HIGH(50), NORMAL(500), LOW(5000);
+
+        private final long deadlineNanos;
+
+        Priority(long deadlineMillis) {
+            this.deadlineNanos = TimeUnit.MILLISECONDS.toNanos(deadlineMillis);
+        }
+
+        public long getDeadline(TimeUnit unit) {
+            return unit.convert(deadlineNanos, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    /** A waiting task, ordered by deadline and then by submission order. */
+    private static final class ScheduledTask implements Comparable<ScheduledTask> {
+        final Runnable task;
+        final long submittedAt;
+        final long deadline;
+        final long sequence;
+
+        ScheduledTask(Runnable task, long submittedAt, long deadline, long sequence) {
+            this.task = task;
+            this.submittedAt = submittedAt;
+            this.deadline = deadline;
+            this.sequence = sequence;
+        }
+
+        @Override
+        public int compareTo(ScheduledTask other) {
+            // Deadlines are System.nanoTime() values, compare their difference in case it overflows
+            long diff = deadline - other.deadline;
+            if (diff != 0) return diff < 0 ? -1 : 1;
+            return Long.compare(sequence, other.sequence);
+        }
+    }
+
+    private final ConcurrentSkipListSet<ScheduledTask> queue = new ConcurrentSkipListSet<ScheduledTask>();
+    private final Semaphore waiting = new Semaphore(0);
+    private final AtomicLong sequence = new AtomicLong();
+    private final Thread[] threads;
+    private final boolean shedLateTasks;
+    private volatile boolean shutdown;
+
+    private final LatencyHistogram responseTime = new LatencyHistogram();
+    private final LongAdder completed = new LongAdder();
+    private final LongAdder missed = new LongAdder();
+    private final LongAdder shed = new LongAdder();
+
+    /**
+     * Creates a pool that sheds late tasks.
+     */
+    public DeadlineExecutor(int threads) {
+        this(threads, true);
+    }
+
+    /**
+     * @param threads       number of threads in the pool
+     * @param shedLateTasks {@code false} to run tasks even when their deadline has passed
+     */
+    public DeadlineExecutor(int threads, boolean shedLateTasks) {
+        this.shedLateTasks = shedLateTasks;
+        this.threads = new Thread[threads];
+        for (int i = 0; i < threads; i++) {
+            this.threads[i] = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    work();
+                }
+            }, "deadline-pool-" + i);
+            this.threads[i].start();
+        }
+    }
+
+    /**
+     * Runs the task with {@link Priority#NORMAL}.
+     */
+    @Override
+    public void execute(Runnable task) {
+        submit(task, Priority.NORMAL);
+    }
+
+    public void submit(Runnable task, Priority priority) {
+        long now = System.nanoTime();
+        schedule(task, now, now + priority.deadlineNanos);
+    }
+
+    /**
+     * @param deadline the {@code System.nanoTime()} value by which the task should be done
+     */
+    public void submit(Runnable task, long deadline) {
+        schedule(task, System.nanoTime(), deadline);
+    }
+
+    private void schedule(Runnable task, long now, long deadline) {
+        if (task == null) throw new NullPointerException();
+        if (shutdown) throw new RejectedExecutionException("Executor is shut down");
+        ScheduledTask scheduled = new ScheduledTask(task, now, deadline, sequence.getAndIncrement());
+        queue.add(scheduled);
+        // shutdown() may have run since the check above, and the threads may be gone already.
+        // If the task is still waiting it is taken back; otherwise a thread took it and runs it.
+        if (shutdown && queue.remove(scheduled))
+            throw new RejectedExecutionException("Executor is shut down");
+        waiting.release();
+    }
+
+    private void work() {
+        while (true) {
+            waiting.acquireUninterruptibly();
+            ScheduledTask next = queue.pollFirst();
+            if (next == null) return;   // one of the permits released by shutdown()
+
+            long start = System.nanoTime();
+            if (shedLateTasks && start - next.deadline > 0) {
+                shed.increment();
+                continue;
+            }
+            try {
+                next.task.run();
+            } catch (RuntimeException e) {
+                e.printStackTrace();
+            }
+            long end = System.nanoTime();
+            responseTime.record(end - next.submittedAt);
+            completed.increment();
+            if (end - next.deadline > 0) missed.increment();
+        }
+    }
+
+    /**
+     * Stops accepting tasks. The tasks already submitted still run, or are shed.
+     */
+    public void shutdown() {
+        shutdown = true;
+        // One extra permit per thread: a thread that finds the queue empty exits
+        waiting.release(threads.length);
+    }
+
+    public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+        long end = System.nanoTime() + unit.toNanos(timeout);
+        for (Thread thread : threads) {
+            long left = end - System.nanoTime();
+            if (left <= 0) return false;
+            TimeUnit.NANOSECONDS.timedJoin(thread, left);
+            if (thread.isAlive()) return false;
+        }
+        return true;
+    }
+
+    /**
+     * @return time from submission until the end of the task, for the tasks that ran
+     */
+    public LatencyHistogram getResponseTime() {
+        return responseTime;
+    }
+
+    public long getCompleted() {
+        return completed.sum();
+    }
+
+    /**
+     * @return number of tasks that ran but finished after their deadline
+     */
+    public long getMissed() {
+        return missed.sum();
+    }
+
+    /**
+     * @return number of tasks dropped because their deadline had passed before they started
+     */
+    public long getShed() {
+        return shed.sum();
+    }
+
+    public int getQueueDepth() {
+        return queue.size();
+    }
+
+    /**
+     * @return a multi-line summary of the measurements
+     */
+    public String report() {
+        return "Response time: " + responseTime + "\n"
+                + String.format("Completed: %,d (missed deadline: %,d); shed: %,d; waiting: %,d",
+                getCompleted(), getMissed(), getShed(), getQueueDepth());
+    }
+}
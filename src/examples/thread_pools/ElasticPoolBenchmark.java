@@ -0,0 +1,93 @@
+package examples.thread_pools;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Shows how an {@link ElasticThreadPoolExecutor} of 1 to 64 threads sizes itself for two
+ * kinds of tasks, submitted at a steady rate:
+ * <ul>
+ *     <li><b>Sleeping:</b> {@link Processor} tasks that sleep 20 milliseconds, 400 of them per
+ *     second. About 8 threads are needed, and the CPU is almost unused.</li>
+ *     <li><b>CPU-bound:</b> tasks that compute for about 2 milliseconds, submitted faster
+ *     than the cores can run them. More threads than cores only add switching.</li>
+ * </ul>
+ * Every interval of the controller is printed, so the way the size converges can be
+ * followed.
+ */
+public class ElasticPoolBenchmark {
+
+    private static final long RUN_MILLIS = 8000;
+
+    private static volatile long sink;
+
+    public static void main(String[] args) throws InterruptedException {
+        int cores = Runtime.getRuntime().availableProcessors();
+
+        System.out.printf("Sleeping tasks, 20 ms each, 400/s (%d cores)%n", cores);
+        run(400, new TaskFactory() {
+            @Override
+            public Runnable create(int id) {
+                return new Processor(id, 20, false);
+            }
+        });
+
+        final long work = calibrate(2);
+        System.out.printf("%nCPU-bound tasks, 2 ms each, %d/s (%d cores)%n", 1000 * cores, cores);
+        run(1000 * cores, new TaskFactory() {
+            @Override
+            public Runnable create(int id) {
+                return new Runnable() {
+                    @Override
+                    public void run() {
+                        sink += compute(work);
+                    }
+                };
+            }
+        });
+    }
+
+    private interface TaskFactory {
+        Runnable create(int id);
+    }
+
+    private static void run(int tasksPerSecond, TaskFactory factory) throws InterruptedException {
+        ElasticThreadPoolExecutor executor = new ElasticThreadPoolExecutor(1, 64);
+
+        long start = System.nanoTime();
+        int submitted = 0;
+        long elapsed;
+        while ((elapsed = System.nanoTime() - start) < TimeUnit.MILLISECONDS.toNanos(RUN_MILLIS)) {
+            long due = elapsed * tasksPerSecond / 1_000_000_000L;
+            while (submitted < due)
+                executor.execute(factory.create(submitted++));
+            Thread.sleep(1);
+        }
+        ElasticThreadPoolExecutor.Sample[] history = executor.getHistory();
+        executor.shutdownNow();
+        executor.awaitTermination(1, TimeUnit.MINUTES);
+
+        for (ElasticThreadPoolExecutor.Sample sample : history)
+            System.out.println("  " + sample);
+        System.out.printf("  %,d adjustments; service time %s%n", executor.getAdjustments(), executor.getServiceTime());
+    }
+
+    // Number of compute() rounds that take about the given time
+    private static long calibrate(long millis) {
+        long rounds = 1000;
+        while (true) {
+            long start = System.nanoTime();
+            sink += compute(rounds);
+            long elapsed = System.nanoTime() - start;
+            if (elapsed > TimeUnit.MILLISECONDS.toNanos(50))
+                return rounds * TimeUnit.MILLISECONDS.toNanos(millis) / elapsed;
+            rounds *= 2;
+        }
+    }
+
+    private static long compute(long rounds) {
+        long x = 17;
+        for (long i = 0; i < rounds; i++)
+            x = x * 6364136223846793005L + 1442695040888963407L;
+        return x;
+    }
+}
@@ -0,0 +1,292 @@
+package examples.thread_pools;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.OperatingSystemMXBean;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * A thread pool that chooses its own size, between a minimum and a maximum, by watching
+ * what happens when it changes it.
+ * <p>
+ * A fixed pool has to be sized by hand: 2 threads in {@link App}, 3 in the count down
+ * latch example, one per task in the semaphore example. The best size depends on the
+ * tasks: tasks that sleep or wait on I/O keep improving with more threads, while tasks
+ * that use the CPU stop improving once every core is busy and only add switching after
+ * that. This pool finds the size by <em>hill climbing</em>. A controller thread wakes
+ * up every interval, measures the interval, and decides on the next size:
+ * <ol>
+ *     <li>If the previous change raised throughput by more than the hysteresis, it takes
+ *     another step in the same direction, twice as big. Growing only goes on while tasks
+ *     are still waiting in the queue.</li>
+ *     <li>If it lowered throughput by more than the hysteresis, it steps back.</li>
+ *     <li>If throughput barely moved after growing, the extra threads were of no use and
+ *     it steps back as well. Each time this happens it waits twice as many intervals
+ *     before trying again, up to {@value #MAX_PROBE_DELAY}.</li>
+ *     <li>Otherwise, when tasks wait in the queue and the CPU is not saturated, it tries
+ *     one more thread. When the queue is empty and the threads are mostly idle, it
+ *     removes half of the threads that the measured load does not need.</li>
+ * </ol>
+ * Changes smaller than the hysteresis are treated as noise, which keeps the size from
+ * moving back and forth on every interval. The CPU check keeps the controller from
+ * adding threads to a pool of CPU-bound tasks that has already used up every core.
+ * <p>
+ * The last {@value #HISTORY} intervals are kept as {@link Sample}s, to see how the pool
+ * got to its size.
+ */
+public class ElasticThreadPoolExecutor extends InstrumentedThreadPoolExecutor {
+
+    /** Number of intervals kept in the history, the oldest ones are overwritten. */
+    public static final int HISTORY = 256;
+
+    /** Longest wait, in intervals, before trying to grow again after a useless growth. */
+    public static final int MAX_PROBE_DELAY = 16;
+
+    private static final double CPU_CEILING = 0.9;
+    private static final double IDLE_UTILIZATION = 0.5;
+    private static final double TARGET_UTILIZATION = 0.75;
+
+    private final int minThreads;
+    private final int maxThreads;
+    private final long intervalMillis;
+    private final double hysteresis;
+    private final Thread controller;
+
+    // Written by the controller thread only
+    private int lastStep;
+    private double lastThroughput;
+    private int probeDelay = 1;
+    private int intervalsSinceUndo;
+    private volatile long capacityNanos;
+    private volatile int adjustments;
+
+    private long sampleCount;
+    private final AtomicReferenceArray<Sample> history = new AtomicReferenceArray<Sample>(HISTORY);
+    private volatile long historySize;
+
+    /**
+     * What the controller measured over one interval and what it did about it.
+     */
+    public static final class Sample {
+        public final long time;             // System.nanoTime() at the end of the interval
+        public final int threads;           // pool size during the interval
+        public final double throughput;     // completed tasks per second
+        public final double meanQueueWait;  // in milliseconds
+        public final double utilization;    // fraction of the threads' time spent running tasks
+        public final double cpuLoad;        // fraction of all cores used by the process, -1 if unknown
+        public final int queueDepth;
+        public final int nextThreads;
+        public final String reason;
+
+        Sample(long time, int threads, double throughput, double meanQueueWait, double utilization,
+               double cpuLoad, int queueDepth, int nextThreads, String reason) {
+            this.time = time;
+            this.threads = threads;
+            this.throughput = throughput;
+            this.meanQueueWait = meanQueueWait;
+            this.utilization = utilization;
+            this.cpuLoad = cpuLoad;
+            this.queueDepth = queueDepth;
+            this.nextThreads = nextThreads;
+            this.reason = reason;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%3d threads  %,9.1f tasks/s  queue %,6d (wait %,8.1f ms)  busy %3.0f%%  cpu %s  -> %3d  %s",
+                    threads, throughput, queueDepth, meanQueueWait, utilization * 100,
+                    cpuLoad < 0 ? "n/a " : String.format("%3.0f%%", cpuLoad * 100), nextThreads, reason);
+        }
+    }
+
+    /**
+     * Creates a pool that adjusts its size every 500 milliseconds, ignoring throughput
+     * changes below 10%.
+     */
+    public ElasticThreadPoolExecutor(int minThreads, int maxThreads) {
+        this(minThreads, maxThreads, 500, 0.10);
+    }
+
+    /**
+     * @param minThreads     smallest pool size, also the initial one
+     * @param maxThreads     largest pool size
+     * @param intervalMillis time between two adjustments
+     * @param hysteresis     relative throughput change below which a change is seen as noise
+     */
+    public ElasticThreadPoolExecutor(int minThreads, int maxThreads, long intervalMillis, double hysteresis) {
+        super(minThreads, maxThreads);
+        if (minThreads < 1 || maxThreads < minThreads)
+            throw new IllegalArgumentException("Invalid bounds: " + minThreads + ", " + maxThreads);
+        this.minThreads = minThreads;
+        this.maxThreads = maxThreads;
+        this.intervalMillis = intervalMillis;
+        this.hysteresis = hysteresis;
+
+        controller = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                control();
+            }
+        }, "elastic-pool-controller");
+        controller.setDaemon(true);
+        controller.start();
+    }
+
+    private void control() {
+        long lastTime = System.nanoTime();
+        long lastCompleted = 0;
+        long lastBusy = 0;
+        long lastQueueWait = 0;
+        long lastCpu = processCpuTime();
+        int cores = Runtime.getRuntime().availableProcessors();
+
+        try {
+            while (!isTerminated()) {
+                Thread.sleep(intervalMillis);
+
+                long now = System.nanoTime();
+                long completed = getCompletedTaskCount();
+                long busy = getBusyNanos();
+                long queueWait = getQueueWaitNanos();
+                long cpu = processCpuTime();
+                int threads = getCorePoolSize();
+
+                long elapsed = now - lastTime;
+                long tasks = completed - lastCompleted;
+                double throughput = tasks / (elapsed / 1e9);
+                double meanQueueWait = tasks == 0 ? 0 : (queueWait - lastQueueWait) / 1e6 / tasks;
+                double utilization = (double) (busy - lastBusy) / ((double) elapsed * threads);
+                double cpuLoad = cpu < 0 || lastCpu < 0 ? -1 : (double) (cpu - lastCpu) / ((double) elapsed * cores);
+                int queueDepth = getQueueDepth();
+                capacityNanos += elapsed * threads;
+
+                String reason = decide(tasks, throughput, utilization, cpuLoad, queueDepth);
+                int next = Math.max(minThreads, Math.min(maxThreads, threads + lastStep));
+                lastStep = next - threads;
+                if (lastStep != 0) {
+                    setCorePoolSize(next);
+                    adjustments++;
+                }
+                lastThroughput = throughput;
+                record(new Sample(now, threads, throughput, meanQueueWait, utilization, cpuLoad,
+                        queueDepth, next, reason));
+
+                lastTime = now;
+                lastCompleted = completed;
+                lastBusy = busy;
+                lastQueueWait = queueWait;
+                lastCpu = cpu;
+            }
+        } catch (InterruptedException ignored) {
+        }
+    }
+
+    /**
+     * Sets {@code lastStep} to the change to make now.
+     *
+     * @return why
+     */
+    private String decide(long tasks, double throughput, double utilization, double cpuLoad, int queueDepth) {
+        intervalsSinceUndo++;
+        boolean cpuSaturated = cpuLoad >= CPU_CEILING;
+
+        if (lastStep != 0 && tasks > 0 && lastThroughput > 0) {
+            double gain = (throughput - lastThroughput) / lastThroughput;
+            if (gain > hysteresis) {
+                if (lastStep < 0 || (!cpuSaturated && queueDepth > 0)) {
+                    probeDelay = 1;
+                    lastStep *= 2;
+                    return String.format("%+.0f%%, keep going", gain * 100);
+                }
+                lastStep = 0;
+                return String.format("%+.0f%%, %s", gain * 100, cpuSaturated ? "but cpu saturated" : "queue empty, hold");
+            }
+            if (gain < -hysteresis) {
+                lastStep = lastStep > 0 ? -Math.max(1, lastStep / 2) : 1;
+                return String.format("%+.0f%%, step back", gain * 100);
+            }
+            if (lastStep > 0) {
+                lastStep = -Math.max(1, lastStep / 2);
+                probeDelay = Math.min(MAX_PROBE_DELAY, probeDelay * 2);
+                intervalsSinceUndo = 0;
+                return String.format("%+.0f%%, no gain, undo", gain * 100);
+            }
+        }
+
+        if (queueDepth > 0 && !cpuSaturated && intervalsSinceUndo >= probeDelay) {
+            lastStep = 1;
+            return "backlog, probe up";
+        }
+        if (queueDepth == 0 && utilization < IDLE_UTILIZATION) {
+            // Half way to the number of threads that would be busy at the target utilization
+            int threads = getCorePoolSize();
+            int needed = (int) Math.ceil(threads * utilization / TARGET_UTILIZATION);
+            lastStep = -Math.max(1, (threads - needed) / 2);
+            return "idle, shrink";
+        }
+        lastStep = 0;
+        return cpuSaturated && queueDepth > 0 ? "cpu saturated, hold" : "hold";
+    }
+
+    private void record(Sample sample) {
+        history.set((int) (sampleCount % HISTORY), sample);
+        sampleCount++;
+        historySize = sampleCount;
+    }
+
+    // CPU time used by the whole process, or -1 if the JVM does not report it
+    private static long processCpuTime() {
+        OperatingSystemMXBean os = ManagementFactory.getOperatingSystemMXBean();
+        if (os instanceof com.sun.management.OperatingSystemMXBean)
+            return ((com.sun.management.OperatingSystemMXBean) os).getProcessCpuTime();
+        return -1;
+    }
+
+    @Override
+    protected void terminated() {
+        super.terminated();
+        controller.interrupt();
+    }
+
+    /**
+     * @return the fraction of the pool's thread time spent running tasks, counting the
+     * pool size of each interval
+     */
+    @Override
+    public double getUtilization() {
+        long capacity = capacityNanos;
+        return capacity == 0 ? 0 : Math.min(1.0, (double) getBusyNanos() / capacity);
+    }
+
+    public int getMinThreads() {
+        return minThreads;
+    }
+
+    public int getMaxThreads() {
+        return maxThreads;
+    }
+
+    /**
+     * @return number of times the controller changed the pool size
+     */
+    public int getAdjustments() {
+        return adjustments;
+    }
+
+    /**
+     * @return the last {@value #HISTORY} intervals, oldest first
+     */
+    public Sample[] getHistory() {
+        long total = historySize;
+        int size = (int) Math.min(total, HISTORY);
+        Sample[] samples = new Sample[size];
+        for (int i = 0; i < size; i++)
+            samples[i] = history.get((int) ((total - size + i) % HISTORY));
+        return samples;
+    }
+
+    @Override
+    public String report() {
+        return super.report() + "\n"
+                + String.format("Elastic: %d to %d threads; %d adjustments", minThreads, maxThreads, adjustments);
+    }
+}
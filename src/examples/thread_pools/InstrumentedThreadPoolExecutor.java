@@ -0,0 +1,214 @@
+package examples.thread_pools;
+
+import examples.metrics.LatencyHistogram;
+
+import java.util.Arrays;
+import java.util.concurrent.Callable;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RunnableFuture;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A fixed-size thread pool, like {@code Executors.newFixedThreadPool()}, that measures
+ * what happens to every task:
+ * <ul>
+ *     <li><b>Queue wait:</b> time from {@code submit()} until a pool thread starts the task.
+ *     When it grows, the pool is too small for the load.</li>
+ *     <li><b>Service time:</b> time the task runs on the pool thread.</li>
+ *     <li><b>Utilization:</b> fraction of the pool threads' time spent running tasks.</li>
+ *     <li><b>Queue depth:</b> tasks waiting right now, and the highest number seen.</li>
+ * </ul>
+ * The durations go into {@link LatencyHistogram}s and the counters are atomics, so the
+ * measurements add no lock to the pool and their memory does not grow with the number of
+ * tasks. The timings of the last {@value #RECENT_TASKS} tasks are also kept, to check the
+ * execution order of individual tasks.
+ * <p>
+ * Each submitted task is wrapped in a {@code TimedTask} that carries its submission time.
+ */
+public class InstrumentedThreadPoolExecutor extends ThreadPoolExecutor {
+
+    /** Number of individual task timings kept, the oldest ones are overwritten. */
+    public static final int RECENT_TASKS = 1024;
+
+    private final LatencyHistogram queueWait = new LatencyHistogram();
+    private final LatencyHistogram serviceTime = new LatencyHistogram();
+    private final LongAdder busyNanos = new LongAdder();
+    private final LongAdder queueWaitNanos = new LongAdder();
+    private final AtomicLong maxQueueDepth = new AtomicLong();
+    private final long createdAt = System.nanoTime();
+
+    // A task claims a slot number from recentCount and stores its timing, which carries the
+    // slot number, at slot % RECENT_TASKS. Readers skip a timing whose slot number is not the
+    // one they expect: the slot is not written yet, or was written by a task of another lap.
+    private final AtomicLong recentCount = new AtomicLong();
+    private final AtomicReferenceArray<TaskTiming> recent = new AtomicReferenceArray<TaskTiming>(RECENT_TASKS);
+
+    /**
+     * The times recorded for one task, in {@code System.nanoTime()} units.
+     */
+    public static final class TaskTiming {
+        public final String task;
+        public final long enqueuedAt;
+        public final long startedAt;
+        public final long endedAt;
+        private final long slot;
+
+        TaskTiming(String task, long enqueuedAt, long startedAt, long endedAt, long slot) {
+            this.task = task;
+            this.enqueuedAt = enqueuedAt;
+            this.startedAt = startedAt;
+            this.endedAt = endedAt;
+            this.slot = slot;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%s: waited %,.1f ms, ran %,.1f ms",
+                    task, (startedAt - enqueuedAt) / 1e6, (endedAt - startedAt) / 1e6);
+        }
+    }
+
+    /**
+     * @param threads number of threads in the pool
+     */
+    public InstrumentedThreadPoolExecutor(int threads) {
+        this(threads, threads);
+    }
+
+    /**
+     * For pools whose size changes while they run: they start with {@code coreThreads}
+     * threads and can call {@code setCorePoolSize()} up to {@code maxThreads}.
+     */
+    protected InstrumentedThreadPoolExecutor(int coreThreads, int maxThreads) {
+        super(coreThreads, maxThreads, 0L, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<Runnable>());
+    }
+
+    @Override
+    public void execute(Runnable command) {
+        if (command == null) throw new NullPointerException();
+        super.execute(new TimedTask(command, System.nanoTime()));
+        long depth = getQueue().size();
+        long currentMax;
+        while (depth > (currentMax = maxQueueDepth.get()) && !maxQueueDepth.compareAndSet(currentMax, depth)) {
+            // another thread raised the maximum at the same time, read it again
+        }
+    }
+
+    // Keeps the name of the submitted task visible in the recent timings
+    @Override
+    protected <T> RunnableFuture<T> newTaskFor(final Runnable runnable, T value) {
+        return new FutureTask<T>(runnable, value) {
+            @Override
+            public String toString() {
+                return runnable.toString();
+            }
+        };
+    }
+
+    @Override
+    protected <T> RunnableFuture<T> newTaskFor(final Callable<T> callable) {
+        return new FutureTask<T>(callable) {
+            @Override
+            public String toString() {
+                return callable.toString();
+            }
+        };
+    }
+
+    public LatencyHistogram getQueueWait() {
+        return queueWait;
+    }
+
+    public LatencyHistogram getServiceTime() {
+        return serviceTime;
+    }
+
+    /**
+     * @return the fraction of the pool's thread time spent running tasks since it was created,
+     * between 0 and 1
+     */
+    public double getUtilization() {
+        long elapsed = System.nanoTime() - createdAt;
+        return elapsed == 0 ? 0 : (double) busyNanos.sum() / ((double) elapsed * getMaximumPoolSize());
+    }
+
+    // Running totals, so that a controller can compute the measurements over an interval
+    long getBusyNanos() {
+        return busyNanos.sum();
+    }
+
+    long getQueueWaitNanos() {
+        return queueWaitNanos.sum();
+    }
+
+    public int getQueueDepth() {
+        return getQueue().size();
+    }
+
+    public long getMaxQueueDepth() {
+        return maxQueueDepth.get();
+    }
+
+    /**
+     * @return the timings of the last {@value #RECENT_TASKS} completed tasks, oldest first;
+     * a task still writing its timing, or overwritten while this method reads, is left out
+     */
+    public TaskTiming[] getRecentTasks() {
+        long total = recentCount.get();
+        int size = (int) Math.min(total, RECENT_TASKS);
+        TaskTiming[] timings = new TaskTiming[size];
+        int found = 0;
+        for (int i = 0; i < size; i++) {
+            long slot = total - size + i;
+            TaskTiming timing = recent.get((int) (slot % RECENT_TASKS));
+            if (timing != null && timing.slot == slot) timings[found++] = timing;
+        }
+        return found == size ? timings : Arrays.copyOf(timings, found);
+    }
+
+    /**
+     * @return a multi-line summary of the measurements
+     */
+    public String report() {
+        return "Pool size: " + getCorePoolSize() + "; completed tasks: " + getCompletedTaskCount() + "\n"
+                + "Queue wait:   " + queueWait + "\n"
+                + "Service time: " + serviceTime + "\n"
+                + String.format("Utilization: %.1f%%; queue depth: %d (max %d)",
+                getUtilization() * 100, getQueueDepth(), getMaxQueueDepth());
+    }
+
+    /**
+     * Carries the submission time of a task to the pool thread that runs it.
+     */
+    private final class TimedTask implements Runnable {
+        private final Runnable task;
+        private final long enqueuedAt;
+
+        TimedTask(Runnable task, long enqueuedAt) {
+            this.task = task;
+            this.enqueuedAt = enqueuedAt;
+        }
+
+        @Override
+        public void run() {
+            long startedAt = System.nanoTime();
+            queueWait.record(startedAt - enqueuedAt);
+            queueWaitNanos.add(startedAt - enqueuedAt);
+            try {
+                task.run();
+            } finally {
+                long endedAt = System.nanoTime();
+                serviceTime.record(endedAt - startedAt);
+                busyNanos.add(endedAt - startedAt);
+                long slot = recentCount.getAndIncrement();
+                recent.set((int) (slot % RECENT_TASKS),
+                        new TaskTiming(task.toString(), enqueuedAt, startedAt, endedAt, slot));
+            }
+        }
+    }
+}
@@ -0,0 +1,169 @@
+package examples.thread_pools;
+
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Updates {@value #KEYS} accounts with {@value #TASKS} small tasks, each one adding an
+ * amount to one account, like the transfers of
+ * {@link examples.re_entrant_locks.dead_lock.Runner}. It compares two designs with
+ * {@value #THREADS} threads:
+ * <ul>
+ *     <li><b>Shared pool + locks:</b> a fixed thread pool, every task locks its account
+ *     with a {@code ReentrantLock} of its own.</li>
+ *     <li><b>Key affinity:</b> a {@link KeyAffinityExecutor} keyed by account, with no lock
+ *     in the task, with and without stealing.</li>
+ * </ul>
+ * Each design runs with uniformly chosen accounts, then with half of the tasks going to
+ * {@value #HOT_KEYS} hot accounts. Every task also checks that it runs after the previous
+ * task of its account: the shared pool gives no such guarantee, and its out-of-order
+ * count shows it.
+ */
+public class KeyAffinityBenchmark {
+
+    private static final int THREADS = 4;
+    private static final int KEYS = 1024;
+    private static final int HOT_KEYS = 4;
+    private static final int TASKS = 1_000_000;
+    private static final int WORK = 200;    // rounds of arithmetic per task
+
+    // keeps the JIT compiler from removing the work, written once per run
+    private static volatile long sink;
+
+    /**
+     * The accounts, with no synchronization of their own. Everything is kept per account,
+     * so the tasks of one account only need to be guarded against each other, by the
+     * account's lock or by running in one lane.
+     */
+    private static final class Accounts {
+        final long[] balances = new long[KEYS];
+        final int[] lastSequence = new int[KEYS];
+        final int[] outOfOrder = new int[KEYS];
+        final long[] results = new long[KEYS];
+
+        void update(int key, int sequence, int amount) {
+            long x = amount;
+            for (int i = 0; i < WORK; i++)
+                x = x * 6364136223846793005L + 1442695040888963407L;
+            results[key] += x;
+            balances[key] += amount;
+            if (sequence < lastSequence[key]) outOfOrder[key]++;
+            lastSequence[key] = sequence;
+        }
+
+        // Called once the pool has terminated, so every account is complete
+        long outOfOrder() {
+            long total = 0;
+            for (int count : outOfOrder)
+                total += count;
+            return total;
+        }
+
+        void publish() {
+            long total = 0;
+            for (long result : results)
+                total += result;
+            sink += total;
+        }
+    }
+
+    public static void main(String[] args) throws InterruptedException {
+        for (int round = 0; round < 2; round++) {
+            boolean measured = round == 1;
+            if (measured)
+                System.out.printf("%d threads, %,d tasks on %,d accounts%n", THREADS, TASKS, KEYS);
+            for (boolean hot : new boolean[]{false, true}) {
+                int[] keys = keys(hot);
+                report(measured, hot, "shared pool + locks", runLocked(keys));
+                report(measured, hot, "key affinity", runAffinity(keys, false));
+                report(measured, hot, "key affinity, stealing", runAffinity(keys, true));
+            }
+        }
+    }
+
+    private static int[] keys(boolean hot) {
+        Random random = new Random(42);
+        int[] keys = new int[TASKS];
+        for (int i = 0; i < TASKS; i++)
+            keys[i] = hot && random.nextBoolean() ? random.nextInt(HOT_KEYS) : random.nextInt(KEYS);
+        return keys;
+    }
+
+    private static Result runLocked(int[] keys) throws InterruptedException {
+        final Accounts accounts = new Accounts();
+        final Lock[] locks = new Lock[KEYS];
+        for (int i = 0; i < KEYS; i++)
+            locks[i] = new ReentrantLock();
+        int[] sequences = new int[KEYS];
+
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        long start = System.nanoTime();
+        for (int i = 0; i < TASKS; i++) {
+            final int key = keys[i];
+            final int sequence = ++sequences[key];
+            executor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    locks[key].lock();
+                    try {
+                        accounts.update(key, sequence, 1);
+                    } finally {
+                        locks[key].unlock();
+                    }
+                }
+            });
+        }
+        executor.shutdown();
+        executor.awaitTermination(1, TimeUnit.MINUTES);
+        return new Result(System.nanoTime() - start, accounts, 0);
+    }
+
+    private static Result runAffinity(int[] keys, boolean stealing) throws InterruptedException {
+        final Accounts accounts = new Accounts();
+        int[] sequences = new int[KEYS];
+
+        KeyAffinityExecutor executor = new KeyAffinityExecutor(THREADS, stealing);
+        long start = System.nanoTime();
+        for (int i = 0; i < TASKS; i++) {
+            final int key = keys[i];
+            final int sequence = ++sequences[key];
+            executor.execute(key, new Runnable() {
+                @Override
+                public void run() {
+                    accounts.update(key, sequence, 1);
+                }
+            });
+        }
+        executor.shutdown();
+        executor.awaitTermination(1, TimeUnit.MINUTES);
+        return new Result(System.nanoTime() - start, accounts, executor.getMoves());
+    }
+
+    private static final class Result {
+        final long elapsedNanos;
+        final Accounts accounts;
+        final int moves;
+
+        Result(long elapsedNanos, Accounts accounts, int moves) {
+            this.elapsedNanos = elapsedNanos;
+            this.accounts = accounts;
+            this.moves = moves;
+        }
+    }
+
+    private static void report(boolean measured, boolean hot, String name, Result result) {
+        long total = 0;
+        for (long balance : result.accounts.balances)
+            total += balance;
+        if (total != TASKS) throw new IllegalStateException(name + " lost updates: " + total);
+        result.accounts.publish();
+        if (!measured) return;
+        System.out.printf("  %-7s %-24s %,10.0f tasks/s   out of order %,6d   slot moves %,5d%n",
+                hot ? "hot" : "uniform", name, TASKS / (result.elapsedNanos / 1e9),
+                result.accounts.outOfOrder(), result.moves);
+    }
+}
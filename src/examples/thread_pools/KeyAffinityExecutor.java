@@ -0,0 +1,215 @@
+package examples.thread_pools;
+
+import examples.producer_consumer.lock_free.MpscQueue;
+
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * A thread pool where all the tasks submitted with the same key run one after the
+ * other, in submission order, on the same thread.
+ * <p>
+ * In {@link examples.basic_synchronization.multiple_locks.Worker} and
+ * {@link examples.re_entrant_locks.dead_lock.Runner} several threads update the same
+ * objects, so every update needs a lock. If instead every update of an object is sent
+ * here with the object's id as key, only one thread ever touches that object at a time
+ * and the task code needs no lock at all.
+ * <p>
+ * The pool is made of <em>lanes</em>, each with one thread and one lock-free
+ * {@link MpscQueue}. A key is hashed into one of a fixed number of <em>slots</em>, and
+ * each slot belongs to one lane at a time.
+ * <p>
+ * With hashing alone, a few busy keys that land on the same lane keep it busy while other
+ * lanes are idle. With <em>stealing</em> turned on, a submission whose lane is backed up
+ * moves its slot to the least busy lane, but only when the slot has no task waiting or
+ * running: the old lane is then done with the slot's tasks, so the order of each key is
+ * kept. The owner and the number of pending tasks of a slot are packed into a single
+ * {@code long}, so both are read and changed together with one compare-and-set.
+ */
+public class KeyAffinityExecutor {
+
+    private static final int SLOTS_PER_LANE = 64;
+    private static final int STEAL_THRESHOLD = 16;
+
+    private final Lane[] lanes;
+    private final AtomicLongArray slots;    // lane index << 32 | pending tasks
+    private final int slotMask;
+    private final boolean stealing;
+    private volatile boolean shutdown;
+    private final AtomicInteger moves = new AtomicInteger();
+
+    /**
+     * @param lanes    number of threads
+     * @param stealing {@code true} to move slots away from lanes that are backed up
+     */
+    public KeyAffinityExecutor(int lanes, boolean stealing) {
+        if (lanes < 1) throw new IllegalArgumentException("At least one lane is needed");
+        this.stealing = stealing;
+        this.lanes = new Lane[lanes];
+        for (int i = 0; i < lanes; i++)
+            this.lanes[i] = new Lane(i);
+
+        int slotCount = Integer.highestOneBit(lanes * SLOTS_PER_LANE - 1) << 1;
+        slots = new AtomicLongArray(slotCount);
+        slotMask = slotCount - 1;
+        for (int i = 0; i < slotCount; i++)
+            slots.set(i, (long) (i % lanes) << 32);
+
+        for (Lane lane : this.lanes)
+            lane.thread.start();
+    }
+
+    /**
+     * Runs the task after every task submitted before with the same key.
+     * Can be called by any thread.
+     */
+    public void execute(Object key, Runnable task) {
+        if (task == null) throw new NullPointerException();
+        if (shutdown) throw new RejectedExecutionException("Executor is shut down");
+        int slot = spread(key.hashCode()) & slotMask;
+
+        int laneIndex;
+        while (true) {
+            long state = slots.get(slot);
+            laneIndex = (int) (state >>> 32);
+            int pending = (int) state;
+            if (stealing && pending == 0 && lanes[laneIndex].backlog.get() > STEAL_THRESHOLD) {
+                int idlest = idlestLane();
+                if (lanes[idlest].backlog.get() < lanes[laneIndex].backlog.get() / 2) {
+                    if (slots.compareAndSet(slot, state, (long) idlest << 32 | 1)) {
+                        laneIndex = idlest;
+                        moves.incrementAndGet();
+                        break;
+                    }
+                    continue;
+                }
+            }
+            if (slots.compareAndSet(slot, state, state + 1)) break;
+        }
+        Lane lane = lanes[laneIndex];
+        // Counted in the backlog before shutdown is checked again: a lane only stops once it
+        // has seen the shutdown and an empty backlog, so if the check passes, the lane is
+        // still there to run the task
+        lane.backlog.incrementAndGet();
+        if (shutdown) {
+            lane.backlog.decrementAndGet();
+            slots.decrementAndGet(slot);
+            LockSupport.unpark(lane.thread);    // it may be waiting for this task
+            throw new RejectedExecutionException("Executor is shut down");
+        }
+        lane.add(new SlotTask(slot, task));
+    }
+
+    // Mixes the high bits of the hash into the low ones, like HashMap does
+    private static int spread(int hash) {
+        return hash ^ (hash >>> 16);
+    }
+
+    private int idlestLane() {
+        int idlest = 0;
+        int lowest = Integer.MAX_VALUE;
+        for (int i = 0; i < lanes.length; i++) {
+            int backlog = lanes[i].backlog.get();
+            if (backlog < lowest) {
+                lowest = backlog;
+                idlest = i;
+            }
+        }
+        return idlest;
+    }
+
+    /**
+     * Stops accepting tasks. The tasks already submitted still run.
+     */
+    public void shutdown() {
+        shutdown = true;
+        for (Lane lane : lanes)
+            LockSupport.unpark(lane.thread);
+    }
+
+    public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+        long end = System.nanoTime() + unit.toNanos(timeout);
+        for (Lane lane : lanes) {
+            long left = end - System.nanoTime();
+            if (left <= 0) return false;
+            TimeUnit.NANOSECONDS.timedJoin(lane.thread, left);
+            if (lane.thread.isAlive()) return false;
+        }
+        return true;
+    }
+
+    /**
+     * @return the number of tasks run by each lane
+     */
+    public long[] completedPerLane() {
+        long[] completed = new long[lanes.length];
+        for (int i = 0; i < lanes.length; i++)
+            completed[i] = lanes[i].completed;
+        return completed;
+    }
+
+    /**
+     * @return the number of times a slot was moved to another lane
+     */
+    public int getMoves() {
+        return moves.get();
+    }
+
+    /** A task and the slot it was counted in. */
+    private static final class SlotTask {
+        final int slot;
+        final Runnable task;
+
+        SlotTask(int slot, Runnable task) {
+            this.slot = slot;
+            this.task = task;
+        }
+    }
+
+    private final class Lane implements Runnable {
+        private final MpscQueue<SlotTask> queue = new MpscQueue<SlotTask>();
+        private final AtomicInteger backlog = new AtomicInteger();
+        private final Thread thread;
+        private volatile boolean sleeping;
+        private volatile long completed;    // written by the lane thread only
+
+        Lane(int index) {
+            thread = new Thread(this, "lane-" + index);
+        }
+
+        // The task must already be counted in the backlog
+        void add(SlotTask task) {
+            queue.offer(task);
+            if (sleeping) LockSupport.unpark(thread);
+        }
+
+        @Override
+        public void run() {
+            long done = 0;
+            while (true) {
+                SlotTask next = queue.poll();
+                if (next == null) {
+                    if (shutdown && backlog.get() == 0) return;
+                    // Announce the sleep, then look once more: a producer that added a task
+                    // in between either sees the flag and unparks, or its task is found here
+                    sleeping = true;
+                    if (queue.isEmpty() && !(shutdown && backlog.get() == 0)) LockSupport.park(this);
+                    sleeping = false;
+                    continue;
+                }
+                try {
+                    next.task.run();
+                } catch (RuntimeException e) {
+                    e.printStackTrace();
+                }
+                // The slot may move to another lane once this count reaches 0
+                slots.decrementAndGet(next.slot);
+                backlog.decrementAndGet();
+                completed = ++done;
+            }
+        }
+    }
+}
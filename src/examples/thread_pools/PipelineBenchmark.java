@@ -0,0 +1,88 @@
+package examples.thread_pools;
+
+import examples.metrics.LatencyHistogram;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs the same number of {@link Worker} iterations, one {@code stageOne()} followed
+ * by one {@code stageTwo()} each, in two ways:
+ * <ul>
+ *     <li><b>Fixed pool:</b> as in {@link WorkerThreadPool}, two pool threads each run half
+ *     of the iterations and compete for the lock of each stage. The latency of an
+ *     iteration is the time from the start of its first stage to the end of its second.</li>
+ *     <li><b>Pipelined:</b> a {@link PipelinedExecutor} with one thread per stage. The
+ *     latency of an iteration is the time from {@code submit()} to the end of its second
+ *     stage, so it includes the time spent waiting in the rings. It is shown for a small
+ *     and a large ring, because a ring that is always full only adds waiting time.</li>
+ * </ul>
+ * Per stage throughput is the number of iterations a stage completes per second of work,
+ * which shows which stage limits the pipeline.
+ */
+public class PipelineBenchmark {
+
+    private static final int ITERATIONS = 1000;
+
+    public static void main(String[] args) throws InterruptedException {
+        runFixedPool();
+        runPipelined(2);
+        runPipelined(64);
+    }
+
+    private static void runFixedPool() throws InterruptedException {
+        final Worker worker = new Worker();
+        final LatencyHistogram latency = new LatencyHistogram();
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+
+        long start = System.nanoTime();
+        for (int t = 0; t < 2; t++) {
+            executor.submit(new Runnable() {
+                @Override
+                public void run() {
+                    for (int i = 0; i < ITERATIONS / 2; i++) {
+                        long begin = System.nanoTime();
+                        worker.stageOne();
+                        worker.stageTwo();
+                        latency.record(System.nanoTime() - begin);
+                    }
+                }
+            });
+        }
+        executor.shutdown();
+        executor.awaitTermination(1, TimeUnit.DAYS);
+        long elapsed = System.nanoTime() - start;
+
+        check(worker);
+        report("fixed pool, 2 threads", elapsed, latency);
+    }
+
+    private static void runPipelined(int capacity) throws InterruptedException {
+        Worker worker = new Worker();
+        PipelinedExecutor pipeline = new PipelinedExecutor(worker, capacity);
+        pipeline.start();
+
+        long start = System.nanoTime();
+        for (int i = 0; i < ITERATIONS; i++)
+            pipeline.submit();
+        pipeline.shutdown();
+        long elapsed = System.nanoTime() - start;
+
+        check(worker);
+        report("pipelined, ring of " + capacity, elapsed, pipeline.getEndToEndLatency());
+        System.out.printf("    stage one %,7.0f/s   stage two %,7.0f/s%n",
+                pipeline.getStageOneThroughput(), pipeline.getStageTwoThroughput());
+    }
+
+    private static void check(Worker worker) {
+        if (worker.list1.size() != ITERATIONS || worker.list2.size() != ITERATIONS)
+            throw new IllegalStateException("Lost results: " + worker.list1.size() + ", " + worker.list2.size());
+    }
+
+    private static void report(String name, long elapsedNanos, LatencyHistogram latency) {
+        System.out.printf("%-22s %,6d ms  %,7.0f iterations/s   latency p50 %,7.2f ms  p99 %,7.2f ms  max %,7.2f ms%n",
+                name, elapsedNanos / 1_000_000, ITERATIONS / (elapsedNanos / 1e9),
+                latency.getPercentile(50) / 1e6, latency.getPercentile(99) / 1e6, latency.getMax() / 1e6);
+    }
+}
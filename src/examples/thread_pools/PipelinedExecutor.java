@@ -0,0 +1,152 @@
+package examples.thread_pools;
+
+import examples.metrics.LatencyHistogram;
+import examples.producer_consumer.lock_free.SpscRingBuffer;
+
+/**
+ * Runs the two stages of a {@link Worker} as a pipeline instead of in a thread pool.
+ * <p>
+ * In {@link WorkerThreadPool} every pool thread runs {@code stageOne()} and then
+ * {@code stageTwo()}, so all the threads compete for the lock of each stage in turn.
+ * Here each stage has a thread of its own:
+ * <pre>
+ *     submit() --&gt; [ring] --&gt; stage one thread --&gt; [ring] --&gt; stage two thread
+ * </pre>
+ * While the stage two thread works on iteration {@code n}, the stage one thread is
+ * already working on iteration {@code n + 1}, so the stages overlap. Each lock is only
+ * ever taken by one thread, and the stages hand work to each other through bounded,
+ * lock-free {@link SpscRingBuffer}s: when stage two falls behind, its ring fills up and
+ * stage one waits, which keeps the number of iterations in flight bounded.
+ * <p>
+ * {@link #submit()} must always be called from the same thread.
+ */
+class PipelinedExecutor {
+
+    /** One iteration travelling through the pipeline. */
+    private static final class Job {
+        final long submittedAt;
+
+        Job(long submittedAt) {
+            this.submittedAt = submittedAt;
+        }
+    }
+
+    private static final Job STOP = new Job(0);
+
+    private final Worker worker;
+    private final SpscRingBuffer<Job> toStageOne;
+    private final SpscRingBuffer<Job> toStageTwo;
+    private final Thread stageOneThread;
+    private final Thread stageTwoThread;
+
+    private final LatencyHistogram endToEndLatency = new LatencyHistogram();
+    private volatile long stageOneBusyNanos;    // each written by its stage thread only
+    private volatile long stageTwoBusyNanos;
+    private volatile long completed;
+
+    /**
+     * @param worker   the worker whose stages are run
+     * @param capacity number of iterations that can wait in front of each stage
+     */
+    PipelinedExecutor(Worker worker, int capacity) {
+        this.worker = worker;
+        this.toStageOne = new SpscRingBuffer<Job>(capacity);
+        this.toStageTwo = new SpscRingBuffer<Job>(capacity);
+
+        stageOneThread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                runStageOne();
+            }
+        }, "stage-one");
+        stageTwoThread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                runStageTwo();
+            }
+        }, "stage-two");
+    }
+
+    void start() {
+        stageOneThread.start();
+        stageTwoThread.start();
+    }
+
+    /**
+     * Queues one iteration of both stages, waiting if the first stage is full.
+     */
+    void submit() throws InterruptedException {
+        toStageOne.put(new Job(System.nanoTime()));
+    }
+
+    /**
+     * Waits for every submitted iteration to go through both stages, then stops the threads.
+     */
+    void shutdown() throws InterruptedException {
+        toStageOne.put(STOP);
+        stageOneThread.join();
+        stageTwoThread.join();
+    }
+
+    private void runStageOne() {
+        try {
+            long busy = 0;
+            while (true) {
+                Job job = toStageOne.take();
+                if (job != STOP) {
+                    long start = System.nanoTime();
+                    worker.stageOne();
+                    busy += System.nanoTime() - start;
+                    stageOneBusyNanos = busy;
+                }
+                toStageTwo.put(job);
+                if (job == STOP) return;
+            }
+        } catch (InterruptedException ignored) {
+        }
+    }
+
+    private void runStageTwo() {
+        try {
+            long busy = 0;
+            long done = 0;
+            while (true) {
+                Job job = toStageTwo.take();
+                if (job == STOP) return;
+                long start = System.nanoTime();
+                worker.stageTwo();
+                long end = System.nanoTime();
+                busy += end - start;
+                stageTwoBusyNanos = busy;
+                endToEndLatency.record(end - job.submittedAt);
+                completed = ++done;
+            }
+        } catch (InterruptedException ignored) {
+        }
+    }
+
+    /**
+     * @return time from {@link #submit()} until stage two finished, per iteration
+     */
+    LatencyHistogram getEndToEndLatency() {
+        return endToEndLatency;
+    }
+
+    long getCompleted() {
+        return completed;
+    }
+
+    /**
+     * @return iterations per second stage one can sustain, counting only the time it was busy
+     */
+    double getStageOneThroughput() {
+        return completed / (stageOneBusyNanos / 1e9);
+    }
+
+    /**
+     * @return iterations per second stage two can sustain, counting only the time it was busy
+     */
+    double getStageTwoThroughput() {
+        return completed / (stageTwoBusyNanos / 1e9);
+    }
+}
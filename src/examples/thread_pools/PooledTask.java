@@ -0,0 +1,34 @@
+package examples.thread_pools;
+
+/**
+ * A task that can be run many times, for {@link RecyclingExecutor}.
+ * <p>
+ * Submitting {@code new Processor(i)} to an {@code ExecutorService} allocates the task,
+ * a {@code FutureTask} around it and a node in the pool's queue. For a few long tasks
+ * that does not matter. For millions of tiny tasks per second, the garbage collector
+ * has to clean up millions of objects per second. A {@code PooledTask} is taken from a
+ * {@link TaskPool}, filled in, run, and then given back to the pool by the executor,
+ * so the same few objects are used again and again.
+ * <p>
+ * Subclasses keep the data of one run in fields, and clear them in {@link #reset()}.
+ */
+public abstract class PooledTask implements Runnable {
+
+    // Set by the TaskPool that created the task; null for tasks created with new
+    TaskPool.FreeList owner;
+    PooledTask nextFree;
+
+    /**
+     * Clears the data of the last run, so the task does not keep objects alive while it
+     * waits in the pool. Called by the executor after {@link #run()}.
+     */
+    protected abstract void reset();
+
+    /**
+     * Gives the task back to the pool it came from, if any.
+     */
+    void recycle() {
+        reset();
+        if (owner != null) owner.release(this);
+    }
+}
@@ -0,0 +1,52 @@
+package examples.thread_pools;
+
+import examples.logging.AsyncLog;
+
+/**
+ * Represents a process that runs as a thread.
+ */
+class Processor implements Runnable{
+
+    /**
+     * Adding an {@code id} field is not necessary but can be useful when:
+     * <ul>
+     *     <li>You need to track specific tasks in logs or debugging.</li>
+     *     <li>You want to monitor execution order or performance of different tasks.</li>
+     *     <li>You are identifying failed tasks in a large-scale system.</li>
+     * </ul>
+     */
+    private int id;
+    private final long sleepMillis;
+    private final boolean verbose;
+
+    public Processor(int id) {
+        this(id, 5000, true);
+    }
+
+    /**
+     * @param sleepMillis how long the task sleeps
+     * @param verbose     {@code false} to run without printing, for benchmarks
+     */
+    public Processor(int id, long sleepMillis, boolean verbose) {
+        this.id = id;
+        this.sleepMillis = sleepMillis;
+        this.verbose = verbose;
+    }
+
+    @Override
+    public void run() {
+        if (verbose) AsyncLog.println("Starting: " + id);
+
+        try {
+            if (verbose) AsyncLog.println("Task " + id + " is running on " + Thread.currentThread().getName());
+            Thread.sleep(sleepMillis);
+        } catch (InterruptedException ignored) {
+        }
+        if (verbose) AsyncLog.println("Complete: " + id);
+    }
+
+    @Override
+    public String toString() {
+        return "Task " + id;
+    }
+}
@@ -0,0 +1,130 @@
+package examples.thread_pools;
+
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Runs {@value #TASKS} tiny tasks on {@value #THREADS} pool threads and measures how many
+ * bytes are allocated per task, by the submitting thread and the pool threads together:
+ * <ul>
+ *     <li>{@code submit(new Runnable())} on a fixed thread pool, as in the examples:
+ *     a task, a {@code FutureTask} and a queue node per task.</li>
+ *     <li>{@code execute(new Runnable())} on the same pool: no {@code FutureTask}.</li>
+ *     <li>{@link RecyclingExecutor} with tasks from a {@link TaskPool}.</li>
+ * </ul>
+ * The allocated bytes come from the JVM's {@code ThreadMXBean}, for every live thread,
+ * measured while the pool threads are still running.
+ */
+public class RecyclingBenchmark {
+
+    private static final int THREADS = 2;
+    private static final int TASKS = 2_000_000;
+    private static final int ROUNDS = 3;
+
+    private static final com.sun.management.ThreadMXBean THREAD_BEAN =
+            (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+    private static final AtomicLong done = new AtomicLong();
+    private static volatile long sink;
+
+    /** Adds its value to {@code sink}, the same work as the anonymous tasks below. */
+    private static final class AddTask extends PooledTask {
+        int value;
+
+        @Override
+        public void run() {
+            sink += value;
+            done.incrementAndGet();
+        }
+
+        @Override
+        protected void reset() {
+            value = 0;
+        }
+    }
+
+    public static void main(String[] args) throws InterruptedException {
+        for (int round = 1; round <= ROUNDS; round++) {
+            boolean last = round == ROUNDS;
+            report(last, "submit(new Runnable)", runFixedPool(true));
+            report(last, "execute(new Runnable)", runFixedPool(false));
+            report(last, "RecyclingExecutor", runRecycling());
+        }
+    }
+
+    private static long[] runFixedPool(boolean submit) throws InterruptedException {
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        ((ThreadPoolExecutor) executor).prestartAllCoreThreads();
+        done.set(0);
+
+        long bytes = allocatedBytes();
+        long start = System.nanoTime();
+        for (int i = 0; i < TASKS; i++) {
+            final int value = i;
+            Runnable task = new Runnable() {
+                @Override
+                public void run() {
+                    sink += value;
+                    done.incrementAndGet();
+                }
+            };
+            if (submit) executor.submit(task);
+            else executor.execute(task);
+        }
+        waitForTasks();
+        long elapsed = System.nanoTime() - start;
+        bytes = allocatedBytes() - bytes;
+
+        executor.shutdown();
+        executor.awaitTermination(1, TimeUnit.MINUTES);
+        return new long[]{elapsed, bytes, TASKS};
+    }
+
+    private static long[] runRecycling() throws InterruptedException {
+        RecyclingExecutor executor = new RecyclingExecutor(THREADS, 1024);
+        TaskPool<AddTask> pool = new TaskPool<AddTask>(new TaskPool.Factory<AddTask>() {
+            @Override
+            public AddTask create() {
+                return new AddTask();
+            }
+        });
+        done.set(0);
+
+        long bytes = allocatedBytes();
+        long start = System.nanoTime();
+        for (int i = 0; i < TASKS; i++) {
+            AddTask task = pool.acquire();
+            task.value = i;
+            executor.execute(task);
+        }
+        waitForTasks();
+        long elapsed = System.nanoTime() - start;
+        bytes = allocatedBytes() - bytes;
+
+        executor.shutdown();
+        executor.awaitTermination(1, TimeUnit.MINUTES);
+        return new long[]{elapsed, bytes, pool.getCreated()};
+    }
+
+    private static void waitForTasks() {
+        while (done.get() < TASKS)
+            Thread.yield();
+    }
+
+    private static long allocatedBytes() {
+        long total = 0;
+        for (long bytes : THREAD_BEAN.getThreadAllocatedBytes(THREAD_BEAN.getAllThreadIds()))
+            if (bytes > 0) total += bytes;
+        return total;
+    }
+
+    private static void report(boolean print, String name, long[] result) {
+        if (!print) return;
+        System.out.printf("%-22s %,12.0f tasks/s  %8.2f bytes/task  %,10d task objects created%n",
+                name, TASKS / (result[0] / 1e9), (double) result[1] / TASKS, result[2]);
+    }
+}
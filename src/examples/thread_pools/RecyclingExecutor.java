@@ -0,0 +1,161 @@
+package examples.thread_pools;
+
+import examples.producer_consumer.lock_free.MpmcRingBuffer;
+
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * A fixed-size thread pool whose submission path allocates nothing.
+ * <p>
+ * {@code ExecutorService.submit()} allocates a {@code FutureTask} for every task, needed
+ * or not, and a {@code LinkedBlockingQueue} allocates a node for it. This pool differs in
+ * three ways:
+ * <ul>
+ *     <li>It takes {@link PooledTask}s, which the pool threads give back to their
+ *     {@link TaskPool} after running them.</li>
+ *     <li>{@link #execute(PooledTask)} returns nothing. A caller that needs to know when
+ *     tasks are done can count them down itself, as in the count down latch example.</li>
+ *     <li>The tasks wait in a pre-allocated {@link MpmcRingBuffer}. When it is full,
+ *     {@code execute()} waits for space instead of growing the queue.</li>
+ * </ul>
+ * A task must not be touched by the caller once it has been passed to {@code execute()}:
+ * after running it, the pool resets it and may hand it out again.
+ */
+public class RecyclingExecutor {
+
+    private static final int SPINS_BEFORE_PARKING = 100;
+
+    private final MpmcRingBuffer<PooledTask> queue;
+    private final Worker[] workers;
+    private final AtomicInteger sleepers = new AtomicInteger();
+    // Tasks accepted by execute() and not yet taken by a worker, including the ones still
+    // being offered. The workers only stop once the pool is shut down and this is 0.
+    private final AtomicInteger pending = new AtomicInteger();
+    private volatile boolean shutdown;
+
+    /**
+     * @param threads  number of threads in the pool
+     * @param capacity number of tasks that can wait before {@code execute()} waits
+     */
+    public RecyclingExecutor(int threads, int capacity) {
+        queue = new MpmcRingBuffer<PooledTask>(capacity);
+        workers = new Worker[threads];
+        for (int i = 0; i < threads; i++)
+            workers[i] = new Worker(i);
+        for (Worker worker : workers)
+            worker.thread.start();
+    }
+
+    /**
+     * Queues a task, waiting for space if the queue is full.
+     *
+     * @throws RejectedExecutionException if the pool is shut down, also while waiting for space
+     */
+    public void execute(PooledTask task) {
+        if (task == null) throw new NullPointerException();
+        if (shutdown) throw new RejectedExecutionException("Executor is shut down");
+        // Counted before shutdown is checked again, so that if the check passes the workers
+        // are still there to take the task
+        pending.incrementAndGet();
+        while (!queue.offer(task)) {
+            if (shutdown) {
+                leavePending();
+                throw new RejectedExecutionException("Executor is shut down");
+            }
+            wakeOne();
+            Thread.yield();
+        }
+        if (sleepers.get() > 0) wakeOne();
+    }
+
+    // A task counted in pending was taken by a worker, or was rejected
+    private void leavePending() {
+        if (pending.decrementAndGet() == 0 && shutdown) wakeAll();
+    }
+
+    private void wakeOne() {
+        for (Worker worker : workers) {
+            if (worker.sleeping) {
+                LockSupport.unpark(worker.thread);
+                return;
+            }
+        }
+    }
+
+    private void wakeAll() {
+        for (Worker worker : workers)
+            LockSupport.unpark(worker.thread);
+    }
+
+    /**
+     * Stops accepting tasks. The tasks already queued still run.
+     */
+    public void shutdown() {
+        shutdown = true;
+        wakeAll();
+    }
+
+    public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+        long end = System.nanoTime() + unit.toNanos(timeout);
+        for (Worker worker : workers) {
+            long left = end - System.nanoTime();
+            if (left <= 0) return false;
+            TimeUnit.NANOSECONDS.timedJoin(worker.thread, left);
+            if (worker.thread.isAlive()) return false;
+        }
+        return true;
+    }
+
+    public long getCompletedTaskCount() {
+        long completed = 0;
+        for (Worker worker : workers)
+            completed += worker.completed;
+        return completed;
+    }
+
+    private final class Worker implements Runnable {
+        private final Thread thread;
+        private volatile boolean sleeping;
+        private volatile long completed;    // written by this worker only
+
+        Worker(int index) {
+            thread = new Thread(this, "recycling-pool-" + index);
+        }
+
+        @Override
+        public void run() {
+            long done = 0;
+            int idleSpins = 0;
+            while (true) {
+                PooledTask task = queue.poll();
+                if (task == null) {
+                    if (shutdown && pending.get() == 0) return;
+                    if (++idleSpins < SPINS_BEFORE_PARKING) {
+                        Thread.yield();
+                        continue;
+                    }
+                    // Announce the sleep, then look once more: a producer that queued a task
+                    // in between either sees the flag and unparks, or its task is found here
+                    sleeping = true;
+                    sleepers.incrementAndGet();
+                    if (queue.size() == 0 && !(shutdown && pending.get() == 0)) LockSupport.park(this);
+                    sleepers.decrementAndGet();
+                    sleeping = false;
+                    continue;
+                }
+                idleSpins = 0;
+                leavePending();
+                try {
+                    task.run();
+                } catch (RuntimeException e) {
+                    e.printStackTrace();
+                }
+                task.recycle();
+                completed = ++done;
+            }
+        }
+    }
+}
@@ -0,0 +1,91 @@
+package examples.thread_pools;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Hands out {@link PooledTask}s, creating new ones only when no used one is free.
+ * <p>
+ * Each thread that calls {@link #acquire()} has its own free list, so taking a task
+ * involves no lock and no atomic operation. The tasks are usually finished by another
+ * thread, a pool thread, which has to give them back to the list of the thread that
+ * took them. It pushes them on a separate lock-free stack, and the owner moves that
+ * whole stack into its list with a single {@code getAndSet()} once its list runs out.
+ * <p>
+ * Once every thread has as many tasks as it has in flight at the same time, no task is
+ * created any more.
+ *
+ * @param <T> the type of the tasks
+ */
+public class TaskPool<T extends PooledTask> {
+
+    /** Creates the tasks of a pool. */
+    public interface Factory<T> {
+        T create();
+    }
+
+    /** The free tasks of one thread. */
+    static final class FreeList {
+        private final Thread owner = Thread.currentThread();
+        private PooledTask local;                        // used by the owner only
+        private final AtomicReference<PooledTask> returned = new AtomicReference<PooledTask>();
+
+        PooledTask take() {
+            if (local == null) local = returned.getAndSet(null);
+            PooledTask task = local;
+            if (task != null) {
+                local = task.nextFree;
+                task.nextFree = null;
+            }
+            return task;
+        }
+
+        void release(PooledTask task) {
+            if (Thread.currentThread() == owner) {
+                task.nextFree = local;
+                local = task;
+                return;
+            }
+            PooledTask top;
+            do {
+                top = returned.get();
+                task.nextFree = top;
+            } while (!returned.compareAndSet(top, task));
+        }
+    }
+
+    private final Factory<T> factory;
+    private final AtomicLong created = new AtomicLong();
+    private final ThreadLocal<FreeList> freeLists = new ThreadLocal<FreeList>() {
+        @Override
+        protected FreeList initialValue() {
+            return new FreeList();
+        }
+    };
+
+    public TaskPool(Factory<T> factory) {
+        this.factory = factory;
+    }
+
+    /**
+     * @return a free task, or a new one if the calling thread has none left
+     */
+    @SuppressWarnings("unchecked")
+    public T acquire() {
+        FreeList freeList = freeLists.get();
+        PooledTask task = freeList.take();
+        if (task == null) {
+            task = factory.create();
+            task.owner = freeList;
+            created.incrementAndGet();
+        }
+        return (T) task;
+    }
+
+    /**
+     * @return the number of tasks this pool has created
+     */
+    public long getCreated() {
+        return created.get();
+    }
+}
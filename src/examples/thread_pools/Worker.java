@@ -0,0 +1,203 @@
+package examples.thread_pools;
+
+import examples.collections.IntArrayList;
+import examples.collections.IntList;
+import examples.collections.SegmentedIntList;
+import examples.random.RandomStreams;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+/**
+ * This is the implementation of the
+ * {@link examples.basic_synchronization.multiple_locks.Worker}
+ * class with the {@code Runnable} interface.
+ * <p>
+ * In <em>thread-confined</em> mode the stages take no lock at all: every pool thread
+ * appends to its own private pair of lists, found through a {@code ThreadLocal}.
+ * Nobody else touches those lists while {@code process()} runs, so no synchronization
+ * is needed. Once all the tasks are done, {@link #mergeResults()} gathers every private
+ * list into {@code list1} and {@code list2} in a single, parallel pass.
+ * <p>
+ * In <em>primitive</em> mode the numbers are stored as {@code int}s in {@code values1}
+ * and {@code values2} instead of {@code Integer}s in the lists, 4 bytes each.
+ */
+class Worker implements Runnable {
+
+    private final RandomStreams random = RandomStreams.shared();   // one stream per thread, no shared seed
+    private final Object lock1 = new Object();
+    private final Object lock2 = new Object();
+    public List<Integer> list1 = new ArrayList<Integer>();
+    public List<Integer> list2 = new ArrayList<Integer>();
+    public final IntList values1 = new SegmentedIntList();
+    public final IntList values2 = new SegmentedIntList();
+
+    private final int iterations;
+    private final boolean threadConfined;
+    private final boolean primitive;
+
+    /** The private lists of one pool thread. */
+    private static final class ResultBuffer {
+        final List<Integer> list1 = new ArrayList<Integer>();
+        final List<Integer> list2 = new ArrayList<Integer>();
+        final IntArrayList values1 = new IntArrayList();
+        final IntArrayList values2 = new IntArrayList();
+    }
+
+    // Every buffer ever created, so mergeResults() can find them
+    private final Queue<ResultBuffer> allBuffers = new ConcurrentLinkedQueue<ResultBuffer>();
+    private final ThreadLocal<ResultBuffer> localBuffer = new ThreadLocal<ResultBuffer>() {
+        @Override
+        protected ResultBuffer initialValue() {
+            ResultBuffer buffer = new ResultBuffer();
+            allBuffers.add(buffer);
+            return buffer;
+        }
+    };
+
+    public Worker() {
+        this(1000, false);
+    }
+
+    /**
+     * @param iterations     number of times {@code process()} runs both stages
+     * @param threadConfined {@code true} to write into per-thread lists instead of locking
+     */
+    public Worker(int iterations, boolean threadConfined) {
+        this(iterations, threadConfined, false);
+    }
+
+    /**
+     * @param primitive {@code true} to store the numbers in {@code values1} and
+     *                  {@code values2} instead of {@code list1} and {@code list2}
+     */
+    public Worker(int iterations, boolean threadConfined, boolean primitive) {
+        this.iterations = iterations;
+        this.threadConfined = threadConfined;
+        this.primitive = primitive;
+    }
+
+    @Override
+    public void run() {
+        process();
+    }
+
+    // Writes a random number between 0 and 99 in list1 after 1 millisecond.
+    void stageOne() {
+        if (threadConfined) {
+            simulateWork();
+            ResultBuffer buffer = localBuffer.get();
+            if (primitive) buffer.values1.add(random.current().nextInt(100));
+            else buffer.list1.add(random.current().nextInt(100));
+            return;
+        }
+        synchronized (lock1) {
+            simulateWork();
+            if (primitive) values1.add(random.current().nextInt(100));
+            else list1.add(random.current().nextInt(100));
+        }
+    }
+
+    // Writes a random number between 0 and 99 in list2 after 1 millisecond.
+    void stageTwo() {
+        if (threadConfined) {
+            simulateWork();
+            ResultBuffer buffer = localBuffer.get();
+            if (primitive) buffer.values2.add(random.current().nextInt(100));
+            else buffer.list2.add(random.current().nextInt(100));
+            return;
+        }
+        synchronized (lock2) {
+            simulateWork();
+            if (primitive) values2.add(random.current().nextInt(100));
+            else list2.add(random.current().nextInt(100));
+        }
+    }
+
+    private void simulateWork() {
+        try {
+            Thread.sleep(1);
+        } catch (InterruptedException e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Writes a random number to {@code list1}  and {@code list2}.
+     */
+    public void process() {
+        // this loop should take approx. 2000 milliseconds
+        for (int i = 0; i < iterations; i++) {
+            stageOne();
+            stageTwo();
+        }
+    }
+
+    /**
+     * Moves the contents of every per-thread list into {@code list1} and {@code list2}.
+     * <p>
+     * Must be called after every {@code process()} call has finished, for example
+     * after {@code awaitTermination()}. The position of each per-thread list in the
+     * result is known in advance from the list sizes, so every list is copied by its
+     * own task into its own range of the result, without any lock. Does nothing in
+     * the locked mode.
+     */
+    public void mergeResults() {
+        if (!threadConfined) return;
+        List<ResultBuffer> buffers = new ArrayList<ResultBuffer>(allBuffers);
+        if (primitive) {
+            // Whole blocks of ints are copied, a parallel copy would not gain much
+            for (ResultBuffer buffer : buffers) {
+                buffer.values1.copyTo(values1);
+                buffer.values2.copyTo(values2);
+                buffer.values1.clear();
+                buffer.values2.clear();
+            }
+            return;
+        }
+
+        int total1 = list1.size();
+        int total2 = list2.size();
+        int[] offsets1 = new int[buffers.size()];
+        int[] offsets2 = new int[buffers.size()];
+        for (int i = 0; i < buffers.size(); i++) {
+            offsets1[i] = total1;
+            offsets2[i] = total2;
+            total1 += buffers.get(i).list1.size();
+            total2 += buffers.get(i).list2.size();
+        }
+
+        final Integer[] merged1 = list1.toArray(new Integer[total1]);
+        final Integer[] merged2 = list2.toArray(new Integer[total2]);
+        List<ForkJoinTask<?>> copies = new ArrayList<ForkJoinTask<?>>();
+        for (int i = 0; i < buffers.size(); i++) {
+            final ResultBuffer buffer = buffers.get(i);
+            final int offset1 = offsets1[i];
+            final int offset2 = offsets2[i];
+            copies.add(ForkJoinPool.commonPool().submit(new Runnable() {
+                @Override
+                public void run() {
+                    copyInto(buffer.list1, merged1, offset1);
+                    copyInto(buffer.list2, merged2, offset2);
+                }
+            }));
+        }
+        for (ForkJoinTask<?> copy : copies)
+            copy.join();
+
+        list1 = new ArrayList<Integer>(Arrays.asList(merged1));
+        list2 = new ArrayList<Integer>(Arrays.asList(merged2));
+    }
+
+    // Copies and empties a per-thread list, so it can be reused by the next process() calls
+    private static void copyInto(List<Integer> source, Integer[] target, int offset) {
+        for (int i = 0; i < source.size(); i++)
+            target[offset + i] = source.get(i);
+        source.clear();
+    }
+}
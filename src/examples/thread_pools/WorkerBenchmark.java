@@ -0,0 +1,49 @@
+package examples.thread_pools;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the two modes of {@link Worker} with 2, 8 and 32 pool threads, every
+ * thread running {@code process()} once on the same {@code Worker} instance:
+ * <ul>
+ *     <li><b>Locked:</b> the stages share {@code lock1} and {@code lock2}, so only one
+ *     thread at a time can be in each stage.</li>
+ *     <li><b>Thread-confined:</b> each thread writes into its own lists without locking,
+ *     and the lists are merged once at the end. The merge time is included.</li>
+ * </ul>
+ * The 1 millisecond of simulated work per stage happens inside the lock in the locked
+ * mode, which is what makes the lock so expensive here.
+ */
+public class WorkerBenchmark {
+
+    private static final int ITERATIONS = 200;
+    private static final int[] THREADS = {2, 8, 32};
+
+    public static void main(String[] args) throws InterruptedException {
+        for (int threads : THREADS) {
+            long locked = run(threads, false);
+            long confined = run(threads, true);
+            System.out.printf("%2d threads   locked %,7d ms   thread-confined %,7d ms%n", threads, locked, confined);
+        }
+    }
+
+    private static long run(int threads, boolean threadConfined) throws InterruptedException {
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        Worker worker = new Worker(ITERATIONS, threadConfined);
+
+        long start = System.nanoTime();
+        for (int i = 0; i < threads; i++)
+            executor.submit(worker);
+        executor.shutdown();
+        executor.awaitTermination(1, TimeUnit.DAYS);
+        worker.mergeResults();
+        long elapsed = System.nanoTime() - start;
+
+        int expected = threads * ITERATIONS;
+        if (worker.list1.size() != expected || worker.list2.size() != expected)
+            throw new IllegalStateException("Lost results: " + worker.list1.size() + ", " + worker.list2.size());
+        return elapsed / 1_000_000;
+    }
+}
@@ -1,78 +1,48 @@
 package examples.thread_pools;
 
-import java.util.ArrayList;
+import examples.logging.AsyncLog;
+import examples.random.RandomStreams;
+
+import java.util.Arrays;
 import java.util.List;
-import java.util.Random;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.TimeUnit;
 
-/**
- * This is the implementation of the
- * {@link examples.basic_synchronization.multiple_locks.Worker}
- * class with the {@code Runnable} interface.
- */
-class Worker implements Runnable {
-
-    private Random random = new Random();
-    private final Object lock1 = new Object();
-    private final Object lock2 = new Object();
-    public List<Integer> list1 = new ArrayList<Integer>();
-    public List<Integer> list2 = new ArrayList<Integer>();
-
-    @Override
-    public void run() {
-        process();
-    }
-
-    // Writes a random number between 0 and 99 in list1 after 1 millisecond.
-    private void stageOne() {
-        synchronized (lock1) {
-            try {
-                Thread.sleep(1);
-            } catch (InterruptedException e) {
-                e.printStackTrace();
-            }
-            list1.add(random.nextInt(100));
-        }
-    }
-
-    // Writes a random number between 0 and 99 in list2 after 1 millisecond.
-    private void stageTwo() {
-        synchronized (lock2) {
-            try {
-                Thread.sleep(1);
-            } catch (InterruptedException e) {
-                e.printStackTrace();
-            }
-            list2.add(random.nextInt(100));
-        }
-    }
-
-    /**
-     * Writes a random number to {@code list1}  and {@code list2}.
-     */
-    public void process() {
-        // this loop should take approx. 2000 milliseconds
-        for (int i = 0; i < 1000; i++) {
-            stageOne();
-            stageTwo();
-        }
-    }
-}
-
 /**
  * This is the implementation of the
  * {@link examples.basic_synchronization.multiple_locks.Worker} example
  * class with a thread pool to handle threads.
+ * <p>
+ * Run it with {@code confined} as argument to let each thread write into its
+ * own lists, merged when all the tasks are done, with {@code pipelined} to give
+ * each stage a thread of its own with a {@link PipelinedExecutor}, and with
+ * {@code primitive} to store the numbers as {@code int}s. The arguments can be
+ * combined and given in any order.
  */
 public class WorkerThreadPool {
     public static void main(String[] args) {
-        ExecutorService executor = Executors.newFixedThreadPool(2); // Two threads
+        List<String> options = Arrays.asList(args);
+        boolean threadConfined = options.contains("confined");
+        boolean primitive = options.contains("primitive");
 
-        System.out.println("Starting...");
+        AsyncLog.println("Starting... (seed " + RandomStreams.shared().getSeed() + ", replay with -D" + RandomStreams.PROPERTY + "=<seed>)");
         long start = System.currentTimeMillis();
-        Worker worker = new Worker();
+        Worker worker = new Worker(1000, threadConfined, primitive);
+        if (options.contains("pipelined")) runPipelined(worker);
+        else runPooled(worker);
+        worker.mergeResults();  // only does something in thread-confined mode
+
+        long end = System.currentTimeMillis();
+        AsyncLog.println("Time taken: " + (end - start) + " milliseconds");
+        if (primitive)
+            AsyncLog.println("List1: " + worker.values1.size() + "; List2: " + worker.values2.size());
+        else
+            AsyncLog.println("List1: " + worker.list1.size() + "; List2: " + worker.list2.size());
+    }
+
+    private static void runPooled(Worker worker) {
+        ExecutorService executor = Executors.newFixedThreadPool(2); // Two threads
         for (int i = 0; i < 2; i++)
             executor.submit(worker); // worker instance must implement Runnable interface
         executor.shutdown();   // Prevent new tasks from being assigned
@@ -80,11 +50,20 @@ public class WorkerThreadPool {
         try {
             executor.awaitTermination(1, TimeUnit.DAYS);
         } catch (InterruptedException e) {
-            System.out.println(e.getMessage());
+            AsyncLog.println(e.getMessage());
         }
+    }
 
-        long end = System.currentTimeMillis();
-        System.out.println("Time taken: " + (end - start) + " milliseconds");
-        System.out.println("List1: " + worker.list1.size() + "; List2: " + worker.list2.size());
+    private static void runPipelined(Worker worker) {
+        PipelinedExecutor pipeline = new PipelinedExecutor(worker, 16);
+        pipeline.start();
+        try {
+            for (int i = 0; i < 2000; i++)  // as many iterations as two process() calls
+                pipeline.submit();
+            pipeline.shutdown();
+        } catch (InterruptedException e) {
+            AsyncLog.println(e.getMessage());
+        }
+        AsyncLog.println("End-to-end latency: " + pipeline.getEndToEndLatency());
     }
 }